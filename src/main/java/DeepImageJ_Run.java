@@ -1,620 +1,958 @@
-/*
- * DeepImageJ
- * 
- * https://deepimagej.github.io/deepimagej/
- *
- * Conditions of use: You are free to use this software for research or educational purposes. 
- * In addition, we expect you to include adequate citations and acknowledgments whenever you 
- * present or publish results that are based on it.
- * 
- * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
- * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
- * Submitted 2019.
- *
- * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
- * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
- *
- * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
- *
- */
-
-/*
- * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
- * 
- * This file is part of DeepImageJ.
- * 
- * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
- * the GNU General Public License as published by the Free Software Foundation, either 
- * version 3 of the License, or (at your option) any later version.
- * 
- * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
- * See the GNU General Public License for more details.
- * 
- * You should have received a copy of the GNU General Public License along with DeepImageJ. 
- * If not, see <http://www.gnu.org/licenses/>.
- */
-
-import java.awt.BorderLayout;
-import java.awt.Choice;
-import java.awt.Color;
-import java.awt.Component;
-import java.awt.Font;
-import java.awt.Label;
-import java.awt.Panel;
-import java.awt.TextArea;
-import java.awt.TextField;
-import java.awt.event.ItemEvent;
-import java.awt.event.ItemListener;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Set;
-
-import deepimagej.Constants;
-import deepimagej.DeepImageJ;
-import deepimagej.Promise;
-import deepimagej.RunnerTf;
-import deepimagej.exceptions.JavaProcessingError;
-import deepimagej.exceptions.MacrosError;
-import deepimagej.tools.ArrayOperations;
-import deepimagej.tools.DijTensor;
-import deepimagej.tools.Index;
-import deepimagej.tools.Log;
-
-import ij.IJ;
-import ij.ImagePlus;
-import ij.WindowManager;
-import ij.gui.GenericDialog;
-import ij.gui.ImageWindow;
-import ij.plugin.PlugIn;
-
-
-import com.leaningtech.client.Global;
-
-
-
-public class DeepImageJ_Run implements PlugIn, ItemListener {
-
-	private TextArea					info		= new TextArea("Information on the model", 10, 58, TextArea.SCROLLBARS_BOTH);
-	private Choice[]					choices		= new Choice[5];
-	private TextField[]	    			texts		= new TextField[2];
-	private Label[]						labels		= new Label[8];
-	private String[]					processingFile = new String[2];
-	private Log							log			= new Log();
-	private int[]						patch;
-	private DeepImageJ					dp			= null;
-	//private HashMap<String, String>		fullnames	= new HashMap<String, String>();
-
-	private String						rawYaml 	= "";
-	private String[]					modelList;
-	private GenericDialog dlg;
-	private static Object modelLock;
-
-	@Override
-	public void run(String arg) {
-
-		ImagePlus imp = WindowManager.getTempCurrentImage();
-		if (imp == null) {
-			imp = WindowManager.getCurrentImage();
-		}
-		if (imp == null) {
-			IJ.error("Please open an image.");
-			return;
-		}
-		
-		info.setEditable(false);
-
-		Panel panel = new Panel();
-		panel.setLayout(new BorderLayout());
-		panel.add(info, BorderLayout.CENTER);
-
-		dlg = new GenericDialog("DeepImageJ Run [" + Constants.version + "]");
-		
-		modelLock = new Object();
-		// return a list of names (string)
-		Global.jsCall("callPlugin", "ImJoyModelRunner", "getModels", new Promise(){
-			public void resolveString(String result){
-				modelList = result.split(",");
-				System.out.println("model list" + result);
-				modelLock.notify();
-			}
-			public void resolveImagePlus(ImagePlus result){
-				modelLock.notify();
-			}
-			public void reject(String error){
-				IJ.error("Cannot fetch list of models from Bioimage Model Zoo, error: "+error);
-				modelLock.notify();
-			}
-		});
-		try {
-			modelLock.wait();
-		} catch (InterruptedException e) {
-			// TODO: throw the error
-			System.out.println(e.toString());
-		}
-
-		String[] items = new String[modelList.length + 1];
-		items[0] = "<select a model from this list>";
-		
-		for (int i = 0; i < modelList.length; i++)
-			items[i + 1] = modelList[i];
-		dlg.addChoice("Model", items, items[0]);
-		dlg.addChoice("Format", new String[]         { "-----------------Select format-----------------" }, "-----------------Select format-----------------");
-		dlg.addChoice("Preprocessing ", new String[] { "-----------Select preprocessing----------- " }, "-----------Select preprocessing----------- ");
-		dlg.addChoice("Postprocessing", new String[] { "-----------Select postprocessing----------" }, "-----------Select postprocessing----------");
-		
-		dlg.addStringField("Axes order", "", 30);
-		dlg.addStringField("Tile size", "", 30);
-		
-		dlg.addChoice("Logging", new String[] { "mute", "normal", "verbose", "debug" }, "normal");
-		
-		dlg.addHelp(Constants.url);
-		dlg.addPanel(panel);
-		String msg = "Note: the output of a deep learning model strongly depends on the\n"
-			+ "data and the conditions of the training process. A pre-trained model\n"
-			+ "may require re-training. Please, check the documentation of this\n"
-			+ "model to get user guidelines: Help button.";
-		
-		Font font = new Font("Helvetica", Font.BOLD, 12);
-		dlg.addMessage(msg, font, Color.BLACK);
-		
-		
-		int countChoice = 0;
-		int countLabels = 0;
-		int countTxt = 0;
-		for (Component c : dlg.getComponents()) {
-			if (c instanceof Choice) {
-				Choice choice = (Choice) c;
-				if (countChoice == 0)
-					choice.addItemListener(this);
-				choices[countChoice++] = choice;
-			}
-			if (c instanceof TextField) {
-				texts[countTxt ++] = (TextField) c;
-			}
-			if (c instanceof Label && ((Label) c).getText().trim().length() > 1) {
-				labels[countLabels++] = (Label) c;
-			}
-		}
-		texts[0].setEditable(false);
-		texts[1].setEditable(false);
-		
-		info.setCaretPosition(0);
-		info.setText("");
-		info.append("Using Tensorflow Javascript 1.15.0" + ".\n");
-		info.append("<Please select a model>\n");
-		
-		dlg.showDialog();
-		if (dlg.wasCanceled())
-			return;
-		// This is used for the macro, as in the macro, there is no selection from the list
-		String fullname = dlg.getNextChoice();
-		// The index is the method that is going to be used normally to select a model.
-		// The plugin looks at the index of the selection of the user and retrieves the
-		// directory associated with it. With this, it allows to have the same model with
-		// different configurations in different folders.
-		String index = Integer.toString(choices[0].getSelectedIndex());
-		// If we are running from a macro, the user does not change the model selecting
-		// it from the list. Then the selection is 0, which yields an error. So the index
-		// has to be selected again 
-		if (index.equals("0") == true) {
-			index = Integer.toString(Index.indexOf(items, fullname));
-		}
-		if (index.equals("-1") || index.equals("0")) {
-			IJ.error("Select a valid model.");
-		}
-
-		if (dp == null) {
-			IJ.error("No model selected");
-			return;
-		}
-		
-		String format = (String) choices[1].getSelectedItem();
-		dp.params.framework = format.contains("pytorch") ? "Pytorch" : "Tensorflow";
-
-		processingFile[0] = (String) choices[2].getSelectedItem();
-		processingFile[1] = (String) choices[3].getSelectedItem();
-		
-		info.setText("");
-		info.setCaretPosition(0);
-		info.append("Loading model. Please wait...\n");
-
-
-		dp.params.firstPreprocessing = null;
-		dp.params.secondPreprocessing = null;
-		dp.params.firstPostprocessing = null;
-		dp.params.secondPostprocessing = null;
-		
-		if (!processingFile[0].equals("no preprocessing")) {
-			String[] preprocArray = processingFile[0].substring(processingFile[0].indexOf("[") + 1, processingFile[0].lastIndexOf("]")).split(",");
-			dp.params.firstPreprocessing = preprocArray[0].trim();
-			if (!dp.params.firstPreprocessing.endsWith(".ijm") && !dp.params.firstPreprocessing.endsWith(".txt")) {
-				IJ.error("DeepImageJ on ImJoy only supports macro pre-processing (not Java).\n"
-						+ "Please select another pre-processing.");
-				run("");
-				return;
-			}
-			if (preprocArray.length > 1) {
-				dp.params.secondPreprocessing = preprocArray[1].trim();
-				if (!dp.params.secondPreprocessing.endsWith(".ijm") && !dp.params.secondPreprocessing.endsWith(".txt")) {
-					IJ.error("DeepImageJ on ImJoy only supports macro pre-processing (not Java).\n"
-							+ "Please select another pre-processing.");
-					run("");
-					return;
-				}
-			}
-		}
-		if (!processingFile[1].equals("no postprocessing")) {
-			String[] postprocArray = processingFile[1].substring(processingFile[1].indexOf("[") + 1, processingFile[1].lastIndexOf("]")).split(",");
-			dp.params.firstPostprocessing = postprocArray[0].trim();
-			if (!dp.params.firstPostprocessing.endsWith(".ijm") && !dp.params.firstPostprocessing.endsWith(".txt")) {
-				IJ.error("DeepImageJ on ImJoy only supports macro post-processing (not Java).\n"
-						+ "Please select another post-processing.");
-				run("");
-				return;
-			}
-			
-			if (postprocArray.length > 1) {
-				dp.params.secondPostprocessing = postprocArray[1].trim();
-				if (!dp.params.secondPostprocessing.endsWith(".ijm") && !dp.params.secondPostprocessing.endsWith(".txt")) {
-					IJ.error("DeepImageJ on ImJoy only supports macro post-processing (not Java).\n"
-							+ "Please select another post-processing.");
-					run("");
-					return;
-				}
-			}
-		}
-		
-		
-		
-		String tensorForm = dp.params.inputList.get(0).form;
-		int[] tensorMin = dp.params.inputList.get(0).minimum_size;
-		int[] min = DijTensor.getWorkingDimValues(tensorForm, tensorMin); 
-		int[] tensorStep = dp.params.inputList.get(0).step;
-		int[] step = DijTensor.getWorkingDimValues(tensorForm, tensorStep); 
-		String[] dims = DijTensor.getWorkingDims(tensorForm);
-
-		
-		patch = ArrayOperations.getPatchSize(dims, dp.params.inputList.get(0).form, texts[1].getText(), texts[1].isEditable());
-		if (patch == null) {
-			IJ.error("Please, introduce the patch size as integers separated by commas.\n"
-					+ "For the axes order 'Y,X,C' with:\n"
-					+ "Y=256, X=256 and C=1, we need to introduce:\n"
-					+ "'256,256,1'\n"
-					+ "Note: the key 'auto' can only be used by the plugin.");
-			run("");
-			return;
-		}
-		int level = dlg.getNextChoiceIndex();
-		log.setLevel(level);
-		log.reset();
-
-		for (int i = 0; i < patch.length; i ++) {
-			int p = 0 ;
-			switch (tensorForm.split("")[i]) {
-				case "B":
-					p = 1;
-					break;
-				case "Y":
-					p = imp.getHeight();
-					break;
-				case "X":
-					p = imp.getWidth();
-					break;
-				case "Z":
-					p = imp.getNSlices();
-					break;
-				case "C":
-					p = imp.getNChannels();
-					break;
-			}
-			if (p * 3 < patch[i]) {
-				String errMsg = "Error: Tiles cannot be bigger than 3 times the image at any dimension\n";
-				errMsg += " - X = " + imp.getWidth() + ", maximum tile size at X = " + (imp.getWidth() * 3 - 1) + "\n";
-				errMsg += " - Y = " + imp.getHeight() + ", maximum tile size at Y = " + (imp.getHeight() * 3 - 1) + "\n";
-				if (tensorForm.contains("C"))
-					errMsg += " - C = " + imp.getNChannels() + ", maximum tile size at C = " + (imp.getNChannels() * 3 - 1) + "\n";
-				if (tensorForm.contains("Z"))
-					errMsg += " - Z = " + imp.getNSlices() + ", maximum tile size at Z = " + (imp.getNSlices() * 3 - 1) + "\n";
-				IJ.error(errMsg);
-				run("");
-				return;
-			}
-		}
-		for (DijTensor inp: dp.params.inputList) {
-			for (int i = 0; i < min.length; i ++) {
-				if (inp.step[i] != 0 && (patch[i] - inp.minimum_size[i]) % inp.step[i] != 0 && patch[i] != -1 && dp.params.allowPatching) {
-					int approxTileSize = ((patch[i] - inp.minimum_size[i]) / inp.step[i]) * inp.step[i] + inp.minimum_size[i];
-					IJ.error("Tile size at dim: " + dims[i] + " should be product of:\n  " + min[i] +
-							" + " + step[i] + "*N, where N can be any positive integer.\n"
-								+ "The immediately smaller valid tile size is " + approxTileSize);
-					run("");
-					return;
-				} else if (inp.step[i] == 0 && patch[i] != inp.minimum_size[i]) {
-					IJ.error("Patch size at dim: " + dims[i] + " should be " + min[i]);
-					run("");
-					return;
-				}
-			}
-		}
-		// TODO generalise for several image inputs
-		dp.params.inputList.get(0).recommended_patch = patch;
-		
-		String selecteModel = choices[0].getSelectedItem();
-		calculateImage(imp, selecteModel);
-		
-		// Free memory allocated by the plugin 
-		this.dp = null;
-		imp = null;
-		this.dp = null;
-		imp = null;
-		System.gc();
-		
-	}
-
-	@Override
-	public void itemStateChanged(ItemEvent e) {
-		if (e.getSource() == choices[0]) {
-			info.setText("");
-			String modelName = choices[0].getSelectedItem().trim();
-			if (modelName.contentEquals("<select a model from this list>")) {
-				setGUIOriginalParameters();
-				return;
-			}
-			rawYaml = null;
-			Global.jsCall("callPlugin", "ImJoyModelRunner", "initModel", modelName,  new Promise(){
-				public void resolveString(String result){
-					rawYaml = result;
-					System.out.println(rawYaml);
-					dp = null;
-					dp = DeepImageJ.ImjoyYaml2DijYaml(rawYaml);
-					if (dp == null) {
-						setGUIOriginalParameters();
-						info.append("\nUnable to load model \"" + modelName + "\".\n");
-						info.append("DeepimageJ cannot read the model.yaml file.\n");
-						return;
-					}
-
-					if (dp.params.framework.equals("Tensorflow/Pytorch")) {
-						choices[1].removeAll();
-						choices[1].addItem("-----------------Select format-----------------");
-						choices[1].addItem("tensorflow_saved_model_bundle");
-						choices[1].addItem("pytorch_script");
-					} else if (dp.params.framework.equals("Pytorch")) {
-						choices[1].removeAll();
-						choices[1].addItem("pytorch_script");
-					} else if (dp.params.framework.equals("Tensorflow")) {
-						choices[1].removeAll();
-						choices[1].addItem("tensorflow_saved_model_bundle");
-					}
-
-					info.setCaretPosition(0);
-					info.append("Loading model info. Please wait...\n");
-
-					choices[2].removeAll();
-					choices[3].removeAll();
-					Set<String> preKeys = dp.params.pre.keySet();
-					Set<String> postKeys = dp.params.post.keySet();
-					for (String p : preKeys) {
-						if (dp.params.pre.get(p) != null)
-							choices[2].addItem(Arrays.toString(dp.params.pre.get(p)));
-					}
-					if (choices[2].getItemCount() == 0)
-						choices[2].addItem("no preprocessing");
-
-					for (String p : postKeys) {
-						if (dp.params.post.get(p) != null)
-							choices[3].addItem(Arrays.toString(dp.params.post.get(p)));
-					}
-					choices[3].addItem("no postprocessing");
-					// Get basic information about the input from the yaml
-					String tensorForm = dp.params.inputList.get(0).form;
-					// Patch size if the input size is fixed, all 0s if it is not
-					int[] tensorPatch = dp.params.inputList.get(0).recommended_patch;
-					// Minimum size if it is not fixed, 0s if it is
-					int[] tensorMin = dp.params.inputList.get(0).minimum_size;
-					// Step if the size is not fixed, 0s if it is
-					int[] tensorStep = dp.params.inputList.get(0).step;
-					float[] haloSize = ArrayOperations.findTotalPadding(dp.params.inputList.get(0), dp.params.outputList, dp.params.pyramidalNetwork);
-					int[] dimValue = DijTensor.getWorkingDimValues(tensorForm, tensorPatch); 
-					int[] min = DijTensor.getWorkingDimValues(tensorForm, tensorMin); 
-					int[] step = DijTensor.getWorkingDimValues(tensorForm, tensorStep); 
-					float[] haloVals = DijTensor.getWorkingDimValues(tensorForm, haloSize); 
-					String[] dim = DijTensor.getWorkingDims(tensorForm);
-
-					HashMap<String, String> letterDefinition = new HashMap<String, String>();
-					letterDefinition.put("X", "width");
-					letterDefinition.put("Y", "height");
-					letterDefinition.put("C", "channels");
-					letterDefinition.put("Z", "depth");
-
-					info.setText("");
-					info.setCaretPosition(0);
-					info.append("\n");
-					info.append("SELECTED MODEL: " + dp.params.name.toUpperCase());
-					info.append("\n");
-					info.append("\n");
-					info.append("---- TILING SPECIFICATIONS ----\n");
-					String infoString = "";
-					for (String dd : dim)
-						infoString += dd + ": " + letterDefinition.get(dd) + ", ";
-					infoString = infoString.substring(0, infoString.length() - 2);
-					info.append(infoString + "\n");
-					info.append("  - minimum_size: ");
-					String minString = "";
-					for (int i = 0; i < dim.length; i ++)
-						minString += dim[i] + "=" + min[i] + ", ";
-					minString = minString.substring(0, minString.length() - 2);
-					info.append(minString + "\n");
-					info.append("  - step: ");
-					String stepString = "";
-					for (int i = 0; i < dim.length; i ++)
-						stepString += dim[i] + "=" + step[i] + ", ";
-					stepString = stepString.substring(0, stepString.length() - 2);
-					info.append(stepString + "\n");
-					info.append("\n");
-					info.append("Each dimension is calculated as:\n");
-					info.append("  - tile_size = minimum_size + step * n, where n is any positive integer\n");
-					String testSize = dp.params.inputList.get(0).inputTestSize;
-					String optimalPatch = ArrayOperations.optimalPatch(haloVals, dim, step, min, testSize, dp.params.allowPatching);
-					info.append("\n");
-					info.append("Default tile_size for this model: " + optimalPatch + "\n");
-					info.append("\n");
-					info.setEditable(false);
-
-					dp.writeParameters(info);
-					info.setCaretPosition(0);
-					
-					String axesAux = "";
-					for (String dd : dim) {axesAux += dd + ",";}
-					texts[0].setText(axesAux.substring(0, axesAux.length() - 1));
-					texts[0].setEditable(false);
-					
-					texts[1].setText(optimalPatch);
-					int auxFixed = 0;
-					for (int ss : step)
-						auxFixed += ss;
-
-					texts[1].setEditable(true);
-					if (!dp.params.allowPatching || dp.params.pyramidalNetwork || auxFixed == 0) {
-						texts[1].setEditable(false);
-					}
-					dlg.getButtons()[0].setEnabled(true);
-				}
-				public void resolveImagePlus(ImagePlus result){
-					rawYaml = "";
-				}
-				public void reject(String error){
-					IJ.error("Unable to fetch the model yaml from the Bioimage Zoo, error:" + error);
-					rawYaml = "";
-				}
-			});
-		}
-	}
-
-	
-	public void calculateImage(ImagePlus inp, String modelName) {
-		// Convert RGB image into RGB stack 
-		ImageWindow windToClose = inp.getWindow();
-		windToClose.dispose();
-		ImagePlus aux = ij.plugin.CompositeConverter.makeComposite(inp);
-		inp = aux == null ? inp : aux;
-		windToClose.setImage(inp);
-		windToClose.setVisible(true);
-		
-		dp.params.inputList.get(0).recommended_patch = patch;
-		int runStage = 0;
-		// Create parallel process for calculating the image
-		try {
-			ImagePlus im = inp.duplicate();
-			String correctTitle = inp.getTitle();
-			im.setTitle("tmp_" + correctTitle);
-			windToClose = inp.getWindow();
-			windToClose.dispose();
-			
-			WindowManager.setTempCurrentImage(inp);
-			log.print("start preprocessing");
-			HashMap<String, Object> inputsMap = new HashMap<String, Object>();
-			inputsMap.put(dp.params.inputList.get(0).name, inp);
-			im.setTitle(correctTitle);
-			runStage ++;
-			if (inputsMap.keySet().size() == 0)
-				throw new Exception();
-			// Show the image
-			im.show();
-			WindowManager.setTempCurrentImage(null);
-			log.print("end preprocessing");
-			log.print("start runner");
-			HashMap<String, Object> output = null;
-			if (dp.params.framework.equals("Tensorflow")) {
-				RunnerTf runner = new RunnerTf(dp, inputsMap, modelName, log);
-				output = runner.call();
-			}
-			
-			inp.changes = false;
-			inp.close();
-			if (output == null) 
-				throw new Exception();
-			runStage ++;
-
-			// Print the outputs of the postprocessing
-			// Retrieve the opened windows and compare them to what the model has outputed
-			// Display only what has not already been displayed
-
-			String[] finalFrames = WindowManager.getNonImageTitles();
-			String[] finalImages = WindowManager.getImageTitles();
-			ArrayOperations.displayMissingOutputs(finalImages, finalFrames, output);
-			
-		} catch (IOException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
-			return;
-		} catch(MacrosError ex) {
-			if (runStage == 0) {
-				IJ.error("Error during Macro preprocessing.");
-			} else if (runStage == 2) {
-				IJ.error("Error during Macro postprocessing.");
-			}
-			return;
-		
-		} catch (JavaProcessingError e) {
-			if (runStage == 0) {
-				IJ.error("Error during Java preprocessing.");
-			} else if (runStage == 2) {
-				IJ.error("Error during Java postprocessing.");
-			}
-			return;
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			IJ.log("Exception " + ex.toString());
-			for (StackTraceElement ste : ex.getStackTrace()) {
-				IJ.log(ste.getClassName());
-				IJ.log(ste.getMethodName());
-				IJ.log("line:" + ste.getLineNumber());
-			}
-			IJ.log("Exception " + ex.getMessage());
-			if (runStage == 0){
-				IJ.error("Error during preprocessing.");
-			} else if (runStage == 1) {
-				IJ.error("Error during the aplication of the model.");
-			} else if (runStage == 2) {
-				IJ.error("Error during postprocessing.");
-			}
-			return;
-		}
-	}
-	
-	/*
-	 * Set the parameters for when no model is selected
-	 */
-	public void setGUIOriginalParameters() {
-		info.setText("Using Tensorflow Javascript 1.15.0 CPU");
-		choices[1].removeAll();
-		choices[1].addItem("-----------------Select format-----------------");
-		choices[2].removeAll();
-		choices[2].addItem("-----------Select preprocessing----------- ");
-		choices[3].removeAll();
-		choices[3].addItem("-----------Select postprocessing-----------");
-		texts[0].setText("");
-		texts[1].setText("");
-		texts[1].setEditable(false);
-		info.setCaretPosition(0);
-	}
-
-	/*
-	 * For a model whose model.yaml file does not contain the necessary information,
-	 * indicate which fields have missing information or are incorrect
-	 */
-	private void setUnavailableModelText(ArrayList<String> fieldsMissing) {
-		info.setText("\nThe selected model contains error in the model.yaml.\n");
-		info.append("The errors are in the following fields:\n");
-		for (String err : fieldsMissing)
-			info.append(" - " + err + "\n");
-		dlg.getButtons()[0].setEnabled(false);
-		info.setCaretPosition(0);
-	}
-
-
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ *
+ * Conditions of use: You are free to use this software for research or educational purposes. 
+ * In addition, we expect you to include adequate citations and acknowledgments whenever you 
+ * present or publish results that are based on it.
+ * 
+ * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2019.
+ *
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ *
+ * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
+ *
+ */
+
+/*
+ * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
+ * 
+ * This file is part of DeepImageJ.
+ * 
+ * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with DeepImageJ. 
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.BorderLayout;
+import java.awt.Checkbox;
+import java.awt.Choice;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Label;
+import java.awt.Panel;
+import java.awt.Rectangle;
+import java.awt.TextArea;
+import java.awt.TextField;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import deepimagej.Constants;
+import deepimagej.DeepImageJ;
+import deepimagej.ParametersCache;
+import deepimagej.Promise;
+import deepimagej.RunnerTf;
+import deepimagej.TileAutotuner;
+import deepimagej.exceptions.JavaProcessingError;
+import deepimagej.exceptions.MacrosError;
+import deepimagej.runner.ModelRunner;
+import deepimagej.runner.PromiseFuture;
+import deepimagej.tools.ArrayOperations;
+import deepimagej.tools.AxisLayout;
+import deepimagej.tools.BigTiffSink;
+import deepimagej.tools.ChunkedStore;
+import deepimagej.tools.DijTensor;
+import deepimagej.tools.Index;
+import deepimagej.tools.Log;
+import deepimagej.tools.MemoryPlanner;
+import deepimagej.tools.NumFormat;
+import deepimagej.tools.PaddedImage;
+import deepimagej.tools.RoiRestriction;
+import deepimagej.tools.TileBlender;
+import deepimagej.tools.TileClassifier;
+import deepimagej.tools.TileGeometrySolver;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.WindowManager;
+import ij.gui.GenericDialog;
+import ij.gui.ImageWindow;
+import ij.measure.ResultsTable;
+import ij.plugin.PlugIn;
+
+
+
+
+public class DeepImageJ_Run implements PlugIn, ItemListener {
+
+	private TextArea					info		= new TextArea("Information on the model", 10, 58, TextArea.SCROLLBARS_BOTH);
+	private Choice[]					choices		= new Choice[10];
+	private TextField[]	    			texts		= new TextField[10];
+	private Label[]						labels		= new Label[20];
+	private Checkbox[]					checkboxes	= new Checkbox[10];
+	private String[]					processingFile = new String[2];
+	private Log							log			= new Log();
+	private int[]						patch;
+	private DeepImageJ					dp			= null;
+	private ModelRunner					runner		= ModelRunner.getDefault();
+	//private HashMap<String, String>		fullnames	= new HashMap<String, String>();
+
+	private String						rawYaml 	= "";
+	private String[]					modelList;
+	private GenericDialog dlg;
+	/*
+	 * Maximum time in ms to wait for the list of models
+	 */
+	private static final long			MODELS_TIMEOUT = 60000;
+	/*
+	 * Folder where the outputs are saved when running headless
+	 */
+	private String						outputDir	= "";
+	/*
+	 * Whether the tile size is tuned on the preprocessed image before the run
+	 */
+	private boolean						autotune	= false;
+
+	@Override
+	public void run(String arg) {
+
+		ImagePlus imp = WindowManager.getTempCurrentImage();
+		if (imp == null) {
+			imp = WindowManager.getCurrentImage();
+		}
+		if (imp == null) {
+			IJ.error("Please open an image.");
+			return;
+		}
+		
+		info.setEditable(false);
+
+		Panel panel = new Panel();
+		panel.setLayout(new BorderLayout());
+		panel.add(info, BorderLayout.CENTER);
+
+		dlg = new GenericDialog("DeepImageJ Run [" + Constants.version + "]");
+		
+		// return a list of names (string)
+		try {
+			String result = PromiseFuture.withTimeout(runner.getModelsAsync(), MODELS_TIMEOUT).get();
+			modelList = result.split(",");
+			System.out.println("model list" + result);
+		} catch (InterruptedException | ExecutionException e) {
+			IJ.error("Cannot fetch list of models from Bioimage Model Zoo, error: " + PromiseFuture.getMessage(e));
+			return;
+		}
+
+		String[] items = new String[modelList.length + 1];
+		items[0] = "<select a model from this list>";
+		
+		for (int i = 0; i < modelList.length; i++)
+			items[i + 1] = modelList[i];
+		// The macros find each field by the first word of its label, so no
+		// two labels start with the same word
+		dlg.addChoice("Model", items, items[0]);
+		dlg.addChoice("Format", new String[]         { "-----------------Select format-----------------" }, "-----------------Select format-----------------");
+		dlg.addChoice("Preprocessing ", new String[] { "-----------Select preprocessing----------- " }, "-----------Select preprocessing----------- ");
+		dlg.addChoice("Postprocessing", new String[] { "-----------Select postprocessing----------" }, "-----------Select postprocessing----------");
+		
+		dlg.addStringField("Axes order", "", 30);
+		dlg.addStringField("Tile size", "", 30);
+		dlg.addNumericField("Tiles in flight", 2, 0);
+		dlg.addNumericField("Timeout (s)", 0, 0);
+		dlg.addNumericField("Memory fraction", MemoryPlanner.DEFAULT_FRACTION, 2);
+		dlg.addNumericField("Threshold (background)", 0, 2);
+		dlg.addNumericField("Cache size (MB)", 0, 0);
+		dlg.addCheckbox("Batch tiles", false);
+		dlg.addCheckbox("Headless", false);
+		dlg.addCheckbox("Autotune tile size", false);
+		dlg.addCheckbox("Incremental re-run", false);
+		dlg.addCheckbox("Stream outputs to disk", false);
+		dlg.addCheckbox("Compress chunks (gzip)", false);
+		dlg.addStringField("Output folder", "", 30);
+		dlg.addStringField("Spill folder", "", 30);
+		dlg.addStringField("ROI (x,y,width,height)", "", 30);
+		
+		dlg.addChoice("Logging", new String[] { "mute", "normal", "verbose", "debug" }, "normal");
+		dlg.addChoice("Padding", PaddedImage.MODES, PaddedImage.REFLECT);
+		dlg.addChoice("Blending", TileBlender.MODES, TileBlender.NONE);
+		dlg.addChoice("Background policy", TileClassifier.MODES, TileClassifier.NONE);
+		dlg.addChoice("Region", RoiRestriction.MODES, RoiRestriction.WHOLE_IMAGE);
+		dlg.addChoice("Streamed format", new String[] {BigTiffSink.FORMAT, ChunkedStore.N5, ChunkedStore.ZARR}, BigTiffSink.FORMAT);
+		
+		dlg.addHelp(Constants.url);
+		dlg.addPanel(panel);
+		String msg = "Note: the output of a deep learning model strongly depends on the\n"
+			+ "data and the conditions of the training process. A pre-trained model\n"
+			+ "may require re-training. Please, check the documentation of this\n"
+			+ "model to get user guidelines: Help button.";
+		
+		Font font = new Font("Helvetica", Font.BOLD, 12);
+		dlg.addMessage(msg, font, Color.BLACK);
+		
+		
+		int countChoice = 0;
+		int countLabels = 0;
+		int countTxt = 0;
+		int countCheckbox = 0;
+		for (Component c : dlg.getComponents()) {
+			if (c instanceof Choice) {
+				Choice choice = (Choice) c;
+				if (countChoice == 0)
+					choice.addItemListener(this);
+				choices[countChoice++] = choice;
+			}
+			if (c instanceof TextField) {
+				texts[countTxt ++] = (TextField) c;
+			}
+			if (c instanceof Checkbox) {
+				checkboxes[countCheckbox ++] = (Checkbox) c;
+			}
+			if (c instanceof Label && ((Label) c).getText().trim().length() > 1) {
+				labels[countLabels++] = (Label) c;
+			}
+		}
+		texts[0].setEditable(false);
+		texts[1].setEditable(false);
+		
+		info.setCaretPosition(0);
+		info.setText("");
+		info.append("Using Tensorflow Javascript 1.15.0" + ".\n");
+		info.append("<Please select a model>\n");
+		
+		dlg.showDialog();
+		if (dlg.wasCanceled())
+			return;
+		// This is used for the macro, as in the macro, there is no selection from the list
+		String fullname = dlg.getNextChoice();
+		// The index is the method that is going to be used normally to select a model.
+		// The plugin looks at the index of the selection of the user and retrieves the
+		// directory associated with it. With this, it allows to have the same model with
+		// different configurations in different folders.
+		String index = Integer.toString(choices[0].getSelectedIndex());
+		// If we are running from a macro, the user does not change the model selecting
+		// it from the list. Then the selection is 0, which yields an error. So the index
+		// has to be selected again 
+		if (index.equals("0") == true) {
+			index = Integer.toString(Index.indexOf(items, fullname));
+		}
+		if (index.equals("-1") || index.equals("0")) {
+			IJ.error("Select a valid model.");
+		}
+
+		if (dp == null) {
+			IJ.error("No model selected");
+			return;
+		}
+		
+		String format = (String) choices[1].getSelectedItem();
+		dp.params.framework = format.contains("pytorch") ? "Pytorch" : "Tensorflow";
+
+		processingFile[0] = (String) choices[2].getSelectedItem();
+		processingFile[1] = (String) choices[3].getSelectedItem();
+		
+		info.setText("");
+		info.setCaretPosition(0);
+		info.append("Loading model. Please wait...\n");
+
+
+		dp.params.firstPreprocessing = null;
+		dp.params.secondPreprocessing = null;
+		dp.params.firstPostprocessing = null;
+		dp.params.secondPostprocessing = null;
+		
+		if (!processingFile[0].equals("no preprocessing")) {
+			String[] preprocArray = processingFile[0].substring(processingFile[0].indexOf("[") + 1, processingFile[0].lastIndexOf("]")).split(",");
+			dp.params.firstPreprocessing = preprocArray[0].trim();
+			if (!dp.params.firstPreprocessing.endsWith(".ijm") && !dp.params.firstPreprocessing.endsWith(".txt")) {
+				IJ.error("DeepImageJ on ImJoy only supports macro pre-processing (not Java).\n"
+						+ "Please select another pre-processing.");
+				run("");
+				return;
+			}
+			if (preprocArray.length > 1) {
+				dp.params.secondPreprocessing = preprocArray[1].trim();
+				if (!dp.params.secondPreprocessing.endsWith(".ijm") && !dp.params.secondPreprocessing.endsWith(".txt")) {
+					IJ.error("DeepImageJ on ImJoy only supports macro pre-processing (not Java).\n"
+							+ "Please select another pre-processing.");
+					run("");
+					return;
+				}
+			}
+		}
+		if (!processingFile[1].equals("no postprocessing")) {
+			String[] postprocArray = processingFile[1].substring(processingFile[1].indexOf("[") + 1, processingFile[1].lastIndexOf("]")).split(",");
+			dp.params.firstPostprocessing = postprocArray[0].trim();
+			if (!dp.params.firstPostprocessing.endsWith(".ijm") && !dp.params.firstPostprocessing.endsWith(".txt")) {
+				IJ.error("DeepImageJ on ImJoy only supports macro post-processing (not Java).\n"
+						+ "Please select another post-processing.");
+				run("");
+				return;
+			}
+			
+			if (postprocArray.length > 1) {
+				dp.params.secondPostprocessing = postprocArray[1].trim();
+				if (!dp.params.secondPostprocessing.endsWith(".ijm") && !dp.params.secondPostprocessing.endsWith(".txt")) {
+					IJ.error("DeepImageJ on ImJoy only supports macro post-processing (not Java).\n"
+							+ "Please select another post-processing.");
+					run("");
+					return;
+				}
+			}
+		}
+		
+		
+		
+		String tensorForm = dp.params.inputList.get(0).form;
+		int[] tensorMin = dp.params.inputList.get(0).minimum_size;
+		int[] min = DijTensor.getWorkingDimValues(tensorForm, tensorMin); 
+		int[] tensorStep = dp.params.inputList.get(0).step;
+		int[] step = DijTensor.getWorkingDimValues(tensorForm, tensorStep); 
+		String[] dims = DijTensor.getWorkingDims(tensorForm);
+
+		
+		patch = ArrayOperations.getPatchSize(dims, dp.params.inputList.get(0).form, texts[1].getText(), texts[1].isEditable());
+		if (patch == null) {
+			IJ.error("Please, introduce the patch size as integers separated by commas.\n"
+					+ "For the axes order 'Y,X,C' with:\n"
+					+ "Y=256, X=256 and C=1, we need to introduce:\n"
+					+ "'256,256,1'\n"
+					+ "Note: the key 'auto' can only be used by the plugin.");
+			run("");
+			return;
+		}
+		// Consume the format and processing choices so the next index read
+		// corresponds to the logging choice
+		dlg.getNextChoice();
+		dlg.getNextChoice();
+		dlg.getNextChoice();
+		int level = dlg.getNextChoiceIndex();
+		log.setLevel(level);
+		dp.params.paddingMode = dlg.getNextChoice();
+		dp.params.blending = dlg.getNextChoice();
+		dp.params.backgroundTiles = dlg.getNextChoice();
+		dp.params.roiMode = dlg.getNextChoice();
+		dp.params.streamFormat = dlg.getNextChoice();
+		log.reset();
+		
+		int tilesInFlight = (int) dlg.getNextNumber();
+		if (tilesInFlight < 1) {
+			IJ.error("The number of tiles in flight should be an integer bigger than 0.");
+			run("");
+			return;
+		}
+		dp.params.tilesInFlight = tilesInFlight;
+		double tileTimeout = dlg.getNextNumber();
+		if (Double.isNaN(tileTimeout) || tileTimeout < 0) {
+			IJ.error("The tile timeout should be a number of seconds, 0 to wait as long as needed.");
+			run("");
+			return;
+		}
+		dp.params.tileTimeout = (long) (tileTimeout * 1000);
+		double memoryFraction = dlg.getNextNumber();
+		if (Double.isNaN(memoryFraction) || memoryFraction <= 0 || memoryFraction > 1) {
+			IJ.error("The memory fraction should be a number bigger than 0 and smaller or equal to 1.");
+			run("");
+			return;
+		}
+		dp.params.memoryFraction = memoryFraction;
+		double backgroundThreshold = dlg.getNextNumber();
+		if (Double.isNaN(backgroundThreshold) || backgroundThreshold < 0) {
+			IJ.error("The background threshold should be a number bigger or equal to 0.");
+			run("");
+			return;
+		}
+		dp.params.backgroundThreshold = backgroundThreshold;
+		double tileCacheMB = dlg.getNextNumber();
+		if (Double.isNaN(tileCacheMB) || tileCacheMB < 0) {
+			IJ.error("The cache size should be a number of MB, 0 to disable the tile cache.");
+			run("");
+			return;
+		}
+		dp.params.tileCacheMB = tileCacheMB;
+		dp.params.batchTiles = dlg.getNextBoolean();
+		// In headless mode no image is displayed. The outputs are
+		// saved in the output folder if there is one
+		dp.params.headless = dlg.getNextBoolean();
+		autotune = dlg.getNextBoolean();
+		dp.params.incrementalRun = dlg.getNextBoolean();
+		dp.params.streamOutputs = dlg.getNextBoolean();
+		dp.params.gzipChunks = dlg.getNextBoolean();
+		// Skip the axes order and the tile size
+		dlg.getNextString();
+		dlg.getNextString();
+		outputDir = dlg.getNextString().trim();
+		if (!outputDir.equals("") && !new File(outputDir).isDirectory()) {
+			IJ.error("The output folder " + outputDir + " does not exist.");
+			run("");
+			return;
+		}
+		// In headless mode the outputs are not displayed, they can only be saved
+		if (dp.params.headless && outputDir.equals("")) {
+			IJ.error("Select an output folder to save the outputs in headless mode.");
+			run("");
+			return;
+		}
+		// The streamed outputs are written in the output folder
+		if (dp.params.streamOutputs && outputDir.equals("")) {
+			IJ.error("Select an output folder to stream the outputs to disk.");
+			run("");
+			return;
+		}
+		dp.params.streamDir = outputDir;
+		String tileCacheDir = dlg.getNextString().trim();
+		if (!tileCacheDir.equals("") && !new File(tileCacheDir).isDirectory()) {
+			IJ.error("The spill folder " + tileCacheDir + " does not exist.");
+			run("");
+			return;
+		}
+		dp.params.tileCacheDir = tileCacheDir;
+		// The ROI is given as a rectangle by macros, otherwise the selection
+		// of the image is used, whatever its shape
+		String roiText = dlg.getNextString().trim();
+		dp.params.roi = null;
+		if (!dp.params.roiMode.equals(RoiRestriction.WHOLE_IMAGE)) {
+			try {
+				dp.params.roi = roiText.equals("") ? imp.getRoi() : RoiRestriction.parseRectangle(roiText);
+			} catch (IllegalArgumentException ex) {
+				IJ.error(ex.getMessage());
+				run("");
+				return;
+			}
+			if (dp.params.roi == null) {
+				IJ.error("Select a region of the image or introduce the ROI as x,y,width,height.");
+				run("");
+				return;
+			}
+			if (!dp.params.roi.getBounds().intersects(new Rectangle(0, 0, imp.getWidth(), imp.getHeight()))) {
+				IJ.error("The ROI is outside of the image.");
+				run("");
+				return;
+			}
+		}
+
+		for (int i = 0; i < patch.length; i ++) {
+			int p = 0 ;
+			switch (AxisLayout.of(tensorForm).axisAt(i)) {
+				case 'B':
+					p = 1;
+					break;
+				case 'Y':
+					p = imp.getHeight();
+					break;
+				case 'X':
+					p = imp.getWidth();
+					break;
+				case 'Z':
+					p = imp.getNSlices();
+					break;
+				case 'C':
+					p = imp.getNChannels();
+					break;
+			}
+			if (p * 3 < patch[i]) {
+				String errMsg = "Error: Tiles cannot be bigger than 3 times the image at any dimension\n";
+				errMsg += " - X = " + imp.getWidth() + ", maximum tile size at X = " + (imp.getWidth() * 3 - 1) + "\n";
+				errMsg += " - Y = " + imp.getHeight() + ", maximum tile size at Y = " + (imp.getHeight() * 3 - 1) + "\n";
+				if (tensorForm.contains("C"))
+					errMsg += " - C = " + imp.getNChannels() + ", maximum tile size at C = " + (imp.getNChannels() * 3 - 1) + "\n";
+				if (tensorForm.contains("Z"))
+					errMsg += " - Z = " + imp.getNSlices() + ", maximum tile size at Z = " + (imp.getNSlices() * 3 - 1) + "\n";
+				IJ.error(errMsg);
+				run("");
+				return;
+			}
+		}
+		for (DijTensor inp: dp.params.inputList) {
+			for (int i = 0; i < min.length; i ++) {
+				if (inp.step[i] != 0 && (patch[i] - inp.minimum_size[i]) % inp.step[i] != 0 && patch[i] != -1 && dp.params.allowPatching) {
+					int approxTileSize = ((patch[i] - inp.minimum_size[i]) / inp.step[i]) * inp.step[i] + inp.minimum_size[i];
+					IJ.error("Tile size at dim: " + dims[i] + " should be product of:\n  " + min[i] +
+							" + " + step[i] + "*N, where N can be any positive integer.\n"
+								+ "The immediately smaller valid tile size is " + approxTileSize);
+					run("");
+					return;
+				} else if (inp.step[i] == 0 && patch[i] != inp.minimum_size[i]) {
+					IJ.error("Patch size at dim: " + dims[i] + " should be " + min[i]);
+					run("");
+					return;
+				}
+			}
+		}
+		// TODO generalise for several image inputs
+		dp.params.inputList.get(0).recommended_patch = patch;
+		
+		String selecteModel = choices[0].getSelectedItem();
+		calculateImage(imp, selecteModel);
+		
+		// Free memory allocated by the plugin 
+		this.dp = null;
+		imp = null;
+		this.dp = null;
+		imp = null;
+		System.gc();
+		
+	}
+
+	@Override
+	public void itemStateChanged(ItemEvent e) {
+		if (e.getSource() == choices[0]) {
+			info.setText("");
+			String modelName = choices[0].getSelectedItem().trim();
+			if (modelName.contentEquals("<select a model from this list>")) {
+				setGUIOriginalParameters();
+				return;
+			}
+			rawYaml = null;
+			Promise onModelLoaded = new Promise(){
+				public void resolveString(String result){
+					rawYaml = result;
+					System.out.println(rawYaml);
+					dp = null;
+					dp = DeepImageJ.ImjoyYaml2DijYaml(rawYaml);
+					if (dp == null) {
+						setGUIOriginalParameters();
+						info.append("\nUnable to load model \"" + modelName + "\".\n");
+						info.append("DeepimageJ cannot read the model.yaml file.\n");
+						return;
+					}
+					ParametersCache.writeSnapshot(modelName, rawYaml);
+
+					if (dp.params.framework.equals("Tensorflow/Pytorch")) {
+						choices[1].removeAll();
+						choices[1].addItem("-----------------Select format-----------------");
+						choices[1].addItem("tensorflow_saved_model_bundle");
+						choices[1].addItem("pytorch_script");
+					} else if (dp.params.framework.equals("Pytorch")) {
+						choices[1].removeAll();
+						choices[1].addItem("pytorch_script");
+					} else if (dp.params.framework.equals("Tensorflow")) {
+						choices[1].removeAll();
+						choices[1].addItem("tensorflow_saved_model_bundle");
+					}
+
+					info.setCaretPosition(0);
+					info.append("Loading model info. Please wait...\n");
+
+					choices[2].removeAll();
+					choices[3].removeAll();
+					Set<String> preKeys = dp.params.pre.keySet();
+					Set<String> postKeys = dp.params.post.keySet();
+					for (String p : preKeys) {
+						if (dp.params.pre.get(p) != null)
+							choices[2].addItem(Arrays.toString(dp.params.pre.get(p)));
+					}
+					if (choices[2].getItemCount() == 0)
+						choices[2].addItem("no preprocessing");
+
+					for (String p : postKeys) {
+						if (dp.params.post.get(p) != null)
+							choices[3].addItem(Arrays.toString(dp.params.post.get(p)));
+					}
+					choices[3].addItem("no postprocessing");
+					// Padding mode specified by the model, if any
+					choices[5].select(dp.params.paddingMode);
+					// Get basic information about the input from the yaml
+					String tensorForm = dp.params.inputList.get(0).form;
+					// Patch size if the input size is fixed, all 0s if it is not
+					int[] tensorPatch = dp.params.inputList.get(0).recommended_patch;
+					// Minimum size if it is not fixed, 0s if it is
+					int[] tensorMin = dp.params.inputList.get(0).minimum_size;
+					// Step if the size is not fixed, 0s if it is
+					int[] tensorStep = dp.params.inputList.get(0).step;
+					float[] haloSize = ArrayOperations.findTotalPadding(dp.params.inputList.get(0), dp.params.outputList, dp.params.pyramidalNetwork);
+					int[] dimValue = DijTensor.getWorkingDimValues(tensorForm, tensorPatch); 
+					int[] min = DijTensor.getWorkingDimValues(tensorForm, tensorMin); 
+					int[] step = DijTensor.getWorkingDimValues(tensorForm, tensorStep); 
+					float[] haloVals = DijTensor.getWorkingDimValues(tensorForm, haloSize); 
+					String[] dim = DijTensor.getWorkingDims(tensorForm);
+
+					HashMap<String, String> letterDefinition = new HashMap<String, String>();
+					letterDefinition.put("X", "width");
+					letterDefinition.put("Y", "height");
+					letterDefinition.put("C", "channels");
+					letterDefinition.put("Z", "depth");
+
+					info.setText("");
+					info.setCaretPosition(0);
+					info.append("\n");
+					info.append("SELECTED MODEL: " + dp.params.name.toUpperCase());
+					info.append("\n");
+					info.append("\n");
+					info.append("---- TILING SPECIFICATIONS ----\n");
+					String infoString = "";
+					for (String dd : dim)
+						infoString += dd + ": " + letterDefinition.get(dd) + ", ";
+					infoString = infoString.substring(0, infoString.length() - 2);
+					info.append(infoString + "\n");
+					info.append("  - minimum_size: ");
+					String minString = "";
+					for (int i = 0; i < dim.length; i ++)
+						minString += dim[i] + "=" + min[i] + ", ";
+					minString = minString.substring(0, minString.length() - 2);
+					info.append(minString + "\n");
+					info.append("  - step: ");
+					String stepString = "";
+					for (int i = 0; i < dim.length; i ++)
+						stepString += dim[i] + "=" + step[i] + ", ";
+					stepString = stepString.substring(0, stepString.length() - 2);
+					info.append(stepString + "\n");
+					info.append("\n");
+					info.append("Each dimension is calculated as:\n");
+					info.append("  - tile_size = minimum_size + step * n, where n is any positive integer\n");
+					String testSize = dp.params.inputList.get(0).inputTestSize;
+					String optimalPatch = ArrayOperations.optimalPatch(haloVals, dim, step, min, testSize, dp.params.allowPatching);
+					optimalPatch = fitTileToMemory(optimalPatch, dim, min, step);
+					// Tile size found by the autotune of a previous run with a similar image
+					ImagePlus current = WindowManager.getCurrentImage();
+					String tunedPatch = current == null ? null : TileAutotuner.getTunedSize(modelName, current.getDimensions());
+					if (tunedPatch != null && tunedPatch.split(",").length == dim.length && dp.params.allowPatching && !dp.params.pyramidalNetwork) {
+						optimalPatch = tunedPatch;
+						info.append("Tile size tuned in a previous run: " + tunedPatch + "\n");
+					}
+					info.append("\n");
+					info.append("Default tile_size for this model: " + optimalPatch + "\n");
+					info.append("\n");
+					info.setEditable(false);
+
+					dp.writeParameters(info);
+					info.setCaretPosition(0);
+					
+					String axesAux = "";
+					for (String dd : dim) {axesAux += dd + ",";}
+					texts[0].setText(axesAux.substring(0, axesAux.length() - 1));
+					texts[0].setEditable(false);
+					
+					texts[1].setText(optimalPatch);
+					int auxFixed = 0;
+					for (int ss : step)
+						auxFixed += ss;
+
+					texts[1].setEditable(true);
+					if (!dp.params.allowPatching || dp.params.pyramidalNetwork || auxFixed == 0) {
+						texts[1].setEditable(false);
+					}
+					dlg.getButtons()[0].setEnabled(true);
+				}
+				public void resolveImagePlus(ImagePlus result){
+					rawYaml = "";
+				}
+				public void reject(String error){
+					IJ.error("Unable to fetch the model yaml from the Bioimage Zoo, error:" + error);
+					rawYaml = "";
+				}
+			};
+			// If the yaml of the model has been saved, the dialog is filled with it at once.
+			// The model runner still has to load the model, so the run is not allowed until
+			// it has finished, and the yaml it returns replaces the saved one if they differ
+			String snapshot = ParametersCache.readSnapshot(modelName);
+			if (snapshot == null) {
+				runner.initModel(modelName, onModelLoaded);
+				return;
+			}
+			onModelLoaded.resolveString(snapshot);
+			dlg.getButtons()[0].setEnabled(false);
+			runner.initModel(modelName, new Promise() {
+				public void resolveString(String result) {
+					if (result != null && !result.equals(snapshot))
+						onModelLoaded.resolveString(result);
+					else if (dp != null)
+						dlg.getButtons()[0].setEnabled(true);
+				}
+				public void resolveImagePlus(ImagePlus result) {
+					onModelLoaded.resolveImagePlus(result);
+				}
+				public void reject(String error) {
+					onModelLoaded.reject(error);
+				}
+			});
+		}
+	}
+
+	
+	/*
+	 * Reduce the tile size suggested for the current image until the estimated
+	 * memory of the run fits in the fraction of the heap set in the dialog.
+	 * The estimate is written in the information panel
+	 */
+	private String fitTileToMemory(String tileSize, String[] dim, int[] min, int[] step) {
+		ImagePlus image = WindowManager.getCurrentImage();
+		if (image == null || !dp.params.allowPatching || dp.params.pyramidalNetwork || tileSize.contains("auto"))
+			return tileSize;
+		String[] values = tileSize.split(",");
+		// Arrays organised as [x, y, c, z]
+		int[] size = {image.getWidth(), image.getHeight(), image.getNChannels(), image.getNSlices()};
+		int[] tile = {1, 1, 1, 1};
+		int[] tileMin = {1, 1, 1, 1};
+		int[] tileStep = {0, 0, 0, 0};
+		try {
+			for (int i = 0; i < dim.length; i ++) {
+				int axis = AxisLayout.AXES.indexOf(dim[i]);
+				if (axis < 0 || axis > AxisLayout.Z)
+					continue;
+				tile[axis] = Integer.parseInt(values[i].trim());
+				tileMin[axis] = min[i];
+				tileStep[axis] = step[i];
+			}
+		} catch (NumberFormatException ex) {
+			return tileSize;
+		}
+		// Values of the dialog, the defaults are used if they are not valid
+		double fraction = MemoryPlanner.DEFAULT_FRACTION;
+		int tilesInFlight = dp.params.tilesInFlight;
+		double cacheMB = 0;
+		try {
+			tilesInFlight = Math.max(1, (int) Double.parseDouble(texts[2].getText()));
+			fraction = Double.parseDouble(texts[4].getText());
+			cacheMB = Double.parseDouble(texts[6].getText());
+		} catch (NumberFormatException ex) {
+		}
+		if (!(fraction > 0 && fraction <= 1))
+			fraction = MemoryPlanner.DEFAULT_FRACTION;
+		if (!(cacheMB >= 0))
+			cacheMB = 0;
+		double budget = MemoryPlanner.getBudget(fraction);
+		int[] padding = RunnerTf.findTotalPadding(dp.params.outputList);
+		// The streamed outputs are not blended
+		boolean streaming = checkboxes[4].getState();
+		boolean blending = TileBlender.isBlending(choices[6].getSelectedItem()) && !streaming;
+		MemoryPlanner.Estimate estimate = MemoryPlanner.fitPatchSize(size, image.getNFrames(), tile, tileMin, tileStep, padding,
+									dp.params.inputList, dp.params.outputList, tilesInFlight, 1, blending, streaming, cacheMB * 1024 * 1024, budget);
+		info.append("Memory available for the run: " + NumFormat.bytes(budget) + "\n");
+		info.append("Estimated memory of the run with " + estimate + "\n");
+		if (estimate.getTotal() > budget)
+			info.append("WARNING: not even the smallest tile fits in the memory available\n");
+		int[] fitted = estimate.getPatchSize();
+		// For 3D models, spend the same voxels on the tile whose halo and
+		// shifted border tiles recompute the least along each axis
+		if (tileStep[AxisLayout.Z] > 0) {
+			double voxels = (double) fitted[0] * fitted[1] * fitted[2] * fitted[3];
+			int[] solved = TileGeometrySolver.solve(size, tileMin, tileStep, padding, fitted, voxels);
+			if (solved != null)
+				fitted = solved;
+		}
+		info.append(String.format("Redundancy of the tiling (computed voxels per voxel of the image): %.2f\n",
+					TileGeometrySolver.getRedundancy(size, fitted, padding)));
+		String fittedSize = "";
+		for (int i = 0; i < dim.length; i ++) {
+			int axis = AxisLayout.AXES.indexOf(dim[i]);
+			fittedSize += (axis < 0 || axis > AxisLayout.Z ? values[i].trim() : Integer.toString(fitted[axis])) + ",";
+		}
+		return fittedSize.substring(0, fittedSize.length() - 1);
+	}
+	
+	/*
+	 * Time several tile sizes on a crop of the preprocessed image and use the
+	 * fastest one in this run. The tile size is saved, so it is suggested the
+	 * next time the model is used with an image of a similar size
+	 */
+	private void autotuneTile(ImagePlus imp, String modelName, int[] originalDims) {
+		DijTensor input = dp.params.inputList.get(0);
+		AxisLayout layout = input.getLayout();
+		String[] dims = DijTensor.getWorkingDims(input.form);
+		int[] min = DijTensor.getWorkingDimValues(input.form, input.minimum_size);
+		int[] step = DijTensor.getWorkingDimValues(input.form, input.step);
+		// The largest candidate is the tile that fits in memory
+		float[] haloVals = DijTensor.getWorkingDimValues(input.form, ArrayOperations.findTotalPadding(input, dp.params.outputList, false));
+		String largestPatch = ArrayOperations.optimalPatch(imp, haloVals, dims, step, min, null, true);
+		int[] largest = ArrayOperations.getPatchSize(dims, input.form, fitTileToMemory(largestPatch, dims, min, step), true);
+		if (largest == null)
+			return;
+		List<int[]> candidates = TileAutotuner.findCandidates(layout.toXYCZ(largest, 1), layout.toXYCZ(input.minimum_size, 1),
+										layout.toXYCZ(input.step, 0), RunnerTf.findTotalPadding(dp.params.outputList),
+										TileAutotuner.DEFAULT_MAX_OVERHEAD);
+		int[] best = TileAutotuner.tune(dp, imp, modelName, runner, candidates, log);
+		if (best == null) {
+			IJ.log("Autotune could not run the model, using the tile size " + Arrays.toString(patch));
+			return;
+		}
+		String tileSize = "";
+		for (int i = 0; i < patch.length; i ++) {
+			int axis = AxisLayout.AXES.indexOf(layout.axisAt(i));
+			if (axis >= 0 && axis <= AxisLayout.Z)
+				patch[i] = best[axis];
+			if (i != layout.getBatchIndex())
+				tileSize += patch[i] + ",";
+		}
+		tileSize = tileSize.substring(0, tileSize.length() - 1);
+		IJ.log("Autotuned tile size: " + tileSize);
+		// Saved for the size of the image before the preprocessing, the one seen by the dialog
+		TileAutotuner.setTunedSize(modelName, originalDims, tileSize);
+	}
+	
+	public HashMap<String, Object> calculateImage(ImagePlus inp, String modelName) {
+		boolean headless = dp.params.headless;
+		int[] originalDims = inp.getDimensions();
+		// Convert RGB image into RGB stack 
+		ImageWindow windToClose = inp.getWindow();
+		if (!headless)
+			windToClose.dispose();
+		ImagePlus aux = ij.plugin.CompositeConverter.makeComposite(inp);
+		inp = aux == null ? inp : aux;
+		if (!headless) {
+			windToClose.setImage(inp);
+			windToClose.setVisible(true);
+		}
+		
+		dp.params.inputList.get(0).recommended_patch = patch;
+		int runStage = 0;
+		// Create parallel process for calculating the image
+		try {
+			// In headless mode the windows of the input are not touched
+			// Virtual stacks are not duplicated either, their tiles are read
+			// from the disk and a copy would load the whole image in memory
+			ImagePlus im = null;
+			String correctTitle = inp.getTitle();
+			boolean duplicate = !headless && !inp.getStack().isVirtual();
+			if (duplicate) {
+				im = inp.duplicate();
+				im.setTitle("tmp_" + correctTitle);
+				windToClose = inp.getWindow();
+				windToClose.dispose();
+			}
+			
+			WindowManager.setTempCurrentImage(inp);
+			log.print("start preprocessing");
+			HashMap<String, Object> inputsMap = new HashMap<String, Object>();
+			inputsMap.put(dp.params.inputList.get(0).name, inp);
+			runStage ++;
+			if (inputsMap.keySet().size() == 0)
+				throw new Exception();
+			// The tile size is tuned on the image given to the model
+			Object preprocessed = inputsMap.get(dp.params.inputList.get(0).name);
+			if (autotune && dp.params.allowPatching && !dp.params.pyramidalNetwork && preprocessed instanceof ImagePlus)
+				autotuneTile((ImagePlus) preprocessed, modelName.trim(), originalDims);
+			// Show the image
+			if (duplicate) {
+				im.setTitle(correctTitle);
+				im.show();
+			}
+			WindowManager.setTempCurrentImage(null);
+			log.print("end preprocessing");
+			log.print("start runner");
+			HashMap<String, Object> output = null;
+			if (dp.params.framework.equals("Tensorflow")) {
+				RunnerTf runnerTf = new RunnerTf(dp, inputsMap, modelName, log, runner);
+				output = runnerTf.call();
+			}
+			
+			if (duplicate) {
+				inp.changes = false;
+				inp.close();
+			}
+			if (output == null) 
+				throw new Exception();
+			runStage ++;
+			
+			if (headless) {
+				if (!outputDir.equals(""))
+					saveOutputs(output, outputDir);
+				return output;
+			}
+
+			// Print the outputs of the postprocessing
+			// Retrieve the opened windows and compare them to what the model has outputed
+			// Display only what has not already been displayed
+
+			String[] finalFrames = WindowManager.getNonImageTitles();
+			String[] finalImages = WindowManager.getImageTitles();
+			ArrayOperations.displayMissingOutputs(finalImages, finalFrames, output);
+			return output;
+		} catch (IOException e1) {
+			// TODO Auto-generated catch block
+			e1.printStackTrace();
+			return null;
+		} catch(MacrosError ex) {
+			if (runStage == 0) {
+				IJ.error("Error during Macro preprocessing.");
+			} else if (runStage == 2) {
+				IJ.error("Error during Macro postprocessing.");
+			}
+			return null;
+		
+		} catch (JavaProcessingError e) {
+			if (runStage == 0) {
+				IJ.error("Error during Java preprocessing.");
+			} else if (runStage == 2) {
+				IJ.error("Error during Java postprocessing.");
+			}
+			return null;
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			IJ.log("Exception " + ex.toString());
+			for (StackTraceElement ste : ex.getStackTrace()) {
+				IJ.log(ste.getClassName());
+				IJ.log(ste.getMethodName());
+				IJ.log("line:" + ste.getLineNumber());
+			}
+			IJ.log("Exception " + ex.getMessage());
+			if (runStage == 0){
+				IJ.error("Error during preprocessing.");
+			} else if (runStage == 1) {
+				IJ.error("Error during the aplication of the model.");
+			} else if (runStage == 2) {
+				IJ.error("Error during postprocessing.");
+			}
+			return null;
+		}
+	}
+	
+	/*
+	 * Save the images as tif and the tables as csv in the given folder,
+	 * used instead of displaying the outputs in headless mode
+	 */
+	private void saveOutputs(HashMap<String, Object> output, String dir) throws IOException {
+		for (String name : output.keySet()) {
+			Object f = output.get(name);
+			String path = new File(dir, name.replaceAll("[^A-Za-z0-9_.-]", "_")).getAbsolutePath();
+			if (f instanceof ImagePlus) {
+				IJ.saveAsTiff((ImagePlus) f, path + ".tif");
+				log.print("saved output " + path + ".tif");
+			} else if (f instanceof ResultsTable) {
+				((ResultsTable) f).saveAs(path + ".csv");
+				log.print("saved output " + path + ".csv");
+			}
+		}
+	}
+	
+	/*
+	 * Set the parameters for when no model is selected
+	 */
+	public void setGUIOriginalParameters() {
+		info.setText("Using Tensorflow Javascript 1.15.0 CPU");
+		choices[1].removeAll();
+		choices[1].addItem("-----------------Select format-----------------");
+		choices[2].removeAll();
+		choices[2].addItem("-----------Select preprocessing----------- ");
+		choices[3].removeAll();
+		choices[3].addItem("-----------Select postprocessing-----------");
+		texts[0].setText("");
+		texts[1].setText("");
+		texts[1].setEditable(false);
+		info.setCaretPosition(0);
+	}
+
+	/*
+	 * For a model whose model.yaml file does not contain the necessary information,
+	 * indicate which fields have missing information or are incorrect
+	 */
+	private void setUnavailableModelText(ArrayList<String> fieldsMissing) {
+		info.setText("\nThe selected model contains error in the model.yaml.\n");
+		info.append("The errors are in the following fields:\n");
+		for (String err : fieldsMissing)
+			info.append(" - " + err + "\n");
+		dlg.getButtons()[0].setEnabled(false);
+		info.setCaretPosition(0);
+	}
+
+
 }
\ No newline at end of file
@@ -52,17 +52,26 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import deepimagej.tools.BigTiffSink;
 import deepimagej.tools.DijTensor;
+import deepimagej.tools.MemoryPlanner;
+import deepimagej.tools.PaddedImage;
+import deepimagej.tools.RoiRestriction;
+import deepimagej.tools.TileBlender;
+import deepimagej.tools.TileClassifier;
 import deepimagej.tools.YamlParser;
 import deepimagej.tools.weights.ModelWeight;
 import ij.ImagePlus;
+import ij.gui.Roi;
 
-public class Parameters {
+public class Parameters implements Cloneable {
 
 	/*
 	 *  Directory where the model is located
@@ -163,6 +172,92 @@ public class Parameters {
 	 * always.
 	 */
 	public boolean allowPatching = true;
+	/*
+	 * Maximum number of tiles sent to the model runner before waiting
+	 * for the result of the oldest one. While the runner computes a tile,
+	 * the next one is extracted and the previous one is stitched.
+	 */
+	public int tilesInFlight = 2;
+	/*
+	 * Whether several tiles are stacked along the batch axis of
+	 * the model and sent to the model runner in a single call
+	 */
+	public boolean batchTiles = false;
+	/*
+	 * How the image is extended at the borders to compute the tiles
+	 * that fall partially outside of it. One of PaddedImage.MODES
+	 */
+	public String paddingMode = PaddedImage.REFLECT;
+	/*
+	 * How the overlapping regions of the tiles are combined. One of
+	 * TileBlender.MODES, "none" keeps only the valid region of each tile
+	 */
+	public String blending = TileBlender.NONE;
+	/*
+	 * Policy to find the background tiles, which skip the model and take its
+	 * response to a blank tile. One of TileClassifier.MODES
+	 */
+	public String backgroundTiles = TileClassifier.NONE;
+	/*
+	 * Maximum range of a constant tile or maximum value of a tile below
+	 * the threshold, depending on the background policy
+	 */
+	public double backgroundThreshold = 0;
+	/*
+	 * Memory in MB of the cache of the results of the tiles, shared by
+	 * the runs. 0 disables the cache
+	 */
+	public double tileCacheMB = 0;
+	/*
+	 * Folder where the cached results that do not fit in memory are
+	 * written. Empty to discard them
+	 */
+	public String tileCacheDir = "";
+	/*
+	 * Keep the outputs of the run so the next run of the model on the
+	 * same image only recomputes the tiles that have changed
+	 */
+	public boolean incrementalRun = false;
+	/*
+	 * Write the output images to BigTIFF files while the tiles are
+	 * stitched instead of keeping them in memory
+	 */
+	public boolean streamOutputs = false;
+	/*
+	 * Folder where the streamed outputs are written
+	 */
+	public String streamDir = "";
+	/*
+	 * Format of the streamed outputs, BigTIFF or one of ChunkedStore.FORMATS
+	 */
+	public String streamFormat = BigTiffSink.FORMAT;
+	/*
+	 * Compress the chunks of the outputs streamed to a chunked store
+	 */
+	public boolean gzipChunks = false;
+	/*
+	 * Region of the image that is processed, one of RoiRestriction.MODES
+	 */
+	public String roiMode = RoiRestriction.WHOLE_IMAGE;
+	/*
+	 * ROI the inference is restricted to, unless the whole image is processed
+	 */
+	public Roi roi = null;
+	/*
+	 * Run without displaying any image. The tiles and the outputs are
+	 * not shown, the outputs are only returned in the output map
+	 */
+	public boolean headless = false;
+	/*
+	 * Maximum time in ms to wait for the model runner to process
+	 * a tile. 0 to wait as long as needed
+	 */
+	public long tileTimeout = 0;
+	/*
+	 * Fraction of the free heap that a run can use. The default
+	 * tile size is reduced until the estimated memory of the run fits
+	 */
+	public double memoryFraction = MemoryPlanner.DEFAULT_FRACTION;
 	/*
 	 * Image used to test the model
 	 */
@@ -484,6 +579,9 @@ public class Parameters {
 		if (deepimagej != null) {
 			pyramidalNetwork = (boolean) deepimagej.get("pyramidal_model");
 			allowPatching = (boolean) deepimagej.get("allow_tiling");
+			// Optional field with the padding the model was trained with
+			if (deepimagej.get("padding_mode") != null)
+				paddingMode = ("" + deepimagej.get("padding_mode")).trim().toLowerCase();
 			// Model keys
 			if (deepimagej.keySet().contains("model_keys") && deepimagej.get("model_keys") != null) {
 				Map<String, Object> model_keys = (Map<String, Object>) deepimagej.get("model_keys");
@@ -764,6 +862,94 @@ public class Parameters {
 		
 	}
 	
+	/**
+	 * Create a copy of the parameters that can be modified without changing
+	 * the original ones. Lists, maps, arrays and tensors are copied, the
+	 * tensors shared by several lists are still shared in the copy.
+	 * The images and the weights are not copied
+	 * @return the copy
+	 */
+	public Parameters copy() {
+		Parameters copy;
+		try {
+			copy = (Parameters) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		copy.preprocessing = preprocessing == null ? null : preprocessing.clone();
+		copy.sampleInputs = sampleInputs == null ? null : sampleInputs.clone();
+		copy.javaPreprocessingClass = copyList(javaPreprocessingClass);
+		copy.javaPostprocessingClass = copyList(javaPostprocessingClass);
+		copy.preAttachments = copyList(preAttachments);
+		copy.postAttachments = copyList(postAttachments);
+		copy.attachments = copyList(attachments);
+		copy.tfAttachments = copyList(tfAttachments);
+		copy.ptAttachments = copyList(ptAttachments);
+		copy.tfAttachmentsNotIncluded = copyList(tfAttachmentsNotIncluded);
+		copy.ptAttachmentsNotIncluded = copyList(ptAttachmentsNotIncluded);
+		copy.fieldsMissing = copyList(fieldsMissing);
+		copy.infoTags = infoTags == null ? null : new ArrayList<String>(infoTags);
+		copy.graphSet = graphSet == null ? null : new HashSet<String>(graphSet);
+		copy.savedOutputs = copyMaps(savedOutputs);
+		copy.author = copyMaps(author);
+		copy.cite = copyMaps(cite);
+		copy.pre = copyProcessing(pre);
+		copy.post = copyProcessing(post);
+		IdentityHashMap<DijTensor, DijTensor> tensors = new IdentityHashMap<DijTensor, DijTensor>();
+		copy.inputList = copyTensors(inputList, tensors);
+		copy.outputList = copyTensors(outputList, tensors);
+		copy.totalInputList = copyTensors(totalInputList, tensors);
+		copy.totalOutputList = copyTensors(totalOutputList, tensors);
+		return copy;
+	}
+	
+	private static ArrayList<String> copyList(ArrayList<String> list) {
+		return list == null ? null : new ArrayList<String>(list);
+	}
+	
+	/*
+	 * Copy a list of dictionaries read from the yaml. The elements
+	 * that are not dictionaries are kept as they are
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<HashMap<String, String>> copyMaps(List<HashMap<String, String>> maps) {
+		if (maps == null)
+			return null;
+		List<Object> copy = new ArrayList<Object>();
+		for (Object map : maps) {
+			if (map instanceof Map)
+				copy.add(new LinkedHashMap<Object, Object>((Map<Object, Object>) map));
+			else
+				copy.add(map);
+		}
+		return (List<HashMap<String, String>>) (List<?>) copy;
+	}
+	
+	private static HashMap<String, String[]> copyProcessing(HashMap<String, String[]> processing) {
+		if (processing == null)
+			return null;
+		HashMap<String, String[]> copy = new HashMap<String, String[]>();
+		for (String key : processing.keySet())
+			copy.put(key, processing.get(key) == null ? null : processing.get(key).clone());
+		return copy;
+	}
+	
+	/*
+	 * Copy a list of tensors. A tensor that has already been copied
+	 * for another list is reused
+	 */
+	private static List<DijTensor> copyTensors(List<DijTensor> list, IdentityHashMap<DijTensor, DijTensor> copied) {
+		if (list == null)
+			return null;
+		List<DijTensor> copy = new ArrayList<DijTensor>();
+		for (DijTensor tensor : list) {
+			if (tensor != null && !copied.containsKey(tensor))
+				copied.put(tensor, tensor.copy());
+			copy.add(tensor == null ? null : copied.get(tensor));
+		}
+		return copy;
+	}
+	
 	/*
 	 * Method that checks which required fields of the yaml file are missing in the provided
 	 * file. It returns a list with the missing fields.
@@ -0,0 +1,217 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ij.IJ;
+
+/**
+ * Cache of the {@link Parameters} built from a model.yaml, so selecting a model
+ * again or running the same model from a macro does not parse the yaml again.
+ * The entries are identified by the SHA-256 of the raw yaml and the least
+ * recently used one is removed when the cache is full. The cache keeps its own
+ * copy of the parameters and always returns a new copy, so a run cannot change
+ * the cached values, for example the recommended patch.
+ * 
+ * Optionally, the raw yaml of each model can also be saved in the folder given
+ * by the system property {@value #SNAPSHOT_PROPERTY}. The model is then loaded
+ * from that folder in later selections and sessions instead of asking the
+ * model runner for it.
+ */
+public class ParametersCache {
+	
+	/*
+	 * System property with the folder where the yaml of the models is saved
+	 */
+	public static final String SNAPSHOT_PROPERTY = "deepimagej.cache.dir";
+	/*
+	 * Maximum number of models in the cache
+	 */
+	private static int capacity = 16;
+	private static int hits = 0;
+	private static int misses = 0;
+	
+	private static final LinkedHashMap<String, Parameters> cache = new LinkedHashMap<String, Parameters>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Parameters> eldest) {
+			return size() > capacity;
+		}
+	};
+	
+	/**
+	 * Get the parameters of a model.yaml, parsing it only if it is not in the cache
+	 * @param raw: content of the model.yaml
+	 * @return a copy of the parameters that the caller can modify
+	 * @throws Exception if the yaml cannot be parsed
+	 */
+	public static Parameters get(String raw) throws Exception {
+		String key = sha256(raw);
+		synchronized (cache) {
+			Parameters params = cache.get(key);
+			if (params != null) {
+				hits ++;
+				return params.copy();
+			}
+			misses ++;
+		}
+		Parameters params = new Parameters(raw);
+		synchronized (cache) {
+			cache.put(key, params);
+		}
+		return params.copy();
+	}
+	
+	/**
+	 * Set the maximum number of models kept in the cache
+	 */
+	public static void setCapacity(int maxModels) {
+		synchronized (cache) {
+			capacity = Math.max(0, maxModels);
+			while (cache.size() > capacity)
+				cache.remove(cache.keySet().iterator().next());
+		}
+	}
+	
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+			hits = 0;
+			misses = 0;
+		}
+	}
+	
+	/**
+	 * Information about the use of the cache, to be printed
+	 */
+	public static String getStats() {
+		synchronized (cache) {
+			return "Parameters cache: " + cache.size() + "/" + capacity + " models, " + hits + " hits, " + misses + " misses";
+		}
+	}
+	
+	/**
+	 * SHA-256 of a text, in hexadecimal
+	 */
+	public static String sha256(String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : hash)
+				sb.append(String.format("%02x", b & 0xff));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Whether the yaml of the models is saved to disk
+	 */
+	public static boolean isSnapshotEnabled() {
+		return System.getProperty(SNAPSHOT_PROPERTY) != null;
+	}
+	
+	/**
+	 * Read the yaml saved for a model
+	 * @param modelName: name of the model in the model runner
+	 * @return the raw yaml or null if it has not been saved or the snapshots are disabled
+	 */
+	public static String readSnapshot(String modelName) {
+		File file = snapshotFile(modelName);
+		if (file == null || !file.isFile())
+			return null;
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			IJ.log("Cannot read the cached yaml " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Save the yaml of a model, if the snapshots are enabled
+	 * @param modelName: name of the model in the model runner
+	 * @param raw: content of the model.yaml
+	 */
+	public static void writeSnapshot(String modelName, String raw) {
+		File file = snapshotFile(modelName);
+		if (file == null)
+			return;
+		try {
+			byte[] bytes = raw.getBytes(StandardCharsets.UTF_8);
+			if (file.isFile() && file.length() == bytes.length && raw.equals(readSnapshot(modelName)))
+				return;
+			file.getParentFile().mkdirs();
+			// Write to a temporary file first so that a snapshot is never half written
+			File tmp = new File(file.getPath() + ".tmp");
+			Files.write(tmp.toPath(), bytes);
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				tmp.renameTo(file);
+			}
+		} catch (IOException e) {
+			IJ.log("Cannot cache the yaml of " + modelName + ": " + e.getMessage());
+		}
+	}
+	
+	private static File snapshotFile(String modelName) {
+		String dir = System.getProperty(SNAPSHOT_PROPERTY);
+		if (dir == null)
+			return null;
+		// The name of the model can contain characters not allowed in file names
+		return new File(dir, sha256(modelName).substring(0, 16) + ".yaml");
+	}
+}
@@ -1,508 +1,1056 @@
-/*
- * DeepImageJ
- * 
- * https://deepimagej.github.io/deepimagej/
- *
- * Conditions of use: You are free to use this software for research or educational purposes. 
- * In addition, we expect you to include adequate citations and acknowledgments whenever you 
- * present or publish results that are based on it.
- * 
- * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
- * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
- * Submitted 2019.
- *
- * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
- * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
- *
- * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
- *
- */
-
-/*
- * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
- * 
- * This file is part of DeepImageJ.
- * 
- * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
- * the GNU General Public License as published by the Free Software Foundation, either 
- * version 3 of the License, or (at your option) any later version.
- * 
- * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
- * See the GNU General Public License for more details.
- * 
- * You should have received a copy of the GNU General Public License along with DeepImageJ. 
- * If not, see <http://www.gnu.org/licenses/>.
- */
-
-package deepimagej;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-
-import com.leaningtech.client.Global;
-
-import deepimagej.tools.ArrayOperations;
-import deepimagej.tools.CompactMirroring;
-import deepimagej.tools.DijTensor;
-import deepimagej.tools.Index;
-import deepimagej.tools.Log;
-import deepimagej.tools.NumFormat;
-import ij.IJ;
-import ij.ImagePlus;
-import ij.measure.ResultsTable;
-
-public class RunnerTf {
-
-	private HashMap<String,Object> 	inputMap;
-	private DeepImageJ				dp;
-	private Log						log;
-	private int						currentPatch = 0;
-	private int						totalPatch = 0;
-	private String 					modelName = "";
-	private Object 				runModelLock;
-
-	public RunnerTf(DeepImageJ dp,HashMap<String,Object> inputMap, String modelName, Log log) {
-		this.dp = dp;
-		this.log = log;
-		this.inputMap = inputMap;
-		this.modelName = modelName;
-		runModelLock = new Object();
-		log.print("constructor runner");
-	}
-
-	public HashMap<String, Object> call() {
-		
-		try {
-			log.print("call runner");
-			// if (log.getLevel() >= 1)
-				// rp.setVisible(true);
-	
-			Parameters params = dp.params;
-			ImagePlus imp = null;
-			// Auxiliary array with the same number of images as output tensors
-			int c = 0;
-			int inputImageInd = 0;
-			for (DijTensor tensor : params.inputList) {
-				if (tensor.tensorType.contains("image")) {
-					imp = getImageFromMap(inputMap, tensor);
-					if (imp == null) {
-						// rp.stop();
-						return null;
-					}
-					inputImageInd = c;
-				}
-				c ++;
-			}
-			
-			int outputImagesCount = 0;
-			for (DijTensor tensor : params.outputList) {
-				if (tensor.tensorType.contains("image"))
-					outputImagesCount ++;
-			}
-			ImagePlus[] outputImages = new ImagePlus[outputImagesCount];
-			List<ResultsTable> outputTables = new ArrayList<ResultsTable>();
-			
-			if (imp == null) {
-				// rp.stop();
-				return null;
-			}
-			int nx = imp.getWidth();
-			int ny = imp.getHeight();
-			int nc = imp.getNChannels();
-			int nz = imp.getNSlices();
-			log.print("image size " + nx + "x" + ny + "x" + nz);
-			int[] indices = new int[4];
-			String[] dimLetters = "XYCZ".split("");
-			for  (int i = 0; i < dimLetters.length; i ++)
-				indices[i] = Index.indexOf(params.inputList.get(inputImageInd).form.split(""), dimLetters[i]);
-	
-			int[] patchSize = {1, 1, 1, 1};
-			int[] step = {1, 1, 1, 1};
-			int[] minSize = {1, 1, 1, 1};
-			for (int i = 0; i < indices.length; i ++) {
-				if (indices[i] != -1) {
-					patchSize[i] = params.inputList.get(inputImageInd).recommended_patch[indices[i]];
-					step[i] = params.inputList.get(inputImageInd).step[indices[i]];
-					minSize[i] = params.inputList.get(inputImageInd).minimum_size[indices[i]];
-				}
-			}
-			
-			// TODO improve
-			if (params.pyramidalNetwork || !params.allowPatching) {
-				for (c = 0; c < patchSize.length; c ++) {
-					if (step[c] != 0 && patchSize[c] != imp.getDimensions()[c]) {
-						patchSize[c] = (int) Math.ceil((double) (imp.getDimensions()[c] - minSize[c]) / step[c]) * step[c] + minSize[c];
-					} else if (patchSize[c] < imp.getDimensions()[c] && step[c] == 0) {
-						String errorMsg = "This model only accepts images with input size smaller or equal to:";
-						for (int i = 0; i < dimLetters.length; i ++) {
-							errorMsg += "\n" + dimLetters[i] + " : " + patchSize[i];
-						}
-						IJ.error(errorMsg);
-						// rp.stop();
-						return null;
-					}
-				}
-			}
-			
-			int px = patchSize[0]; int py = patchSize[1]; int pc = patchSize[2]; int pz = patchSize[3]; 
-	
-			if (3 * nx < px || 3 * ny <py || 3 * nz < pz) {
-				IJ.log("Error patch size is too large.\n"
-						+ "Image Size: X = " + nx + ", Y = " + ny + ", Z = " + nz
-						+ "\n Patch Size: X = " + px + ", Y = " + py + ", Z = " + pz);
-				// rp.stop();
-				return null;
-			}
-			log.print("patch size " + "X: " +  px + ", Y: " +  py + ", Z: " +  pz + ", C: " +  pc);
-			
-			// To define the runtime for config.xml. Starting time
-			long startingTime = System.nanoTime();
-			// Create the image that is going to be fed to the graph
-			final ImagePlus[] impatch = new ImagePlus[outputImages.length];
-			
-			String[] outputTitles = new String[params.outputList.size()];
-			// Reset the counter to 0 use it again
-			c = 0;
-			for (DijTensor outName: params.outputList) {
-				outputTitles[c++] = outName.name  + " " + dp.params.name + " of " + imp.getTitle();
-			}
-	
-			// Order of the dimensions. For example "NHWC"-->Batch size, Height, Width, Channels
-			String inputForm = params.inputList.get(inputImageInd).form;
-			int channelPos = Index.indexOf(inputForm.split(""), "C");
-			int[] inDim = imp.getDimensions();
-			if (channelPos != -1 && params.inputList.get(inputImageInd).step[channelPos] == 0 && inDim[2] != params.inputList.get(inputImageInd).minimum_size[channelPos]) {
-				IJ.log("Error in nChannel.\n"
-						+ "Image should have " + params.inputList.get(inputImageInd).minimum_size[channelPos] 
-								+ " instead of " + inDim[2]);
-				// rp.stop();
-				return null;
-			}
-			// Get the padding in case the image needs any
-			int[] padding = new int[4];
-			if (!params.pyramidalNetwork) {
-				padding = findTotalPadding(params.outputList);
-			}
-			int roiX = px - padding[0] * 2;
-			int roiY = py - padding[1] * 2;
-			int roiZ = pz - padding[3] * 2;
-			int roiC = pc - padding[2] * 2;
-			int npx = (int) Math.ceil((double)nx / (double)roiX);
-			int npy = (int) Math.ceil((double)ny / (double)roiY);
-			int npc = (int) Math.ceil((double)nc / (double)roiC);
-			int npz = (int) Math.ceil((double)nz / (double)roiZ);
-			if (!params.allowPatching) {
-				npx = 1; npy = 1; npz = 1; npc = 1;
-			}
-			currentPatch = 0;
-			totalPatch = npx * npy * npz * npc;
-	
-			int[] roi = {roiX, roiY, roiC, roiZ};
-			int[] size = {nx, ny, nc, nz};
-			int[][] mirrorPixels = ArrayOperations.findAddedPixels(size, padding, roi);
-			ImagePlus mirrorImage = CompactMirroring.mirrorXY(imp, mirrorPixels[0][0], mirrorPixels[1][0],
-															  	   mirrorPixels[0][1], mirrorPixels[1][1],
-															       mirrorPixels[0][3], mirrorPixels[1][3]);
-			if (log.getLevel() == 3) {
-				mirrorImage.setTitle("Extended image");
-				mirrorImage.getProcessor().resetMinAndMax();
-				mirrorImage.show();
-			}
-			
-			// If the roi of the patch is bigger than the actual image wanted, consider all the
-			// remaining pixels as overlap (padding). Consider that now there might be then different
-			// padding for X and Y
-			int overlapX = mirrorPixels[0][0];
-			if (roiX > nx) {
-				roiX = nx;
-				padding[0] = (px - nx) / 2;
-				overlapX = (px - nx) / 2;
-			}
-			
-			int overlapY = mirrorPixels[0][1];
-			if (roiY > ny) {
-				roiY = ny;
-				padding[1] = (py - ny) / 2;
-				overlapY = (py - ny) / 2;
-			}
-			
-			int overlapZ = mirrorPixels[0][3];
-			if (roiZ > nz) {
-				roiZ = nz;
-				padding[3] = (pz - nz) / 2;
-				overlapZ = (pz - nz) / 2;
-			}
-
-			log.print("start " + npx + "x" + npy);
-			
-			for (int i = 0; i < npx; i++) {
-				for (int j = 0; j < npy; j++) {
-					for (int z = 0; z < npz; z++) {
-						// TODO reduce this mega big loop to something more modular
-						currentPatch++;
-						if (log.getLevel() >= 1)
-							log.print("currentPatch " + currentPatch);
-						// Variables to track when the roi starts in the mirror image
-						int xMirrorStartPatch;
-						int yMirrorStartPatch;
-						int zMirrorStartPatch;
-						
-						// Variables to track when the roi starts in the patch
-						int xImageStartPatch;
-						int xImageEndPatch;
-						int yImageStartPatch;
-						int yImageEndPatch;
-						int zImageStartPatch;
-						int zImageEndPatch;
-						int leftoverPixelsX;
-						int leftoverPixelsY;
-						int leftoverPixelsZ;
-						if (i < npx -1 || npx == 1) {
-							xMirrorStartPatch = padding[0] + roiX*i;
-		
-							xImageStartPatch = roiX*i;
-							xImageEndPatch = roiX*(i + 1);
-							leftoverPixelsX = overlapX;
-						} else {
-							xMirrorStartPatch = nx + padding[0] - roiX;
-		
-							xImageStartPatch = roiX*i;
-							xImageEndPatch = nx;
-							leftoverPixelsX = overlapX + roiX - (xImageEndPatch - xImageStartPatch);
-						}
-						
-						if (j < npy - 1 || npy == 1) {
-							yMirrorStartPatch = padding[1] + roiY*j;
-		
-							yImageStartPatch = roiY*j;
-							yImageEndPatch = roiY*(j + 1);
-							leftoverPixelsY = overlapY;
-						} else {
-							yMirrorStartPatch = ny + padding[1] - roiY;
-		
-							yImageStartPatch = roiY*j;
-							yImageEndPatch = ny;
-							leftoverPixelsY = overlapY + roiY - (yImageEndPatch - yImageStartPatch);
-						}
-						
-						if (z < npz - 1 || npz == 1) {
-							zMirrorStartPatch = padding[3] + roiZ*z;
-		
-							zImageStartPatch = roiZ*z;
-							zImageEndPatch = roiZ*(z + 1);
-							leftoverPixelsZ = overlapZ;
-						} else {
-							zMirrorStartPatch = nz + padding[3] - roiZ;
-		
-							zImageStartPatch = roiZ*z;
-							zImageEndPatch = nz;
-							leftoverPixelsZ = overlapZ + roiZ- (zImageEndPatch - zImageStartPatch);
-						}
-						
-						// TODO mirar en profundidad. Que pasa cuando el mirror no es igual de grande que le patch
-						// Observé que se compensaba erroneamente
-						ImagePlus patch = ArrayOperations.extractPatch(mirrorImage, patchSize, xMirrorStartPatch, yMirrorStartPatch,
-																		zMirrorStartPatch, overlapX, overlapY, overlapZ);
-						log.print("Extract Patch (" + (i + 1) + ", " + (j + 1) + ") patch size: " + patch.getWidth() + "x" + patch.getHeight() + " pixels");
-						if (log.getLevel() == 3) {
-							patch.setTitle("Patch (" + i + "," + j + ")");
-							patch.getProcessor().resetMinAndMax();
-						}
-						// TODO for the moment we assume one input / one output
-						runModelLock = new Object();
-						// Call the ImJoyModelRunner from the ImJoy API to run the TF model
-						IJ.log("Processing patch of size: " + Arrays.toString(patch.getDimensions()));
-						Global.jsCall("callPlugin", "ImJoyModelRunner", "predict", modelName, patch,  new Promise(){
-							public void resolveString(String result){
-								IJ.error("An error occurred trying to run the model using the ImJoy API, error:" + result);
-								runModelLock.notify();
-							}
-							public void resolveImagePlus(ImagePlus output){
-								// do postprocessing here with the output
-								output.setTitle("RAW OUTPUT");
-								output.show();
-								impatch[0] = output;
-								runModelLock.notify();
-							}
-			                public void reject(String error){
-			                    // show the error here
-								IJ.error("An error occurred trying to run the model using the ImJoy API, error:" + error);
-								runModelLock.notify();
-			                }
-			            });
-						try {
-							runModelLock.wait();
-						} catch (InterruptedException err) {
-							// TODO: throw the error
-							System.out.println(err.toString());
-						}
-						IJ.log("Finished patch " +  currentPatch + " of " + totalPatch);
-						float[][] allOffsets = findOutputOffset(params.outputList);
-						int imCounter = 0;
-						for (int counter = 0; counter < params.outputList.size(); counter++) {
-							if (params.outputList.get(counter).tensorType.contains("image") && !params.pyramidalNetwork && params.allowPatching) {
-								float[] outSize = findOutputSize(size, params.outputList.get(counter), params.inputList, impatch[imCounter].getDimensions());
-								if (outputImages[imCounter] == null) {
-									int[] dims = impatch[imCounter].getDimensions();
-									outputImages[imCounter] = IJ.createHyperStack(outputTitles[imCounter], (int)outSize[0], (int)outSize[1], (int)outSize[2], (int)outSize[3], dims[4], 32);
-									outputImages[imCounter].getProcessor().resetMinAndMax();
-									outputImages[imCounter].show();
-								}
-								float scaleX = outSize[0] / nx; float scaleY = outSize[1] / ny; float scaleZ = outSize[3] / nz;
-								ArrayOperations.imagePlusReconstructor(outputImages[imCounter], impatch[imCounter], (int) (xImageStartPatch * scaleX),
-										(int) (xImageEndPatch * scaleX), (int) (yImageStartPatch * scaleY), (int) (yImageEndPatch * scaleY),
-										(int) (zImageStartPatch * scaleZ), (int) (zImageEndPatch * scaleZ),(int)(leftoverPixelsX * scaleX + Math.ceil(allOffsets[imCounter][0])),
-										(int)(leftoverPixelsY * scaleY + Math.ceil(allOffsets[imCounter][1])), (int)(leftoverPixelsZ * scaleZ + Math.ceil(allOffsets[imCounter][3])));
-								if (outputImages[imCounter] != null)
-									outputImages[imCounter].getProcessor().resetMinAndMax();
-								// if (rp.isStopped()) {
-								// 	rp.stop();
-								// 	return null;
-								// }
-								imCounter ++;
-							}
-						}
-						log.print("Create Output ");
-					}
-				}
-			}
-			
-			// To define the runtime. End time
-			long endTime = System.nanoTime();
-			params.runtime = NumFormat.seconds(endTime - startingTime);
-			// Set Parameter params.memoryPeak
-			// rp.stop();
-			// Set Parameter  params.outputSize
-			HashMap<String, Object> outputMap = new HashMap<String, Object>();
-			int imageCount = 0;
-			int tableCount = 0;
-			c = 0;
-			for (DijTensor tensor : params.outputList) {
-				if (tensor.tensorType.contains("image")) {
-					ImagePlus im = outputImages[imageCount];
-					// Add the image to the output map
-					outputMap.put(tensor.name, im);
-				} else if (tensor.tensorType.contains("list")) {
-					// Add the results table to the output map
-					outputMap.put(tensor.name, outputTables.get(tableCount ++));
-					}
-			}
-			
-			
-			return outputMap;
-		} catch(IllegalArgumentException ex) {
-			ex.printStackTrace();	
-			IJ.log("Error applying the model");
-			IJ.log("The dimensions of the input are incorrect.");
-			IJ.log("The model might require only specific input sizes.");
-			IJ.log("Another of the possible options is that the model has an encoder decoder\n"
-					+ "architecture that requires input to be divisible a certain amount of times.");
-			IJ.log("Please review the model architecture and the step and patch parameters.");
-			// rp.stop();
-			return null;
-		} catch(IllegalStateException ex) {
-			ex.printStackTrace();	
-			IJ.log("Error applying the model");
-			IJ.log("Uninitialized weights.");
-			IJ.log("Check that the variables/weights folder contains a correct version of the weights");
-			// rp.stop();
-			return null;
-		} catch (Exception ex) {
-			// TODO MAKE THIS EXCEPTION MORE ESPECIFIC
-			ex.printStackTrace();	
-			IJ.log("Error applying the model");
-			IJ.log(ex.getMessage());
-			// rp.stop();
-			return null;
-		}
-	}
-	
-	private static ImagePlus getImageFromMap(HashMap<String, Object> inputMap, DijTensor tensor) {
-		if (!inputMap.containsKey(tensor.name)){
-			IJ.error("Preprocessing should provide a HashMap with\n"
-					+ "the key " + tensor.name);
-			return null;
-		} else if (!(inputMap.get(tensor.name) instanceof ImagePlus)) {
-			IJ.error("The input " + tensor.name + " should"
-					+ " be an instance of an ImagePlus.");
-			return null;
-		}
-		ImagePlus imp = (ImagePlus) inputMap.get(tensor.name);
-		return imp;
-	}
-	
-	private static float[] findOutputSize(int[] inpSize, DijTensor outTensor, List<DijTensor> inputList, int[] patchSize) {
-		String refForOutput = outTensor.referenceImage;
-		DijTensor refTensor = DijTensor.retrieveByName(refForOutput, inputList);
-		float[] outSize = new float[inpSize.length];
-		String[] standarForm = "XYCZ".split("");
-		for (int i = 0; i < outSize.length; i ++) {
-			int indOut = Index.indexOf(outTensor.form.split(""), standarForm[i]);
-			int indInp = Index.indexOf(refTensor.form.split(""), standarForm[i]);
-			if (indOut != -1 && indInp != -1) {
-				outSize[i] = inpSize[i] * outTensor.scale[indOut];
-			} else if (indOut != -1 && indInp == -1) {
-				outSize[i] = patchSize[i];
-			} else {
-				outSize[i] = 1;
-			}
-		}
-		return outSize;
-	}
-	
-	public static int[] findTotalPadding(List<DijTensor> outputs) {
-		// Create an object of int[] that contains the output dimensions
-		// of each patch.
-		// This dimensions are always of the form [x, y, c, d]
-		int[] padding = {0, 0, 0, 0};
-		String[] form = "XYCZ".split("");
-		for (DijTensor out: outputs) {
-			for (int i = 0; i < form.length; i ++) {
-				int ind = Index.indexOf(out.form.split(""), form[i]);
-				if (out.tensorType.contains("image") && ind != -1 && form[i].equals("B") == false) {
-					double totalPad = Math.ceil((double)out.offset[ind] / (double)out.scale[ind]) + Math.ceil((double)out.halo[ind] / (double)out.scale[ind]);
-					if ((int) totalPad > padding[i]) {
-						padding[i] = (int) totalPad;
-					}
-				}
-			}
-		}
-		return padding;
-	}
-	
-	// TODO clean up method (line 559) Make it stable for pyramidal
-	public static float[][] findOutputOffset(List<DijTensor> outputs) {
-		// Create an object of int[] that contains the output dimensions
-		// of each patch.
-		// This dimensions are always of the form [x, y, c, d]
-		float[][] offsets = new float[outputs.size()][4];
-		String[] form = "XYCZ".split("");
-		int c1 = 0;
-		for (DijTensor out: outputs) {
-			if (!out.tensorType.toLowerCase().equals("image"))
-				continue;
-			int c2 = 0;
-			for (int i = 0; i < offsets[0].length; i ++) {
-				int ind = Index.indexOf(out.form.split(""), form[i]);
-				if (ind != -1 && out.offset != null) {
-					offsets[c1][c2] = out.offset[ind];
-				}
-				c2 ++;
-			}
-			c1 ++;
-		}
-		return offsets;
-	}
-	
-	public int getCurrentPatch() {
-		return currentPatch;
-	}
-
-	public int getTotalPatch() {
-		return totalPatch;
-	}
-
-}
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ *
+ * Conditions of use: You are free to use this software for research or educational purposes. 
+ * In addition, we expect you to include adequate citations and acknowledgments whenever you 
+ * present or publish results that are based on it.
+ * 
+ * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2019.
+ *
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ *
+ * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
+ *
+ */
+
+/*
+ * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
+ * 
+ * This file is part of DeepImageJ.
+ * 
+ * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with DeepImageJ. 
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package deepimagej;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import deepimagej.runner.ModelRunner;
+import deepimagej.runner.PromiseFuture;
+import deepimagej.tools.ArrayOperations;
+import deepimagej.tools.AxisLayout;
+import deepimagej.tools.BigTiffSink;
+import deepimagej.tools.ChunkedSink;
+import deepimagej.tools.ChunkedSource;
+import deepimagej.tools.ChunkedStore;
+import deepimagej.tools.DijTensor;
+import deepimagej.tools.DisplayRange;
+import deepimagej.tools.ImageSource;
+import deepimagej.tools.IncrementalRun;
+import deepimagej.tools.InputSource;
+import deepimagej.tools.Log;
+import deepimagej.tools.MappedSource;
+import deepimagej.tools.MemoryPlanner;
+import deepimagej.tools.MemorySink;
+import deepimagej.tools.NumFormat;
+import deepimagej.tools.OutputSink;
+import deepimagej.tools.PaddedImage;
+import deepimagej.tools.RoiRestriction;
+import deepimagej.tools.Tile;
+import deepimagej.tools.TileBlender;
+import deepimagej.tools.TileClassifier;
+import deepimagej.tools.TileResultCache;
+import deepimagej.tools.TileBufferPool;
+import deepimagej.tools.TilePlan;
+import deepimagej.tools.TilePlanner;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.measure.ResultsTable;
+
+public class RunnerTf {
+	
+	/*
+	 * Minimum time in milliseconds between two refreshes of the
+	 * display of the outputs while they are being stitched
+	 */
+	private static final long		DISPLAY_REFRESH_MS = 500;
+	/*
+	 * Maximum number of background levels whose response is cached. The
+	 * background tiles of other levels go through the model
+	 */
+	private static final int		MAX_BACKGROUND_LEVELS = 8;
+
+	private HashMap<String,Object> 	inputMap;
+	private DeepImageJ				dp;
+	private Log						log;
+	private int						currentPatch = 0;
+	private int						totalPatch = 0;
+	private String 					modelName = "";
+	private ModelRunner				runner;
+	/*
+	 * Calls to the runner that have not finished yet
+	 */
+	private Set<CompletableFuture<ImagePlus>> pendingTiles = Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<ImagePlus>, Boolean>());
+	private ImagePlus[]				outputImages;
+	private String[]				outputTitles;
+	private DisplayRange[]			displayRanges;
+	private TileBufferPool			tilePool;
+	private TilePlan				plan;
+	/*
+	 * Blenders of the output images, null if the tiles are not blended
+	 */
+	private TileBlender[]			blenders;
+	/*
+	 * Frames of the input image. The frames are processed one after the
+	 * other with the same tile plan
+	 */
+	private int						nFrames = 1;
+	/*
+	 * Classifier of the background tiles, null if every tile goes through the model
+	 */
+	private TileClassifier			classifier;
+	/*
+	 * Response of the model to a blank tile of each background level
+	 */
+	private HashMap<Float, CompletableFuture<ImagePlus>> backgroundResponses = new HashMap<Float, CompletableFuture<ImagePlus>>();
+	/*
+	 * Results of the tiles of previous runs, null if they are not cached
+	 */
+	private TileResultCache			cache;
+	private String					weightsSha256 = "";
+	/*
+	 * Destinations of the stitched tiles of each output image
+	 */
+	private OutputSink[]			sinks;
+	/*
+	 * Whether the outputs are streamed to files instead of kept in memory
+	 */
+	private boolean					streaming;
+	/*
+	 * Tiles skipped before the sinks were created. The sinks are told about
+	 * them once they exist, so that their bands can be completed
+	 */
+	private List<TileJob>			skippedJobs = new ArrayList<TileJob>();
+
+	public RunnerTf(DeepImageJ dp,HashMap<String,Object> inputMap, String modelName, Log log) {
+		this(dp, inputMap, modelName, log, ModelRunner.getDefault());
+	}
+
+	public RunnerTf(DeepImageJ dp,HashMap<String,Object> inputMap, String modelName, Log log, ModelRunner runner) {
+		this.runner = runner;
+		this.dp = dp;
+		this.log = log;
+		this.inputMap = inputMap;
+		this.modelName = modelName;
+		log.print("constructor runner");
+	}
+
+	public HashMap<String, Object> call() {
+		
+		try {
+			log.print("call runner");
+			// if (log.getLevel() >= 1)
+				// rp.setVisible(true);
+	
+			Parameters params = dp.params;
+			ImagePlus imp = null;
+			// The tiles are read from the source, the image is only used if
+			// the input is an ImagePlus
+			InputSource source = null;
+			// Auxiliary array with the same number of images as output tensors
+			int c = 0;
+			int inputImageInd = 0;
+			for (DijTensor tensor : params.inputList) {
+				if (tensor.tensorType.contains("image")) {
+					source = getSourceFromMap(inputMap, tensor);
+					imp = inputMap.get(tensor.name) instanceof ImagePlus ? (ImagePlus) inputMap.get(tensor.name) : null;
+					if (source == null) {
+						// rp.stop();
+						return null;
+					}
+					inputImageInd = c;
+				}
+				c ++;
+			}
+			
+			int outputImagesCount = 0;
+			for (DijTensor tensor : params.outputList) {
+				if (tensor.tensorType.contains("image"))
+					outputImagesCount ++;
+			}
+			outputImages = new ImagePlus[outputImagesCount];
+			displayRanges = new DisplayRange[outputImagesCount];
+			blenders = new TileBlender[outputImagesCount];
+			sinks = new OutputSink[outputImagesCount];
+			skippedJobs.clear();
+			List<ResultsTable> outputTables = new ArrayList<ResultsTable>();
+			
+			if (source == null) {
+				// rp.stop();
+				return null;
+			}
+			int[] inputSize = source.getSize();
+			int nx = inputSize[0];
+			int ny = inputSize[1];
+			int nc = inputSize[2];
+			int nz = inputSize[3];
+			nFrames = inputSize[4];
+			if (source instanceof MappedSource)
+				IJ.log("The tiles are read from the " + source);
+			log.print("image size " + nx + "x" + ny + "x" + nz + ", frames " + nFrames);
+			// Position of the axes [x, y, c, z] in the input tensor
+			AxisLayout inputLayout = params.inputList.get(inputImageInd).getLayout();
+			int[] indices = new int[4];
+			for (int i = 0; i < indices.length; i ++)
+				indices[i] = inputLayout.indexOf(i);
+	
+			int[] patchSize = {1, 1, 1, 1};
+			int[] step = {1, 1, 1, 1};
+			int[] minSize = {1, 1, 1, 1};
+			for (int i = 0; i < indices.length; i ++) {
+				if (indices[i] != -1) {
+					patchSize[i] = params.inputList.get(inputImageInd).recommended_patch[indices[i]];
+					step[i] = params.inputList.get(inputImageInd).step[indices[i]];
+					minSize[i] = params.inputList.get(inputImageInd).minimum_size[indices[i]];
+				}
+			}
+			
+			// TODO improve
+			if (params.pyramidalNetwork || !params.allowPatching) {
+				for (c = 0; c < patchSize.length; c ++) {
+					if (step[c] != 0 && patchSize[c] != inputSize[c]) {
+						patchSize[c] = (int) Math.ceil((double) (inputSize[c] - minSize[c]) / step[c]) * step[c] + minSize[c];
+					} else if (patchSize[c] < inputSize[c] && step[c] == 0) {
+						String errorMsg = "This model only accepts images with input size smaller or equal to:";
+						for (int i = 0; i < patchSize.length; i ++) {
+							errorMsg += "\n" + AxisLayout.AXES.charAt(i) + " : " + patchSize[i];
+						}
+						IJ.error(errorMsg);
+						// rp.stop();
+						return null;
+					}
+				}
+			}
+			
+			int px = patchSize[0]; int py = patchSize[1]; int pc = patchSize[2]; int pz = patchSize[3]; 
+	
+			if (3 * nx < px || 3 * ny <py || 3 * nz < pz) {
+				IJ.log("Error patch size is too large.\n"
+						+ "Image Size: X = " + nx + ", Y = " + ny + ", Z = " + nz
+						+ "\n Patch Size: X = " + px + ", Y = " + py + ", Z = " + pz);
+				// rp.stop();
+				return null;
+			}
+			log.print("patch size " + "X: " +  px + ", Y: " +  py + ", Z: " +  pz + ", C: " +  pc);
+			
+			// To define the runtime for config.xml. Starting time
+			long startingTime = System.nanoTime();
+			outputTitles = new String[params.outputList.size()];
+			// Reset the counter to 0 use it again
+			c = 0;
+			for (DijTensor outName: params.outputList) {
+				outputTitles[c++] = outName.name  + " " + dp.params.name + " of " + source.getTitle();
+			}
+	
+			// Order of the dimensions. For example "NHWC"-->Batch size, Height, Width, Channels
+			int channelPos = inputLayout.indexOf(AxisLayout.C);
+			int[] inDim = inputSize;
+			if (channelPos != -1 && params.inputList.get(inputImageInd).step[channelPos] == 0 && inDim[2] != params.inputList.get(inputImageInd).minimum_size[channelPos]) {
+				IJ.log("Error in nChannel.\n"
+						+ "Image should have " + params.inputList.get(inputImageInd).minimum_size[channelPos] 
+								+ " instead of " + inDim[2]);
+				// rp.stop();
+				return null;
+			}
+			// Get the padding in case the image needs any
+			int[] padding = new int[4];
+			// The streamed outputs are written band after band, a band cannot be
+			// written while the tiles of the next one still have to be blended into it
+			streaming = params.streamOutputs && params.allowPatching && !params.pyramidalNetwork;
+			if (streaming && TileBlender.isBlending(params.blending))
+				IJ.log("The tiles are not blended when the outputs are streamed to disk.");
+			boolean blending = TileBlender.isBlending(params.blending) && params.allowPatching && !streaming;
+			if (!params.pyramidalNetwork && blending) {
+				padding = findBlendingPadding(params.outputList);
+			} else if (!params.pyramidalNetwork) {
+				padding = findTotalPadding(params.outputList);
+			}
+			// With a ROI only its bounding box is tiled
+			RoiRestriction restriction = null;
+			int[] region = {nx, ny, nc, nz};
+			if (!params.roiMode.equals(RoiRestriction.WHOLE_IMAGE) && params.roi != null && params.allowPatching && !params.pyramidalNetwork) {
+				restriction = new RoiRestriction(params.roi, nx, ny);
+				region = new int[] {restriction.getBounds().width, restriction.getBounds().height, nc, nz};
+				IJ.log("Processing the " + restriction);
+			}
+			// The tiles of a chunked input read whole chunks when their valid
+			// regions start at the borders of the chunks
+			if (source instanceof ChunkedSource && params.allowPatching && !params.pyramidalNetwork) {
+				int[] origin = restriction == null ? new int[3] : restriction.getOrigin();
+				int[] aligned = TilePlanner.alignToChunks(patchSize, padding, ((ChunkedSource) source).getChunkSize(), minSize, step, region, origin);
+				if (!Arrays.equals(aligned, patchSize))
+					IJ.log("Tile size changed from " + Arrays.toString(patchSize) + " to " + Arrays.toString(aligned)
+							+ " (XYCZ) to align the tiles to the chunks of the input");
+				patchSize = aligned;
+			}
+			plan = TilePlanner.plan(region, patchSize, padding, params.allowPatching,
+											 params.inputList, params.outputList);
+			if (source instanceof ChunkedSource)
+				((ChunkedSource) source).setCacheSize(findChunkCacheSize((ChunkedSource) source, plan, MemoryPlanner.getBudget(params.memoryFraction)));
+			currentPatch = 0;
+			totalPatch = plan.size() * nFrames;
+	
+			int[] size = plan.getImageSize();
+			// The padded image is not created, the tiles that touch the border
+			// are padded when they are extracted
+			PaddedImage paddedImage = new PaddedImage(source, plan.getAddedPixels(), params.paddingMode);
+			if (restriction != null)
+				paddedImage.setOrigin(restriction.getOrigin());
+			if (log.getLevel() == 3) {
+				ImagePlus mirrorImage = paddedImage.materialize();
+				mirrorImage.setTitle("Extended image");
+				mirrorImage.getProcessor().resetMinAndMax();
+				mirrorImage.show();
+			}
+
+			log.print("start " + plan);
+			IJ.log(String.format("Processing %d tiles, redundancy of the tiling (computed voxels per voxel of the image): %.2f",
+								 plan.size(), plan.getRedundancy()));
+			if (nFrames > 1)
+				IJ.log("The " + nFrames + " frames are processed one after the other with the same tiles");
+			// Batches of tiles that have already been sent to the model runner. The
+			// callbacks of the runner put each batch here as soon as its result is
+			// ready, so the batches are stitched in the order they finish
+			LinkedBlockingQueue<List<TileJob>> computedTiles = new LinkedBlockingQueue<List<TileJob>>();
+			int inFlight = Math.max(1, params.tilesInFlight);
+			int dispatched = 0;
+			int stitched = 0;
+			int maskedTiles = 0;
+			int nTiles = plan.size();
+			double memoryBudget = MemoryPlanner.getBudget(params.memoryFraction);
+			boolean caching = params.tileCacheMB > 0 && params.allowPatching && !params.pyramidalNetwork;
+			double cacheBytes = caching ? params.tileCacheMB * 1024 * 1024 : 0;
+			boolean materializePadding = log.getLevel() == 3;
+			int batchSize = 1;
+			if (params.batchTiles && params.allowPatching) {
+				// The batches in flight share the memory left by the outputs, the
+				// padded image and the tile cache
+				MemoryPlanner.Estimate single = MemoryPlanner.estimate(size, nFrames, patchSize, padding, params.inputList, params.outputList,
+																		inFlight, 1, blending, streaming, materializePadding, cacheBytes);
+				double fixedBytes = single.getOutputBytes() + single.getPaddingBytes() + single.getCacheBytes();
+				batchSize = findBatchSize(params.inputList.get(inputImageInd), params.outputList, patchSize, nTiles,
+										  Math.max(0, memoryBudget - fixedBytes) / inFlight);
+			}
+			log.print("batch size " + batchSize);
+			// Report the memory the run is expected to need before sending any tile
+			MemoryPlanner.Estimate memory = MemoryPlanner.estimate(size, nFrames, patchSize, padding, params.inputList, params.outputList,
+																	inFlight, batchSize, blending, streaming, materializePadding, cacheBytes);
+			IJ.log("Estimated memory of the run with " + memory + ", available: " + NumFormat.bytes(memoryBudget));
+			if (memory.getTotal() > memoryBudget)
+				IJ.log("Warning: the run might not fit in memory, consider a smaller tile size or less tiles in flight.");
+			List<TileJob> batchJobs = new ArrayList<TileJob>();
+			List<ImagePlus> batchPatches = new ArrayList<ImagePlus>();
+			// Buffers for the tiles that are in the runner and the one being extracted
+			tilePool = new TileBufferPool(patchSize, inFlight * batchSize + 1);
+			
+			classifier = null;
+			backgroundResponses.clear();
+			weightsSha256 = params.weights == null ? "" : params.weights.getWeightsSha256();
+			cache = null;
+			if (caching) {
+				File spillDir = params.tileCacheDir.trim().equals("") ? null : new File(params.tileCacheDir.trim());
+				cache = TileResultCache.getShared((long) (params.tileCacheMB * 1024 * 1024), spillDir);
+				cache.resetStatistics();
+			}
+			// The blended value of a pixel depends on all the tiles that cover it,
+			// so a tile cannot be replaced alone in a blended output
+			IncrementalRun incremental = null;
+			if (params.incrementalRun && streaming)
+				IJ.log("The incremental run is not available when the outputs are streamed to disk, every tile is computed.");
+			else if (params.incrementalRun && blending)
+				IJ.log("The incremental run is not available when the tiles are blended, every tile is computed.");
+			else if (params.incrementalRun && imp == null)
+				IJ.log("The incremental run is only available when the input is an image, every tile is computed.");
+			else if (params.incrementalRun && restriction != null)
+				IJ.log("The incremental run is not available when the inference is restricted to a ROI, every tile is computed.");
+			else if (params.incrementalRun && params.allowPatching && !params.pyramidalNetwork) {
+				String signature = IncrementalRun.getSignature(modelName, weightsSha256, plan, params.paddingMode, nFrames,
+																 params.backgroundTiles, params.backgroundThreshold);
+				incremental = IncrementalRun.start(imp, signature, plan, nFrames, outputImages.length);
+				ImagePlus[] previousOutputs = incremental.getPreviousOutputs();
+				for (int i = 0; previousOutputs != null && i < previousOutputs.length; i ++) {
+					// The recomputed tiles are stitched into the outputs of the last run
+					outputImages[i] = previousOutputs[i];
+					displayRanges[i] = new DisplayRange(outputImages[i], DISPLAY_REFRESH_MS);
+					displayRanges[i].include(outputImages[i].getDisplayRangeMin(), outputImages[i].getDisplayRangeMax());
+					if (!params.headless)
+						outputImages[i].show();
+				}
+			}
+			if (TileClassifier.isSkipping(params.backgroundTiles) && params.allowPatching && !params.pyramidalNetwork)
+				classifier = new TileClassifier(params.backgroundTiles, params.backgroundThreshold);
+			// Only the tiles of the current frame are extracted, the plan and the
+			// tile buffers are reused for every frame
+			for (int frame = 0; frame < nFrames; frame ++) {
+				paddedImage.setFrame(frame);
+				// The streamed outputs are completed one row of tiles after the other
+				List<Tile> tiles = streaming ? plan.inRowOrder() : plan;
+				for (int t = 0; t < tiles.size(); t ++) {
+					Tile tile = tiles.get(t);
+					boolean lastTile = t == tiles.size() - 1;
+					if (log.getLevel() >= 1)
+						log.print("currentPatch " + (tile.getIndex() + 1) + (nFrames > 1 ? ", frame " + (frame + 1) : ""));
+					int[] position = tile.getPosition();
+					TileJob job = new TileJob(tile, frame, outputImages.length);
+					// The tiles outside of the mask of the ROI are not extracted, they stay empty
+					boolean unchanged = restriction != null && !restriction.intersects(tile);
+					if (unchanged)
+						maskedTiles ++;
+					if (!unchanged) {
+						ImagePlus patch = paddedImage.extractPatch(tile, plan, tilePool);
+						job.patch = patch;
+						log.print("Extract Patch (" + (position[0] + 1) + ", " + (position[1] + 1) + ") patch size: " + patch.getWidth() + "x" + patch.getHeight() + " pixels");
+						if (log.getLevel() == 3) {
+							patch.setTitle("Patch (" + position[0] + "," + position[1] + ")");
+							patch.getProcessor().resetMinAndMax();
+						}
+						unchanged = incremental != null && incremental.isUnchanged(frame, tile, patch);
+						if (unchanged) {
+							tilePool.release(patch);
+							job.patch = null;
+						}
+					}
+					// Nothing is stitched for the skipped tiles
+					if (unchanged) {
+						if (!skipTile(job))
+							return null;
+						if (!lastTile || batchJobs.isEmpty())
+							continue;
+					}
+					// Background tiles do not go through the model, they take the cached
+					// response to a blank tile and are stitched as any other tile
+					// The same happens with the tiles whose result is cached
+					else if ((classifier != null && skipBackground(job, batchSize == 1 ? 1 : completeBatchSize(params.inputList.get(inputImageInd), 1), computedTiles))
+						|| (cache != null && takeCached(job, computedTiles))) {
+						dispatched ++;
+						if (!lastTile || batchJobs.isEmpty())
+							continue;
+					} else {
+						batchJobs.add(job);
+						batchPatches.add(job.patch);
+						if (batchJobs.size() < batchSize && !lastTile)
+							continue;
+					}
+					// Keep at most 'inFlight' batches in the runner. The batch that has just
+					// been extracted waits while the oldest computed batch is stitched
+					while (dispatched - stitched >= inFlight) {
+						if (!stitchBatch(computedTiles.take(), size))
+							return null;
+						stitched ++;
+					}
+					// Call the ImJoyModelRunner from the ImJoy API to run the TF model
+					IJ.log("Processing " + batchJobs.size() + " patch(es) of size: " + Arrays.toString(batchPatches.get(0).getDimensions()));
+					int callSize = batchSize == 1 ? 1 : completeBatchSize(params.inputList.get(inputImageInd), batchJobs.size());
+					predict(batchJobs, batchPatches, callSize, computedTiles);
+					dispatched ++;
+					batchJobs = new ArrayList<TileJob>();
+					batchPatches = new ArrayList<ImagePlus>();
+					// if (rp.isStopped()) {
+					// 	rp.stop();
+					// 	return null;
+					// }
+				}
+				// Without blending each tile knows its frame, so the next frame is
+				// extracted while the runner finishes this one. The blenders accumulate
+				// one frame at a time, so all its tiles are stitched before moving on
+				if (frame < nFrames - 1 && !blending)
+					continue;
+				while (stitched < dispatched) {
+					if (!stitchBatch(computedTiles.take(), size))
+						return null;
+					stitched ++;
+				}
+				// Normalise the blended frame once all its tiles have been added
+				for (TileBlender blender : blenders) {
+					if (blender != null) {
+						blender.finish();
+						blender.setFrame(frame + 1);
+					}
+				}
+			}
+			// The bands that are still in memory are written and the files completed
+			Object[] streamedOutputs = new Object[sinks.length];
+			for (int i = 0; streaming && i < sinks.length; i ++) {
+				if (sinks[i] == null)
+					continue;
+				streamedOutputs[i] = sinks[i].finish();
+				if (sinks[i] instanceof ChunkedSink)
+					IJ.log("Output written to " + streamedOutputs[i] + ", " + ((ChunkedSink) sinks[i]).getWrittenChunks()
+							+ " chunk(s) written, at most " + ((ChunkedSink) sinks[i]).getMaxChunks() + " kept in memory");
+				else
+					IJ.log("Output written to " + streamedOutputs[i] + ", at most " + ((BigTiffSink) sinks[i]).getMaxBands()
+							+ " band(s) of tiles were kept in memory");
+			}
+			if (source instanceof ChunkedSource)
+				IJ.log("Read the " + source);
+			if (classifier != null)
+				IJ.log(classifier + ", " + backgroundResponses.size() + " call(s) to the model for the background response");
+			if (cache != null)
+				IJ.log(cache.toString());
+			if (incremental != null) {
+				IJ.log(incremental.toString());
+				incremental.finish(imp, outputImages);
+			}
+			if (maskedTiles > 0)
+				IJ.log(maskedTiles + " of " + totalPatch + " tiles skipped outside of the mask of the ROI");
+			log.print("Create Output ");
+			// Show the outputs with the range of all the stitched tiles
+			for (DisplayRange range : displayRanges) {
+				if (range != null)
+					range.apply();
+			}
+			if (restriction != null && params.roiMode.equals(RoiRestriction.FULL_SIZE) && streaming)
+				IJ.log("The streamed outputs keep the size of the bounding box of the ROI.");
+			// Place the outputs of the ROI in images of the size of the input
+			for (int i = 0; restriction != null && params.roiMode.equals(RoiRestriction.FULL_SIZE) && i < outputImages.length; i ++) {
+				if (outputImages[i] == null)
+					continue;
+				ImagePlus cropped = outputImages[i];
+				outputImages[i] = restriction.toFullSize(cropped, plan.getScale(i));
+				if (!params.headless) {
+					cropped.changes = false;
+					cropped.close();
+					outputImages[i].show();
+				}
+			}
+			
+			// To define the runtime. End time
+			long endTime = System.nanoTime();
+			params.runtime = NumFormat.seconds(endTime - startingTime);
+			// Set Parameter params.memoryPeak
+			// rp.stop();
+			// Set Parameter  params.outputSize
+			HashMap<String, Object> outputMap = new HashMap<String, Object>();
+			int imageCount = 0;
+			int tableCount = 0;
+			c = 0;
+			for (DijTensor tensor : params.outputList) {
+				if (tensor.tensorType.contains("image")) {
+					// Add the image to the output map, or its file if it was streamed
+					Object im = streaming ? streamedOutputs[imageCount] : outputImages[imageCount];
+					outputMap.put(tensor.name, im);
+					imageCount ++;
+				} else if (tensor.tensorType.contains("list")) {
+					// Add the results table to the output map
+					outputMap.put(tensor.name, outputTables.get(tableCount ++));
+					}
+			}
+			
+			
+			return outputMap;
+		} catch(IllegalArgumentException ex) {
+			ex.printStackTrace();	
+			IJ.log("Error applying the model");
+			IJ.log("The dimensions of the input are incorrect.");
+			IJ.log("The model might require only specific input sizes.");
+			IJ.log("Another of the possible options is that the model has an encoder decoder\n"
+					+ "architecture that requires input to be divisible a certain amount of times.");
+			IJ.log("Please review the model architecture and the step and patch parameters.");
+			// rp.stop();
+			return null;
+		} catch(IllegalStateException ex) {
+			ex.printStackTrace();	
+			IJ.log("Error applying the model");
+			IJ.log("Uninitialized weights.");
+			IJ.log("Check that the variables/weights folder contains a correct version of the weights");
+			// rp.stop();
+			return null;
+		} catch (Exception ex) {
+			// TODO MAKE THIS EXCEPTION MORE ESPECIFIC
+			ex.printStackTrace();	
+			IJ.log("Error applying the model");
+			IJ.log(ex.getMessage());
+			// rp.stop();
+			return null;
+		} finally {
+			// Nothing waits for the tiles that are still being computed
+			for (CompletableFuture<ImagePlus> future : pendingTiles)
+				future.cancel(true);
+		}
+	}
+	
+	
+	/*
+	 * Send a batch of tiles to the ImJoyModelRunner. The tiles are stacked
+	 * along the T axis, which is the batch axis for the runner. If the batch
+	 * has less tiles than 'batchSize', the last tile is repeated to complete it.
+	 * The call does not block, the batch is added to 'computedTiles' once the
+	 * runner has finished with it, has failed or has not answered in time
+	 */
+	private void predict(List<TileJob> jobs, List<ImagePlus> patches, int batchSize, LinkedBlockingQueue<List<TileJob>> computedTiles) {
+		ImagePlus input = patches.get(0);
+		if (batchSize > 1) {
+			while (patches.size() < batchSize)
+				patches.add(patches.get(patches.size() - 1));
+			input = ArrayOperations.stackBatch(patches);
+		}
+		// TODO for the moment we assume one input / one output
+		CompletableFuture<ImagePlus> future = PromiseFuture.withTimeout(runner.predictAsync(modelName, input), dp.params.tileTimeout);
+		pendingTiles.add(future);
+		future.whenComplete((output, error) -> {
+			pendingTiles.remove(future);
+			if (error != null) {
+				for (TileJob job : jobs)
+					job.error = PromiseFuture.getMessage(error);
+				computedTiles.add(jobs);
+				return;
+			}
+			// do postprocessing here with the output
+			if (!dp.params.headless) {
+				output.setTitle("RAW OUTPUT");
+				output.show();
+			}
+			ImagePlus[] outputs = new ImagePlus[] {output};
+			if (batchSize > 1)
+				outputs = ArrayOperations.splitBatch(output, batchSize);
+			for (int i = 0; i < jobs.size(); i ++) {
+				if (outputs == null)
+					jobs.get(i).error = "the output does not contain " + batchSize + " tiles along the batch axis";
+				else
+					jobs.get(i).outputs[0] = outputs[i];
+			}
+			computedTiles.add(jobs);
+		});
+	}
+	
+	/*
+	 * Check whether the tile of a job is background. If it is, the input tile is
+	 * released and the job is added to 'computedTiles' with the response of the
+	 * model to a blank tile of the same level, which is only computed the first
+	 * time the level is found. Returns false if the tile has to go through the model
+	 */
+	private boolean skipBackground(TileJob job, int batchSize, LinkedBlockingQueue<List<TileJob>> computedTiles) {
+		double[] stats = TileClassifier.getStatistics(job.patch);
+		if (!classifier.isBackground(stats))
+			return false;
+		float level = classifier.getBackgroundLevel(stats);
+		CompletableFuture<ImagePlus> response = backgroundResponses.get(level);
+		if (response == null && backgroundResponses.size() >= MAX_BACKGROUND_LEVELS) {
+			classifier.unskip();
+			return false;
+		}
+		if (response == null) {
+			response = predictBackground(job.patch.getDimensions(), level, batchSize);
+			backgroundResponses.put(level, response);
+		}
+		tilePool.release(job.patch);
+		job.patch = null;
+		response.whenComplete((output, error) -> {
+			if (error != null)
+				job.error = PromiseFuture.getMessage(error);
+			else if (output == null)
+				job.error = "the output does not contain " + batchSize + " tiles along the batch axis";
+			else
+				job.outputs[0] = output;
+			computedTiles.add(Collections.singletonList(job));
+		});
+		return true;
+	}
+	
+	/*
+	 * Look for the result of the tile of a job in the cache. If it is there, the
+	 * input tile is released and the job is added to 'computedTiles' with the
+	 * cached result. Otherwise the key is kept to cache the result once it is
+	 * stitched. Returns false if the tile has to go through the model
+	 */
+	private boolean takeCached(TileJob job, LinkedBlockingQueue<List<TileJob>> computedTiles) {
+		String key = TileResultCache.getKey(modelName, weightsSha256, job.patch);
+		ImagePlus result = cache.get(key);
+		if (result == null) {
+			job.cacheKey = key;
+			return false;
+		}
+		tilePool.release(job.patch);
+		job.patch = null;
+		job.outputs[0] = result;
+		computedTiles.add(Collections.singletonList(job));
+		return true;
+	}
+	
+	/*
+	 * Send to the model runner a tile of size 'dims' where every pixel is 'level'.
+	 * The tile is repeated 'batchSize' times along the batch axis
+	 */
+	private CompletableFuture<ImagePlus> predictBackground(int[] dims, float level, int batchSize) {
+		ImagePlus blank = IJ.createImage("background", "32-bit", dims[0], dims[1], dims[2], dims[3], 1);
+		for (int i = 1; i <= blank.getStackSize(); i ++)
+			Arrays.fill((float[]) blank.getStack().getPixels(i), level);
+		ImagePlus input = blank;
+		if (batchSize > 1)
+			input = ArrayOperations.stackBatch(Collections.nCopies(batchSize, blank));
+		CompletableFuture<ImagePlus> future = PromiseFuture.withTimeout(runner.predictAsync(modelName, input), dp.params.tileTimeout);
+		pendingTiles.add(future);
+		future.whenComplete((output, error) -> pendingTiles.remove(future));
+		if (batchSize == 1)
+			return future;
+		return future.thenApply(output -> {
+			ImagePlus[] outputs = ArrayOperations.splitBatch(output, batchSize);
+			return outputs == null ? null : outputs[0];
+		});
+	}
+	
+	/*
+	 * Stitch all the tiles of a batch computed by the model runner.
+	 * Returns false if the runner could not process the batch
+	 */
+	private boolean stitchBatch(List<TileJob> jobs, int[] size) {
+		for (TileJob job : jobs) {
+			if (!stitchTile(job, size))
+				return false;
+			if (job.cacheKey != null)
+				cache.put(job.cacheKey, job.outputs[0]);
+			// The runner does not need the input tile anymore
+			tilePool.release(job.patch);
+			job.patch = null;
+		}
+		return true;
+	}
+	
+	/*
+	 * Insert the valid region of a computed tile into the output images.
+	 * Returns false if the runner could not process the tile
+	 */
+	private boolean stitchTile(TileJob job, int[] size) {
+		if (job.outputs[0] == null) {
+			// show the error here
+			IJ.error("An error occurred trying to run the model using the ImJoy API, error:" + job.error);
+			return false;
+		}
+		currentPatch ++;
+		IJ.log("Finished patch " +  currentPatch + " of " + totalPatch);
+		Parameters params = dp.params;
+		int imCounter = 0;
+		for (int counter = 0; counter < params.outputList.size(); counter++) {
+			if (params.outputList.get(counter).tensorType.contains("image") && !params.pyramidalNetwork && params.allowPatching) {
+				ImagePlus impatch = job.outputs[imCounter];
+				float[] outSize = findOutputSize(size, params.outputList.get(counter), params.inputList, impatch.getDimensions());
+				int[] dims = impatch.getDimensions();
+				// The axes that the reference input does not have take the size of the first
+				// result. The tile of the job comes from the plan used to extract it
+				if (sinks[imCounter] == null)
+					plan = plan.withOutputPatch(imCounter, dims);
+				Tile tile = plan.get(job.tile.getIndex());
+				if (sinks[imCounter] == null && streaming) {
+					// Only the bands or the chunks of tiles that are not complete yet stay in memory
+					int[] outputSize = {(int)outSize[0], (int)outSize[1], (int)outSize[2], (int)outSize[3], dims[4] * nFrames};
+					String name = outputTitles[imCounter].replaceAll("[^A-Za-z0-9_.-]", "_");
+					boolean chunked = Arrays.asList(ChunkedStore.FORMATS).contains(params.streamFormat);
+					String extension = !chunked ? ".tif" : params.streamFormat.equals(ChunkedStore.N5) ? ".n5" : ".zarr";
+					File file = new File(params.streamDir, name + extension);
+					try {
+						if (chunked)
+							sinks[imCounter] = new ChunkedSink(file, params.streamFormat, outputSize, plan, imCounter, params.gzipChunks);
+						else
+							sinks[imCounter] = new BigTiffSink(file, outputSize, plan, imCounter);
+					} catch (IOException ex) {
+						IJ.error("Cannot create the output file " + file + ":\n" + ex.getMessage());
+						return false;
+					}
+				} else if (sinks[imCounter] == null) {
+					// The outputs of the last run are reused by the incremental run
+					if (outputImages[imCounter] == null) {
+						outputImages[imCounter] = IJ.createHyperStack(outputTitles[imCounter], (int)outSize[0], (int)outSize[1], (int)outSize[2], (int)outSize[3], dims[4] * nFrames, 32);
+						displayRanges[imCounter] = new DisplayRange(outputImages[imCounter], DISPLAY_REFRESH_MS);
+						if (TileBlender.isBlending(params.blending))
+							blenders[imCounter] = new TileBlender(outputImages[imCounter], plan, imCounter, params.blending);
+						if (!params.headless)
+							outputImages[imCounter].show();
+					}
+					sinks[imCounter] = new MemorySink(outputImages[imCounter]);
+				}
+				int[] start = tile.getDestinationStart(imCounter);
+				int[] end = tile.getDestinationEnd(imCounter);
+				int[] leftover = tile.getDestinationOffset(imCounter);
+				try {
+					if (blenders[imCounter] != null)
+						blenders[imCounter].add(tile, impatch);
+					else
+						sinks[imCounter].insert(impatch, start, end, leftover, job.frame);
+					sinks[imCounter].tileDone(tile, job.frame);
+				} catch (IOException ex) {
+					IJ.error("Cannot write the output " + outputTitles[imCounter] + ":\n" + ex.getMessage());
+					return false;
+				}
+				// Only the region of the tile that has been inserted is scanned,
+				// the output is never scanned completely
+				if (displayRanges[imCounter] != null)
+					displayRanges[imCounter].update(impatch, leftover[0], leftover[1], leftover[2], end[0] - start[0], end[1] - start[1], end[2] - start[2]);
+				// The blended output is not normalised until the last tile
+				if (!params.headless && blenders[imCounter] == null && displayRanges[imCounter] != null)
+					displayRanges[imCounter].refresh();
+				imCounter ++;
+			}
+		}
+		// The tiles skipped before the first output existed complete their bands now
+		if (streaming && !skippedJobs.isEmpty()) {
+			List<TileJob> skipped = new ArrayList<TileJob>(skippedJobs);
+			skippedJobs.clear();
+			for (TileJob skippedJob : skipped) {
+				if (!skipTile(skippedJob))
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Tell the streamed outputs that a tile has been skipped, so that the band
+	 * it belongs to can be written without it. The tiles skipped before the
+	 * outputs are created are kept until then. Returns false if a band cannot be written
+	 */
+	private boolean skipTile(TileJob job) {
+		if (!streaming)
+			return true;
+		for (int i = 0; i < sinks.length; i ++) {
+			if (sinks[i] == null) {
+				skippedJobs.add(job);
+				return true;
+			}
+		}
+		try {
+			for (OutputSink sink : sinks)
+				sink.tileDone(plan.get(job.tile.getIndex()), job.frame);
+		} catch (IOException ex) {
+			IJ.error("Cannot write the output:\n" + ex.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Source the tiles of an input are read from. The virtual stacks of
+	 * uncompressed files are mapped in memory instead of read plane by plane
+	 */
+	private static InputSource getSourceFromMap(HashMap<String, Object> inputMap, DijTensor tensor) {
+		if (!inputMap.containsKey(tensor.name)){
+			IJ.error("Preprocessing should provide a HashMap with\n"
+					+ "the key " + tensor.name);
+			return null;
+		} else if (inputMap.get(tensor.name) instanceof InputSource) {
+			return (InputSource) inputMap.get(tensor.name);
+		} else if (!(inputMap.get(tensor.name) instanceof ImagePlus)) {
+			IJ.error("The input " + tensor.name + " should"
+					+ " be an instance of an ImagePlus or an InputSource.");
+			return null;
+		}
+		ImagePlus imp = (ImagePlus) inputMap.get(tensor.name);
+		InputSource mapped = MappedSource.of(imp);
+		return mapped == null ? new ImageSource(imp) : mapped;
+	}
+	
+	/*
+	 * Number of chunks of the input kept in memory. The chunks read by a tile
+	 * are kept until the tiles next to it along the next line of tiles have
+	 * been read, within the memory budget of the run
+	 */
+	private static int findChunkCacheSize(ChunkedSource source, TilePlan plan, double memoryBudget) {
+		int[] chunk = source.getChunkSize();
+		int[] size = source.getSize();
+		int[] patch = plan.getPatchSize();
+		int[] grid = plan.getGrid();
+		long chunksPerTile = (size[2] + chunk[2] - 1) / chunk[2];
+		for (int axis : new int[] {AxisLayout.X, AxisLayout.Y, AxisLayout.Z})
+			chunksPerTile *= Math.min((patch[axis] + chunk[axis] - 1) / chunk[axis] + 1, (size[axis] + chunk[axis] - 1) / chunk[axis]);
+		long chunks = chunksPerTile * (Math.max(grid[0], grid[1]) * grid[2] + 1);
+		long chunkBytes = (long) chunk[0] * chunk[1] * chunk[2] * chunk[3] * chunk[4] * 4;
+		long budget = (long) (memoryBudget / chunkBytes);
+		return (int) Math.max(chunksPerTile, Math.min(chunks, budget));
+	}
+	
+	private static float[] findOutputSize(int[] inpSize, DijTensor outTensor, List<DijTensor> inputList, int[] patchSize) {
+		String refForOutput = outTensor.referenceImage;
+		DijTensor refTensor = DijTensor.retrieveByName(refForOutput, inputList);
+		float[] outSize = new float[inpSize.length];
+		AxisLayout outLayout = outTensor.getLayout();
+		AxisLayout refLayout = refTensor.getLayout();
+		for (int i = 0; i < outSize.length; i ++) {
+			int indOut = outLayout.indexOf(i);
+			int indInp = refLayout.indexOf(i);
+			if (indOut != -1 && indInp != -1) {
+				outSize[i] = inpSize[i] * outTensor.scale[indOut];
+			} else if (indOut != -1 && indInp == -1) {
+				outSize[i] = patchSize[i];
+			} else {
+				outSize[i] = 1;
+			}
+		}
+		return outSize;
+	}
+	
+	public static int[] findTotalPadding(List<DijTensor> outputs) {
+		// Create an object of int[] that contains the output dimensions
+		// of each patch.
+		// This dimensions are always of the form [x, y, c, d]
+		int[] padding = {0, 0, 0, 0};
+		for (DijTensor out: outputs) {
+			AxisLayout layout = out.getLayout();
+			for (int i = 0; i < padding.length; i ++) {
+				int ind = layout.indexOf(i);
+				if (out.tensorType.contains("image") && ind != -1) {
+					double totalPad = Math.ceil((double)out.offset[ind] / (double)out.scale[ind]) + Math.ceil((double)out.halo[ind] / (double)out.scale[ind]);
+					if ((int) totalPad > padding[i]) {
+						padding[i] = (int) totalPad;
+					}
+				}
+			}
+		}
+		return padding;
+	}
+	
+	/**
+	 * Padding of the tiles when the overlapping regions are blended. The
+	 * pixels marked as invalid by the offset are always discarded, but only
+	 * half of the halo is needed around the valid region because the other
+	 * half of the overlap is covered by the taper of the neighbouring tiles
+	 * @param outputs: output tensors of the model
+	 * @return padding organised as [x, y, c, z]
+	 */
+	public static int[] findBlendingPadding(List<DijTensor> outputs) {
+		int[] padding = {0, 0, 0, 0};
+		for (DijTensor out: outputs) {
+			AxisLayout layout = out.getLayout();
+			for (int i = 0; i < padding.length; i ++) {
+				int ind = layout.indexOf(i);
+				if (out.tensorType.contains("image") && ind != -1) {
+					double offsetPad = Math.ceil((double)out.offset[ind] / (double)out.scale[ind]);
+					double haloPad = Math.ceil((double)out.halo[ind] / (double)out.scale[ind] / 2);
+					if ((int) (offsetPad + haloPad) > padding[i]) {
+						padding[i] = (int) (offsetPad + haloPad);
+					}
+				}
+			}
+		}
+		return padding;
+	}
+	
+	// TODO clean up method (line 559) Make it stable for pyramidal
+	public static float[][] findOutputOffset(List<DijTensor> outputs) {
+		// Create an object of int[] that contains the output dimensions
+		// of each patch.
+		// This dimensions are always of the form [x, y, c, d]
+		float[][] offsets = new float[outputs.size()][4];
+		int c1 = 0;
+		for (DijTensor out: outputs) {
+			if (!out.tensorType.toLowerCase().equals("image"))
+				continue;
+			int c2 = 0;
+			AxisLayout layout = out.getLayout();
+			for (int i = 0; i < offsets[0].length; i ++) {
+				int ind = layout.indexOf(i);
+				if (ind != -1 && out.offset != null) {
+					offsets[c1][c2] = out.offset[ind];
+				}
+				c2 ++;
+			}
+			c1 ++;
+		}
+		return offsets;
+	}
+	
+	/*
+	 * Find the number of tiles that are stacked along the batch axis (B) of the
+	 * input tensor in each call to the model runner. The batch size has to be
+	 * minimum_size + step * n for the B axis and the tiles of the batch, together
+	 * with their results, have to fit in the memory budget (in bytes). A batch
+	 * never contains more tiles than the ones needed to process the image
+	 */
+	public static int findBatchSize(DijTensor input, List<DijTensor> outputs, int[] patchSize, int nTiles, double memoryBudget) {
+		int batchInd = input.getLayout().getBatchIndex();
+		if (batchInd == -1)
+			return 1;
+		int minBatch = Math.max(1, input.minimum_size[batchInd]);
+		int stepBatch = input.step[batchInd];
+		if (stepBatch == 0)
+			return minBatch;
+		// Bytes of a float32 tile and of the results produced for it
+		double tileVoxels = (double) patchSize[0] * patchSize[1] * patchSize[2] * patchSize[3];
+		double outputFactor = 0;
+		for (DijTensor out : outputs) {
+			if (!out.tensorType.contains("image"))
+				continue;
+			double factor = 1;
+			for (int i = 0; i < out.scale.length; i ++) {
+				if (i != out.getLayout().getBatchIndex() && out.scale[i] > 0)
+					factor *= out.scale[i];
+			}
+			outputFactor += factor;
+		}
+		double tileBytes = tileVoxels * 4 * (1 + outputFactor);
+		int maxBatch = (int) Math.min(nTiles, Math.floor(memoryBudget / tileBytes));
+		if (maxBatch <= minBatch)
+			return minBatch;
+		return minBatch + ((maxBatch - minBatch) / stepBatch) * stepBatch;
+	}
+	
+	/*
+	 * Smallest batch size accepted by the model that can contain 'nTiles' tiles
+	 */
+	public static int completeBatchSize(DijTensor input, int nTiles) {
+		int batchInd = input.getLayout().getBatchIndex();
+		if (batchInd == -1)
+			return nTiles;
+		int minBatch = Math.max(1, input.minimum_size[batchInd]);
+		int stepBatch = input.step[batchInd];
+		if (nTiles <= minBatch || stepBatch == 0)
+			return minBatch;
+		return minBatch + (int) Math.ceil((double) (nTiles - minBatch) / stepBatch) * stepBatch;
+	}
+	
+	public int getCurrentPatch() {
+		return currentPatch;
+	}
+
+	public int getTotalPatch() {
+		return totalPatch;
+	}
+	
+	/*
+	 * Tile that has been sent to the model runner, together with the
+	 * region of the output images where its result has to be written
+	 */
+	private static class TileJob {
+		// Regions of the tile in the input and output images
+		final Tile tile;
+		// Frame of the input image the tile comes from
+		final int frame;
+		// Input tile sent to the runner
+		ImagePlus patch;
+		// Results of the model runner, one per output image
+		ImagePlus[] outputs;
+		// Error message returned by the model runner, if any
+		String error;
+		// Key of the result in the tile cache, null if it is not cached
+		String cacheKey;
+		
+		TileJob(Tile tile, int frame, int nOutputs) {
+			this.tile = tile;
+			this.frame = frame;
+			outputs = new ImagePlus[nOutputs];
+		}
+	}
+
+}
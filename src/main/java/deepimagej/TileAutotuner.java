@@ -0,0 +1,270 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import deepimagej.runner.ModelRunner;
+import deepimagej.tools.AxisLayout;
+import deepimagej.tools.DijTensor;
+import deepimagej.tools.Log;
+import deepimagej.tools.PaddedImage;
+import deepimagej.tools.RoiRestriction;
+import deepimagej.tools.TileClassifier;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.Prefs;
+
+/**
+ * Choose the tile size of a model by timing it. Each candidate tile is used to
+ * process a crop of the image with {@link RunnerTf}, so the time includes the
+ * calls to the model runner and the stitching, and the fastest candidate in
+ * voxels of the crop per second wins. The winner is saved in the ImageJ
+ * preferences for the model and the class of image size, and it is suggested
+ * as the tile size the next time the model is used with a similar image.
+ * All the arrays are organised as [x, y, c, z] unless stated otherwise.
+ */
+public class TileAutotuner {
+	
+	/*
+	 * Prefix of the keys of the tuned tile sizes in the ImageJ preferences
+	 */
+	private static final String PREFS_KEY = "deepimagej.tile.";
+	/*
+	 * Maximum number of voxels processed per voxel of the image, tiles
+	 * with a larger halo overhead are not tried
+	 */
+	public static final double DEFAULT_MAX_OVERHEAD = 2.0;
+	/*
+	 * Maximum number of candidate tiles timed
+	 */
+	private static final int MAX_CANDIDATES = 5;
+	/*
+	 * Tiles along each axis of the crop used to time a candidate,
+	 * so the candidate is also stitched
+	 */
+	private static final int TILES_PER_AXIS = 2;
+	
+	/**
+	 * Candidate tiles, from the largest to the smallest. The side of the tile
+	 * is divided by two along X, Y and Z from one candidate to the next,
+	 * rounded down to minimum_size + step * n
+	 * @param largest: largest tile wanted, for example the one that fits in memory
+	 * @param minimum: minimum size of the tile
+	 * @param step: step of the tile size, 0 if the size is fixed
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @param maxOverhead: maximum voxels processed per valid voxel of a tile
+	 * @return the candidates
+	 */
+	public static List<int[]> findCandidates(int[] largest, int[] minimum, int[] step, int[] padding, double maxOverhead) {
+		List<int[]> candidates = new ArrayList<int[]>();
+		int[] axes = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+		for (int k = 0; candidates.size() < MAX_CANDIDATES; k ++) {
+			int[] tile = largest.clone();
+			for (int axis : axes) {
+				if (step[axis] > 0)
+					tile[axis] = snap(largest[axis] >> k, minimum[axis], step[axis]);
+			}
+			if (getOverhead(tile, padding) > maxOverhead)
+				break;
+			if (!candidates.isEmpty() && Arrays.equals(tile, candidates.get(candidates.size() - 1)))
+				break;
+			candidates.add(tile);
+		}
+		return candidates;
+	}
+	
+	/**
+	 * Voxels of a tile per valid voxel, the ones that remain after removing the padding
+	 * @param tile: size of the tile
+	 * @param padding: pixels at each side of the tile that are not valid
+	 * @return the overhead, infinite if the tile has no valid voxel
+	 */
+	public static double getOverhead(int[] tile, int[] padding) {
+		double overhead = 1;
+		for (int axis : new int[] {AxisLayout.X, AxisLayout.Y, AxisLayout.Z}) {
+			int valid = tile[axis] - 2 * padding[axis];
+			if (valid <= 0)
+				return Double.POSITIVE_INFINITY;
+			overhead *= (double) tile[axis] / valid;
+		}
+		return overhead;
+	}
+	
+	/**
+	 * Time each candidate tile on a crop of the image and return the fastest.
+	 * The model has to be loaded in the model runner
+	 * @param dp: model
+	 * @param image: image to crop, already preprocessed
+	 * @param modelName: name of the model in the model runner
+	 * @param runner: model runner
+	 * @param candidates: tiles to try, organised as [x, y, c, z]
+	 * @param log: log of the run
+	 * @return the fastest tile, or null if no candidate could be processed
+	 */
+	public static int[] tune(DeepImageJ dp, ImagePlus image, String modelName, ModelRunner runner, List<int[]> candidates, Log log) {
+		if (candidates.isEmpty())
+			return null;
+		int[] padding = RunnerTf.findTotalPadding(dp.params.outputList);
+		// The first call to a model is usually slower, it is not timed
+		probe(dp, image, modelName, runner, candidates.get(candidates.size() - 1), padding);
+		int[] best = null;
+		double bestSpeed = 0;
+		for (int[] tile : candidates) {
+			double speed = probe(dp, image, modelName, runner, tile, padding);
+			IJ.log("Autotune tile " + tile[0] + "x" + tile[1] + "x" + tile[2] + "x" + tile[3] + ": "
+					+ (speed > 0 ? String.format("%.3g voxels/s", speed) : "failed"));
+			if (speed > bestSpeed) {
+				bestSpeed = speed;
+				best = tile;
+			}
+		}
+		log.print("autotune best tile " + Arrays.toString(best));
+		return best;
+	}
+	
+	/*
+	 * Process a crop of the image with TILES_PER_AXIS tiles along each axis
+	 * and return the voxels of the crop per second, 0 if the run failed
+	 */
+	private static double probe(DeepImageJ dp, ImagePlus image, String modelName, ModelRunner runner, int[] tile, int[] padding) {
+		int[] size = {image.getWidth(), image.getHeight(), image.getNChannels(), image.getNSlices()};
+		int[] crop = size.clone();
+		int[] start = new int[3];
+		int[] axes = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+		for (int i = 0; i < axes.length; i ++) {
+			int axis = axes[i];
+			crop[axis] = Math.max(1, Math.min(size[axis], TILES_PER_AXIS * (tile[axis] - 2 * padding[axis])));
+			start[i] = (size[axis] - crop[axis]) / 2;
+		}
+		ImagePlus cropImage = new PaddedImage(image, new int[2][4], PaddedImage.ZERO)
+									.extractPatch(crop, start[0], start[1], start[2], 0, 0, 0, null);
+		cropImage.setTitle("autotune");
+		cropImage.setCalibration(image.getCalibration());
+		
+		Parameters params = dp.params.copy();
+		params.headless = true;
+		// Only the tiling is timed, the options of the run that would skip
+		// tiles, reuse results or write them to disk are left out
+		params.tileCacheMB = 0;
+		params.streamOutputs = false;
+		params.roi = null;
+		params.roiMode = RoiRestriction.WHOLE_IMAGE;
+		params.backgroundTiles = TileClassifier.NONE;
+		params.incrementalRun = false;
+		DijTensor input = params.inputList.get(0);
+		AxisLayout layout = input.getLayout();
+		int[] patch = new int[layout.size()];
+		for (int i = 0; i < patch.length; i ++) {
+			int axis = AxisLayout.AXES.indexOf(layout.axisAt(i));
+			patch[i] = axis >= 0 && axis <= AxisLayout.Z ? tile[axis] : 1;
+		}
+		input.recommended_patch = patch;
+		HashMap<String, Object> inputMap = new HashMap<String, Object>();
+		inputMap.put(input.name, cropImage);
+		Log muted = new Log();
+		muted.setLevel(0);
+		long start0 = System.nanoTime();
+		HashMap<String, Object> output = new RunnerTf(new DeepImageJ(params), inputMap, modelName, muted, runner).call();
+		long time = System.nanoTime() - start0;
+		if (output == null || time <= 0)
+			return 0;
+		double voxels = (double) crop[0] * crop[1] * crop[3];
+		return voxels / (time * 1e-9);
+	}
+	
+	/**
+	 * Class of size of an image. Images of the same class have the same channels
+	 * and the same power of two above their size along X, Y and Z
+	 * @param size: size of the image
+	 * @return the class, for example "x10y10c1z0" for a 1024x768 image
+	 */
+	public static String getDimensionClass(int[] size) {
+		return "x" + log2(size[0]) + "y" + log2(size[1]) + "c" + size[2] + "z" + log2(size[3]);
+	}
+	
+	/**
+	 * Tile size tuned for a model and images of the class of size of an image
+	 * @param modelName: name of the model
+	 * @param size: size of the image
+	 * @return the tile size in the format of the dialog, for example "256,256,1",
+	 * 			or null if the model has not been tuned for this class of images
+	 */
+	public static String getTunedSize(String modelName, int[] size) {
+		return Prefs.get(getKey(modelName, size), null);
+	}
+	
+	/**
+	 * Save the tile size tuned for a model and the class of size of an image
+	 * @param modelName: name of the model
+	 * @param size: size of the image
+	 * @param tileSize: the tile size in the format of the dialog, for example "256,256,1"
+	 */
+	public static void setTunedSize(String modelName, int[] size, String tileSize) {
+		Prefs.set(getKey(modelName, size), tileSize);
+		Prefs.savePreferences();
+	}
+	
+	private static String getKey(String modelName, int[] size) {
+		// The name of the model can contain characters not allowed in the preferences
+		return PREFS_KEY + ParametersCache.sha256(modelName).substring(0, 16) + "." + getDimensionClass(size);
+	}
+	
+	private static int log2(int n) {
+		return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+	}
+	
+	/*
+	 * Largest minimum + step * n not bigger than 'value', or the minimum
+	 */
+	private static int snap(int value, int minimum, int step) {
+		if (value <= minimum)
+			return minimum;
+		return minimum + ((value - minimum) / step) * step;
+	}
+}
@@ -1,105 +1,105 @@
-/*
- * DeepImageJ
- * 
- * https://deepimagej.github.io/deepimagej/
- *
- * Conditions of use: You are free to use this software for research or educational purposes. 
- * In addition, we expect you to include adequate citations and acknowledgments whenever you 
- * present or publish results that are based on it.
- * 
- * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
- * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
- * Submitted 2019.
- *
- * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
- * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
- *
- * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
- *
- */
-
-/*
- * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
- * 
- * This file is part of DeepImageJ.
- * 
- * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
- * the GNU General Public License as published by the Free Software Foundation, either 
- * version 3 of the License, or (at your option) any later version.
- * 
- * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
- * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
- * See the GNU General Public License for more details.
- * 
- * You should have received a copy of the GNU General Public License along with DeepImageJ. 
- * If not, see <http://www.gnu.org/licenses/>.
- */package deepimagej.components;
-
-import java.awt.Frame;
-import java.awt.Graphics;
-import java.awt.Label;
-import java.awt.Panel;
-import java.awt.Rectangle;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
-
-public class BorderPanel extends Panel {
-  
-    private boolean drawBorder = true;
-    private int borderOffset = 2;
-  
-    public void setBorderVisible( boolean b ) {
-        if ( b != drawBorder ) {
-            drawBorder = b;
-            repaint();
-        }
-    }
-  
-    public boolean isBorderVisible() {
-        return drawBorder;
-    }
-  
-    public void setBorderOffset( int i ) {
-        borderOffset = i;
-        repaint();
-    }
-  
-    public int getBorderOffset() {
-        return borderOffset;
-    }
-  
-    protected Rectangle getBorderBounds() {
-        int x = borderOffset;
-        int y = borderOffset;
-        int width = getSize().width - borderOffset * 2;
-        int height = getSize().height - borderOffset * 2;
-        Rectangle bounds = new Rectangle( x, y, width, height );
-        return bounds;
-    }
-  
-    public void update( Graphics g ) {
-        paint( g );
-    }
-  
-    public void paint( Graphics g ) {
-        g.setColor( getBackground() );
-        g.fillRect( 0, 0, getSize().width, getSize().height );
-        g.setColor( getForeground() );
-        Rectangle border = getBorderBounds();
-        g.drawRect( border.x, border.y, border.width, border.height );
-    }
-  
-    public static void main( String[] args ) {
-        Frame f = new Frame( "BorderPanel Test" );
-        f.addWindowListener( new WindowAdapter() {
-            public void windowClosing( WindowEvent e ) {
-                System.exit( 0 );
-            }
-        } );
-        BorderPanel p = new BorderPanel();
-        p.add( new Label( "Label" ) );
-        f.add( p );
-        f.setSize( 300, 300 );
-        f.show();
-    }
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ *
+ * Conditions of use: You are free to use this software for research or educational purposes. 
+ * In addition, we expect you to include adequate citations and acknowledgments whenever you 
+ * present or publish results that are based on it.
+ * 
+ * Reference: DeepImageJ: A user-friendly plugin to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, L. Donati, M. Unser, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2019.
+ *
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ *
+ * Corresponding authors: mamunozb@ing.uc3m.es, daniel.sage@epfl.ch
+ *
+ */
+
+/*
+ * Copyright 2019. Universidad Carlos III, Madrid, Spain and EPFL, Lausanne, Switzerland.
+ * 
+ * This file is part of DeepImageJ.
+ * 
+ * DeepImageJ is free software: you can redistribute it and/or modify it under the terms of 
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * DeepImageJ is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with DeepImageJ. 
+ * If not, see <http://www.gnu.org/licenses/>.
+ */package deepimagej.components;
+
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Label;
+import java.awt.Panel;
+import java.awt.Rectangle;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+public class BorderPanel extends Panel {
+  
+    private boolean drawBorder = true;
+    private int borderOffset = 2;
+  
+    public void setBorderVisible( boolean b ) {
+        if ( b != drawBorder ) {
+            drawBorder = b;
+            repaint();
+        }
+    }
+  
+    public boolean isBorderVisible() {
+        return drawBorder;
+    }
+  
+    public void setBorderOffset( int i ) {
+        borderOffset = i;
+        repaint();
+    }
+  
+    public int getBorderOffset() {
+        return borderOffset;
+    }
+  
+    protected Rectangle getBorderBounds() {
+        int x = borderOffset;
+        int y = borderOffset;
+        int width = getSize().width - borderOffset * 2;
+        int height = getSize().height - borderOffset * 2;
+        Rectangle bounds = new Rectangle( x, y, width, height );
+        return bounds;
+    }
+  
+    public void update( Graphics g ) {
+        paint( g );
+    }
+  
+    public void paint( Graphics g ) {
+        g.setColor( getBackground() );
+        g.fillRect( 0, 0, getSize().width, getSize().height );
+        g.setColor( getForeground() );
+        Rectangle border = getBorderBounds();
+        g.drawRect( border.x, border.y, border.width, border.height );
+    }
+  
+    public static void main( String[] args ) {
+        Frame f = new Frame( "BorderPanel Test" );
+        f.addWindowListener( new WindowAdapter() {
+            public void windowClosing( WindowEvent e ) {
+                System.exit( 0 );
+            }
+        } );
+        BorderPanel p = new BorderPanel();
+        p.add( new Label( "Label" ) );
+        f.add( p );
+        f.setSize( 300, 300 );
+        f.show();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.runner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import deepimagej.Promise;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Runner that computes a simple operation in the JVM instead of a model:
+ * the identity, a multiplication by a factor or a 2D convolution of every
+ * slice. Every prediction waits a configurable latency before being
+ * resolved from a worker thread, like a remote runner would do. It is
+ * meant to run and time the tiling of the plugin outside of the browser.
+ */
+public class LocalModelRunner implements ModelRunner {
+	
+	public static final String NAME = "local";
+	
+	public static final String IDENTITY = "identity";
+	public static final String SCALE = "scale";
+	public static final String CONVOLUTION = "convolution";
+	/*
+	 * Operations available, they are also the names of the models
+	 */
+	public static final String[] OPERATIONS = {IDENTITY, SCALE, CONVOLUTION};
+	
+	private final String operation;
+	private final float factor;
+	private final float[] kernel;
+	private final int kernelSize;
+	private final long latency;
+	/*
+	 * Content of the model.yaml given by initModel, can be null
+	 */
+	private String yaml;
+	private final ExecutorService executor;
+	
+	/**
+	 * Create a local runner
+	 * @param operation: one of {@link #OPERATIONS}
+	 * @param factor: factor used by the scale operation
+	 * @param kernel: square kernel of odd size used by the convolution, 
+	 * 			organised row by row
+	 * @param latency: time in ms that each prediction waits before being computed
+	 * @param threads: number of predictions computed at the same time
+	 */
+	public LocalModelRunner(String operation, float factor, float[] kernel, long latency, int threads) {
+		if (!Arrays.asList(OPERATIONS).contains(operation))
+			throw new IllegalArgumentException("Unknown operation " + operation + ", it should be one of " + Arrays.toString(OPERATIONS));
+		int size = (int) Math.round(Math.sqrt(kernel.length));
+		if (size * size != kernel.length || size % 2 == 0)
+			throw new IllegalArgumentException("The kernel should be a square of odd size");
+		this.operation = operation;
+		this.factor = factor;
+		this.kernel = kernel.clone();
+		this.kernelSize = size;
+		this.latency = latency;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "deepimagej-local-runner");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * Create the runner from the system properties deepimagej.local.operation,
+	 * deepimagej.local.factor, deepimagej.local.kernel (comma separated values),
+	 * deepimagej.local.latency (ms), deepimagej.local.threads and deepimagej.local.yaml
+	 * (path to the model.yaml returned by initModel)
+	 */
+	public static LocalModelRunner fromProperties() {
+		String operation = System.getProperty("deepimagej.local.operation", IDENTITY);
+		float factor = Float.parseFloat(System.getProperty("deepimagej.local.factor", "1"));
+		String[] values = System.getProperty("deepimagej.local.kernel", "1,1,1,1,1,1,1,1,1").split(",");
+		float[] kernel = new float[values.length];
+		float sum = 0;
+		for (int i = 0; i < values.length; i ++) {
+			kernel[i] = Float.parseFloat(values[i].trim());
+			sum += kernel[i];
+		}
+		// Normalise the kernel so the convolution keeps the intensity
+		for (int i = 0; sum != 0 && i < kernel.length; i ++)
+			kernel[i] /= sum;
+		long latency = Long.parseLong(System.getProperty("deepimagej.local.latency", "0"));
+		int threads = Integer.parseInt(System.getProperty("deepimagej.local.threads", "1"));
+		LocalModelRunner runner = new LocalModelRunner(operation, factor, kernel, latency, threads);
+		String yamlFile = System.getProperty("deepimagej.local.yaml");
+		if (yamlFile != null) {
+			try {
+				runner.setYaml(new String(Files.readAllBytes(Paths.get(yamlFile)), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				IJ.log("Cannot read the model.yaml " + yamlFile + ": " + e.getMessage());
+			}
+		}
+		return runner;
+	}
+	
+	/**
+	 * Set the content of the model.yaml returned by {@link #initModel(String, Promise)}
+	 */
+	public void setYaml(String yaml) {
+		this.yaml = yaml;
+	}
+	
+	/**
+	 * Stop the threads of the runner once the predictions already
+	 * requested are done. The runner cannot predict afterwards
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void getModels(Promise promise) {
+		promise.resolveString(String.join(",", OPERATIONS));
+	}
+
+	@Override
+	public void initModel(String modelName, Promise promise) {
+		if (yaml == null)
+			promise.reject("the local runner has no model.yaml, set it with the property deepimagej.local.yaml");
+		else
+			promise.resolveString(yaml);
+	}
+
+	@Override
+	public void predict(String modelName, ImagePlus input, Promise promise) {
+		executor.execute(() -> {
+			try {
+				if (latency > 0)
+					Thread.sleep(latency);
+				promise.resolveImagePlus(compute(input));
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				promise.reject("the prediction was interrupted");
+			} catch (RuntimeException ex) {
+				promise.reject(ex.toString());
+			}
+		});
+	}
+	
+	/*
+	 * Apply the operation of the runner to every slice of the image.
+	 * The result is a new 32-bit image with the same dimensions
+	 */
+	private ImagePlus compute(ImagePlus input) {
+		int nx = input.getWidth();
+		int ny = input.getHeight();
+		int nc = input.getNChannels();
+		int nz = input.getNSlices();
+		int nt = input.getNFrames();
+		ImagePlus output = IJ.createHyperStack("output", nx, ny, nc, nz, nt, 32);
+		ImageStack inStack = input.getStack();
+		ImageStack outStack = output.getStack();
+		for (int i = 1; i <= inStack.getSize(); i ++) {
+			float[] in = (float[]) inStack.getProcessor(i).convertToFloat().getPixels();
+			float[] out = (float[]) outStack.getPixels(i);
+			if (operation.equals(IDENTITY)) {
+				System.arraycopy(in, 0, out, 0, in.length);
+			} else if (operation.equals(SCALE)) {
+				for (int j = 0; j < in.length; j ++)
+					out[j] = in[j] * factor;
+			} else {
+				convolve(in, out, nx, ny);
+			}
+		}
+		return output;
+	}
+	
+	/*
+	 * 2D convolution of a slice, the pixels outside of the slice
+	 * are replaced by the closest pixel at the border
+	 */
+	private void convolve(float[] in, float[] out, int nx, int ny) {
+		int half = kernelSize / 2;
+		for (int y = 0; y < ny; y ++) {
+			for (int x = 0; x < nx; x ++) {
+				float sum = 0;
+				int k = 0;
+				for (int ky = -half; ky <= half; ky ++) {
+					int yy = Math.min(Math.max(y + ky, 0), ny - 1) * nx;
+					for (int kx = -half; kx <= half; kx ++) {
+						int xx = Math.min(Math.max(x + kx, 0), nx - 1);
+						sum += in[yy + xx] * kernel[k ++];
+					}
+				}
+				out[y * nx + x] = sum;
+			}
+		}
+	}
+}
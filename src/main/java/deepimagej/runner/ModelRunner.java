@@ -0,0 +1,149 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.runner;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+
+import deepimagej.Promise;
+import ij.ImagePlus;
+
+/**
+ * Service that lists, loads and runs the models. All the methods return
+ * immediately and the result is given to the {@link Promise}, which can be
+ * called from another thread.
+ * The runner used by the plugin is selected with the system property
+ * {@value #PROPERTY}. Besides the runners of this package, any implementation
+ * registered in META-INF/services/deepimagej.runner.ModelRunner can be used
+ * by its name.
+ */
+public interface ModelRunner {
+	
+	/*
+	 * System property with the name of the runner used by default
+	 */
+	public static final String PROPERTY = "deepimagej.runner";
+	
+	/**
+	 * Name used to select the runner
+	 */
+	public String getName();
+	
+	/**
+	 * Get the list of available models
+	 * @param promise: resolved with the names of the models separated by commas
+	 */
+	public void getModels(Promise promise);
+	
+	/**
+	 * Load a model
+	 * @param modelName: name of the model, as given by {@link #getModels(Promise)}
+	 * @param promise: resolved with the content of the model.yaml file
+	 */
+	public void initModel(String modelName, Promise promise);
+	
+	/**
+	 * Run a model on an image
+	 * @param modelName: name of the model
+	 * @param input: image with the tile or tiles (stacked along T) to process
+	 * @param promise: resolved with the output image
+	 */
+	public void predict(String modelName, ImagePlus input, Promise promise);
+	
+	/**
+	 * Same as {@link #getModels(Promise)}, returning a future
+	 */
+	public default CompletableFuture<String> getModelsAsync() {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		getModels(PromiseFuture.string(future));
+		return future;
+	}
+	
+	/**
+	 * Same as {@link #initModel(String, Promise)}, returning a future
+	 */
+	public default CompletableFuture<String> initModelAsync(String modelName) {
+		CompletableFuture<String> future = new CompletableFuture<String>();
+		initModel(modelName, PromiseFuture.string(future));
+		return future;
+	}
+	
+	/**
+	 * Same as {@link #predict(String, ImagePlus, Promise)}, returning a future.
+	 * Cancelling the future does not stop the runner, its result is ignored
+	 */
+	public default CompletableFuture<ImagePlus> predictAsync(String modelName, ImagePlus input) {
+		CompletableFuture<ImagePlus> future = new CompletableFuture<ImagePlus>();
+		predict(modelName, input, PromiseFuture.image(future));
+		return future;
+	}
+	
+	/**
+	 * Create a runner from its name
+	 * @param name: name of the runner
+	 * @return the runner
+	 * @throws IllegalArgumentException if there is no runner with that name
+	 */
+	public static ModelRunner create(String name) {
+		if (name.equals(ImJoyModelRunner.NAME))
+			return new ImJoyModelRunner();
+		if (name.equals(LocalModelRunner.NAME))
+			return LocalModelRunner.fromProperties();
+		for (ModelRunner runner : ServiceLoader.load(ModelRunner.class)) {
+			if (runner.getName().equals(name))
+				return runner;
+		}
+		throw new IllegalArgumentException("There is no model runner called " + name);
+	}
+	
+	/**
+	 * Runner selected by the property {@value #PROPERTY}, the ImJoy runner if
+	 * the property is not set. The runner is created the first time and shared
+	 * by the next calls, as long as the property does not change
+	 */
+	public static ModelRunner getDefault() {
+		return DefaultRunner.get(System.getProperty(PROPERTY, ImJoyModelRunner.NAME));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.runner;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import deepimagej.Promise;
+import deepimagej.exceptions.ModelRunnerError;
+import ij.ImagePlus;
+
+/**
+ * Adapters between the {@link Promise} callbacks of the model runners and
+ * {@link CompletableFuture}, so the calls to the runner can be composed,
+ * awaited with a timeout and cancelled
+ */
+public class PromiseFuture {
+	
+	/*
+	 * Thread that completes the futures that time out
+	 */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "deepimagej-runner-timeout");
+		t.setDaemon(true);
+		return t;
+	});
+	
+	/**
+	 * Promise that completes a future expecting an image. A string result is
+	 * the error given by the runner, so the future completes exceptionally
+	 * @param future: future completed by the promise
+	 * @return the promise
+	 */
+	public static Promise image(CompletableFuture<ImagePlus> future) {
+		return new Promise() {
+			public void resolveImagePlus(ImagePlus image) {
+				future.complete(image);
+			}
+			public void resolveString(String output) {
+				future.completeExceptionally(new ModelRunnerError(output));
+			}
+			public void reject(String error) {
+				future.completeExceptionally(new ModelRunnerError(error));
+			}
+		};
+	}
+	
+	/**
+	 * Promise that completes a future expecting a string
+	 * @param future: future completed by the promise
+	 * @return the promise
+	 */
+	public static Promise string(CompletableFuture<String> future) {
+		return new Promise() {
+			public void resolveImagePlus(ImagePlus image) {
+				future.completeExceptionally(new ModelRunnerError("expected a text result and got an image"));
+			}
+			public void resolveString(String output) {
+				future.complete(output);
+			}
+			public void reject(String error) {
+				future.completeExceptionally(new ModelRunnerError(error));
+			}
+		};
+	}
+	
+	/**
+	 * Complete the future with a {@link TimeoutException} if it has not been
+	 * completed after the given time. The result arriving later is ignored
+	 * @param future: future to limit
+	 * @param timeout: time in ms, 0 or less to wait forever
+	 * @return the same future
+	 */
+	public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout) {
+		if (timeout <= 0 || future.isDone())
+			return future;
+		ScheduledFuture<?> timer = TIMER.schedule(() -> 
+			future.completeExceptionally(new TimeoutException("no answer from the model runner after " + timeout + " ms")),
+			timeout, TimeUnit.MILLISECONDS);
+		future.whenComplete((result, error) -> timer.cancel(false));
+		return future;
+	}
+	
+	/**
+	 * Message of the error that completed a future, without the
+	 * wrappers added by {@link CompletableFuture}
+	 */
+	public static String getMessage(Throwable error) {
+		while ((error instanceof CompletionException 
+				|| error instanceof ExecutionException) && error.getCause() != null)
+			error = error.getCause();
+		if (error instanceof CancellationException)
+			return "cancelled";
+		return error.getMessage() == null ? error.toString() : error.getMessage();
+	}
+}
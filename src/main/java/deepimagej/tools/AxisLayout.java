@@ -0,0 +1,262 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Position of each axis in the form of a tensor, for example "BYXC".
+ * The layout is computed once per form, so the tiling code can find
+ * the position of an axis without splitting the form or searching in it.
+ * The arrays used by the plugin for images are organised as [x, y, c, z],
+ * which correspond to the first four axes of {@link #AXES}.
+ */
+public final class AxisLayout {
+	
+	/*
+	 * Axes known by the plugin, in the order used for the lookup tables
+	 */
+	public static final String AXES = "XYCZTB";
+	public static final int X = 0;
+	public static final int Y = 1;
+	public static final int C = 2;
+	public static final int Z = 3;
+	public static final int T = 4;
+	public static final int B = 5;
+	/*
+	 * Layouts already created, there are only a few different forms per model
+	 */
+	private static final ConcurrentHashMap<String, AxisLayout> layouts = new ConcurrentHashMap<String, AxisLayout>();
+	
+	private final String form;
+	/*
+	 * Position in the form of each axis of AXES, -1 if the form does not have it
+	 */
+	private final int[] positions = new int[AXES.length()];
+	/*
+	 * Position in the form of each letter, -1 if the form does not have it
+	 */
+	private final int[] letterPositions = new int[128];
+	/*
+	 * Axes of the form without the batch axis
+	 */
+	private final String[] workingDims;
+	
+	private AxisLayout(String form) {
+		this.form = form;
+		Arrays.fill(letterPositions, -1);
+		for (int i = form.length() - 1; i >= 0; i --) {
+			char letter = form.charAt(i);
+			if (letter < letterPositions.length)
+				letterPositions[letter] = i;
+		}
+		for (int i = 0; i < positions.length; i ++)
+			positions[i] = letterPositions[AXES.charAt(i)];
+		int batch = positions[B];
+		workingDims = new String[batch == -1 ? form.length() : form.length() - 1];
+		int c = 0;
+		for (int i = 0; i < form.length(); i ++) {
+			if (i != batch)
+				workingDims[c ++] = form.substring(i, i + 1);
+		}
+	}
+	
+	/**
+	 * Layout of a tensor form
+	 * @param form: axes of the tensor, for example "BYXC"
+	 * @return the layout, shared by all the tensors with the same form
+	 */
+	public static AxisLayout of(String form) {
+		String key = form.toUpperCase();
+		AxisLayout layout = layouts.get(key);
+		if (layout == null) {
+			layout = new AxisLayout(key);
+			layouts.putIfAbsent(key, layout);
+		}
+		return layout;
+	}
+	
+	public String getForm() {
+		return form;
+	}
+	
+	/**
+	 * Number of axes of the form
+	 */
+	public int size() {
+		return form.length();
+	}
+	
+	/**
+	 * Position of an axis in the form
+	 * @param axis: one of {@link #X}, {@link #Y}, {@link #C}, {@link #Z}, {@link #T} or {@link #B}
+	 * @return the position or -1 if the form does not have the axis
+	 */
+	public int indexOf(int axis) {
+		return positions[axis];
+	}
+	
+	/**
+	 * Position of an axis in the form
+	 * @param letter: letter of the axis, in upper case
+	 * @return the position or -1 if the form does not have the axis
+	 */
+	public int indexOf(char letter) {
+		return letter < letterPositions.length ? letterPositions[letter] : -1;
+	}
+	
+	public boolean has(int axis) {
+		return positions[axis] != -1;
+	}
+	
+	/**
+	 * Letter of the axis at a position of the form
+	 */
+	public char axisAt(int position) {
+		return form.charAt(position);
+	}
+	
+	public int getBatchIndex() {
+		return positions[B];
+	}
+	
+	/**
+	 * Axes of the form without the batch axis, each one as a String
+	 */
+	public String[] getWorkingDims() {
+		return workingDims.clone();
+	}
+	
+	/**
+	 * Reorganise values given in the order of the form as [x, y, c, z]
+	 * @param values: one value per axis of the form
+	 * @param missing: value used for the axes that the form does not have
+	 * @return array organised as [x, y, c, z]
+	 */
+	public int[] toXYCZ(int[] values, int missing) {
+		int[] xycz = new int[4];
+		for (int i = 0; i < xycz.length; i ++)
+			xycz[i] = positions[i] == -1 ? missing : values[positions[i]];
+		return xycz;
+	}
+	
+	/**
+	 * Reorganise values given in the order of the form as [x, y, c, z]
+	 * @param values: one value per axis of the form
+	 * @param missing: value used for the axes that the form does not have
+	 * @return array organised as [x, y, c, z]
+	 */
+	public float[] toXYCZ(float[] values, float missing) {
+		float[] xycz = new float[4];
+		for (int i = 0; i < xycz.length; i ++)
+			xycz[i] = positions[i] == -1 ? missing : values[positions[i]];
+		return xycz;
+	}
+	
+	/**
+	 * Remove the value of the batch axis
+	 * @param values: one value per axis of the form
+	 * @return the same array if there is no batch axis, a new one without it otherwise
+	 */
+	public int[] removeBatch(int[] values) {
+		int batch = positions[B];
+		if (batch == -1)
+			return values;
+		int[] newValues = new int[values.length - 1];
+		System.arraycopy(values, 0, newValues, 0, batch);
+		System.arraycopy(values, batch + 1, newValues, batch, values.length - batch - 1);
+		return newValues;
+	}
+	
+	/**
+	 * Remove the value of the batch axis
+	 * @param values: one value per axis of the form
+	 * @return the same array if there is no batch axis, a new one without it otherwise
+	 */
+	public float[] removeBatch(float[] values) {
+		int batch = positions[B];
+		if (batch == -1)
+			return values;
+		float[] newValues = new float[values.length - 1];
+		System.arraycopy(values, 0, newValues, 0, batch);
+		System.arraycopy(values, batch + 1, newValues, batch, values.length - batch - 1);
+		return newValues;
+	}
+	
+	/**
+	 * Strides of a tensor with this form whose last axis is the one that
+	 * changes fastest in memory
+	 * @param shape: size of each axis of the form
+	 * @return number of elements between two consecutive values of each axis
+	 */
+	public long[] strides(int[] shape) {
+		long[] strides = new long[shape.length];
+		long stride = 1;
+		for (int i = shape.length - 1; i >= 0; i --) {
+			strides[i] = stride;
+			stride *= shape[i];
+		}
+		return strides;
+	}
+	
+	/**
+	 * Strides of the axes [x, y, c, z] of a tensor with this form
+	 * @param shape: size of each axis of the form
+	 * @return the strides organised as [x, y, c, z], 0 for the axes the form does not have
+	 */
+	public long[] stridesXYCZ(int[] shape) {
+		long[] strides = strides(shape);
+		long[] xycz = new long[4];
+		for (int i = 0; i < xycz.length; i ++)
+			xycz[i] = positions[i] == -1 ? 0 : strides[positions[i]];
+		return xycz;
+	}
+	
+	@Override
+	public String toString() {
+		return form;
+	}
+}
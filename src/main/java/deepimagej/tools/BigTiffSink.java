@@ -0,0 +1,290 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Output written to a 32-bit BigTIFF file while it is being computed. The
+ * tiles are inserted in a band that covers the rows of one row of tiles of
+ * the plan, and the band is written to disk as soon as all its tiles are
+ * done, so only the bands being filled are kept in memory. Each plane of
+ * the output is stored uncompressed as a single strip, and the directories
+ * of the planes are written at the end of the file by {@link #finish()}.
+ * The planes are ordered as in ImageJ hyperstacks (channels, slices, frames).
+ */
+public class BigTiffSink implements OutputSink {
+	
+	/*
+	 * Name of the format of the streamed outputs written by this sink
+	 */
+	public static final String FORMAT = "BigTIFF";
+	private static final int HEADER_BYTES = 16;
+	private static final int PIXEL_BYTES = 4;
+	/*
+	 * TIFF field types
+	 */
+	private static final short ASCII = 2;
+	private static final short SHORT = 3;
+	private static final short LONG = 4;
+	private static final short LONG8 = 16;
+	
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int width;
+	private final int height;
+	private final int channels;
+	private final int slices;
+	private final int frames;
+	/*
+	 * Tiles inserted in each band before it is complete
+	 */
+	private final int tilesPerBand;
+	private final int output;
+	/*
+	 * Bands being filled, by frame and first row
+	 */
+	private final HashMap<Long, Band> bands = new HashMap<Long, Band>();
+	private int maxBands = 0;
+	
+	/*
+	 * Rows [y0, y1) of every plane of a frame
+	 */
+	private static class Band {
+		final int y0;
+		final ImagePlus image;
+		int done = 0;
+		
+		Band(int y0, ImagePlus image) {
+			this.y0 = y0;
+			this.image = image;
+		}
+	}
+	
+	/**
+	 * Create the file of an output. The space of the pixels is reserved but
+	 * not written, so the tiles that are never inserted stay at 0
+	 * @param file: file where the output is written
+	 * @param size: size of the output, organised as [x, y, c, z, t]
+	 * @param plan: plan of the tiles of the run
+	 * @param output: index of the output image in the plan
+	 * @throws IOException if the file cannot be created
+	 */
+	public BigTiffSink(File file, int[] size, TilePlan plan, int output) throws IOException {
+		this.file = file;
+		this.width = size[0];
+		this.height = size[1];
+		this.channels = size[2];
+		this.slices = size[3];
+		this.frames = size[4];
+		this.output = output;
+		int[] grid = plan.getGrid();
+		tilesPerBand = grid[0] * grid[2];
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		raf.setLength(0);
+		raf.setLength(HEADER_BYTES + getDataBytes());
+	}
+	
+	@Override
+	public synchronized void insert(ImagePlus patch, int[] start, int[] end, int[] offset, int frame) throws IOException {
+		Band band = getBand(frame, start[1], end[1]);
+		ArrayOperations.imagePlusReconstructor(band.image, patch, start[0], end[0], start[1] - band.y0, end[1] - band.y0,
+											   start[2], end[2], offset[0], offset[1], offset[2]);
+	}
+
+	@Override
+	public synchronized void tileDone(Tile tile, int frame) throws IOException {
+		Band band = getBand(frame, tile.getDestinationStart(output)[1], tile.getDestinationEnd(output)[1]);
+		band.done ++;
+		if (band.done == tilesPerBand) {
+			write(band, frame);
+			bands.remove(getKey(frame, band.y0));
+		}
+	}
+
+	@Override
+	public ImagePlus getImage() {
+		return null;
+	}
+	
+	/**
+	 * Largest number of bands that have been in memory at the same time
+	 */
+	public synchronized int getMaxBands() {
+		return maxBands;
+	}
+
+	@Override
+	public synchronized Object finish() throws IOException {
+		// Bands with skipped tiles that were never notified
+		for (Long key : bands.keySet())
+			write(bands.get(key), (int) (key / height));
+		bands.clear();
+		writeDirectories();
+		channel.close();
+		raf.close();
+		return file;
+	}
+	
+	private long getDataBytes() {
+		return (long) width * height * channels * slices * frames * PIXEL_BYTES;
+	}
+	
+	private long getKey(int frame, int y0) {
+		return (long) frame * height + y0;
+	}
+	
+	/*
+	 * Band of the frame that starts at row y0, created if it does not exist
+	 */
+	private Band getBand(int frame, int y0, int y1) {
+		Band band = bands.get(getKey(frame, y0));
+		if (band == null) {
+			band = new Band(y0, IJ.createHyperStack("band", width, Math.max(1, y1 - y0), channels, slices, 1, 32));
+			bands.put(getKey(frame, y0), band);
+			maxBands = Math.max(maxBands, bands.size());
+		}
+		return band;
+	}
+	
+	/*
+	 * Write the rows of a band in every plane of the frame
+	 */
+	private void write(Band band, int frame) throws IOException {
+		ImageStack stack = band.image.getStack();
+		int rows = band.image.getHeight();
+		ByteBuffer buffer = ByteBuffer.allocate(width * rows * PIXEL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		FloatBuffer floats = buffer.asFloatBuffer();
+		for (int z = 0; z < slices; z ++) {
+			for (int c = 0; c < channels; c ++) {
+				long plane = ((long) frame * slices + z) * channels + c;
+				long position = HEADER_BYTES + (plane * height + band.y0) * width * PIXEL_BYTES;
+				floats.clear();
+				floats.put((float[]) stack.getPixels(band.image.getStackIndex(c + 1, z + 1, 1)));
+				buffer.clear();
+				while (buffer.hasRemaining())
+					position += channel.write(buffer, position);
+			}
+		}
+	}
+	
+	/*
+	 * Write the header and one directory per plane after the pixels
+	 */
+	private void writeDirectories() throws IOException {
+		int planes = channels * slices * frames;
+		byte[] description = ("ImageJ=1.53t\nimages=" + planes + "\nchannels=" + channels + "\nslices=" + slices
+							  + "\nframes=" + frames + "\nhyperstack=true\nmode=grayscale\n\0").getBytes(StandardCharsets.US_ASCII);
+		long descriptionOffset = HEADER_BYTES + getDataBytes();
+		long ifdOffset = descriptionOffset + description.length;
+		ifdOffset += ifdOffset % 2;
+		int firstEntries = 13;
+		long planeBytes = (long) width * height * PIXEL_BYTES;
+		ByteBuffer buffer = ByteBuffer.allocate(description.length + 1 + planes * (8 + firstEntries * 20 + 8)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(description);
+		if (buffer.position() % 2 != 0)
+			buffer.put((byte) 0);
+		long next = ifdOffset;
+		for (int p = 0; p < planes; p ++) {
+			int entries = p == 0 ? firstEntries : firstEntries - 1;
+			next += 8 + entries * 20 + 8;
+			buffer.putLong(entries);
+			putEntry(buffer, 254, LONG, 1, 0);
+			putEntry(buffer, 256, LONG, 1, width);
+			putEntry(buffer, 257, LONG, 1, height);
+			putEntry(buffer, 258, SHORT, 1, 32);
+			putEntry(buffer, 259, SHORT, 1, 1);
+			putEntry(buffer, 262, SHORT, 1, 1);
+			if (p == 0)
+				putEntry(buffer, 270, ASCII, description.length, descriptionOffset);
+			putEntry(buffer, 273, LONG8, 1, HEADER_BYTES + p * planeBytes);
+			putEntry(buffer, 277, SHORT, 1, 1);
+			putEntry(buffer, 278, LONG, 1, height);
+			putEntry(buffer, 279, LONG8, 1, planeBytes);
+			putEntry(buffer, 284, SHORT, 1, 1);
+			// IEEE floating point samples
+			putEntry(buffer, 339, SHORT, 1, 3);
+			buffer.putLong(p == planes - 1 ? 0 : next);
+		}
+		buffer.flip();
+		long position = descriptionOffset;
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+		// Little endian BigTIFF header pointing to the first directory
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.put((byte) 'I').put((byte) 'I').putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(ifdOffset);
+		header.flip();
+		position = 0;
+		while (header.hasRemaining())
+			position += channel.write(header, position);
+	}
+	
+	/*
+	 * Directory entry whose value fits in the 8 bytes of the entry
+	 */
+	private static void putEntry(ByteBuffer buffer, int tag, short type, long count, long value) {
+		buffer.putShort((short) tag).putShort(type).putLong(count);
+		if (type == SHORT)
+			buffer.putShort((short) value).putShort((short) 0).putInt(0);
+		else if (type == LONG)
+			buffer.putInt((int) value).putInt(0);
+		else
+			buffer.putLong(value);
+	}
+}
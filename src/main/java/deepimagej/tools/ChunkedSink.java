@@ -0,0 +1,256 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Output written to a chunked array store. The chunks have the size of the
+ * valid region of the tiles in the output, so a chunk is written once, as
+ * soon as the tiles that cover it are done, and only the chunks of the tiles
+ * that are still being stitched stay in memory. The chunks of the skipped
+ * tiles are not written, they are read as the fill value of the dataset.
+ */
+public class ChunkedSink implements OutputSink {
+	
+	private final ChunkedStore		store;
+	private final int				output;
+	/*
+	 * Size of the output and of the chunks, organised as [x, y, c, z, t]
+	 */
+	private final int[]				size;
+	private final int[]				chunk;
+	private final int[]				grid;
+	/*
+	 * Number of tiles that cover each chunk of a frame
+	 */
+	private final int[]				tilesPerChunk;
+	/*
+	 * Chunks that still miss some tiles
+	 */
+	private final HashMap<Long, Pending> pending = new HashMap<Long, Pending>();
+	private int						maxChunks = 0;
+	private int						written = 0;
+	
+	/*
+	 * Values of a chunk and tiles inserted in it. The values are null until
+	 * a tile is inserted
+	 */
+	private static class Pending {
+		float[] values;
+		int done = 0;
+	}
+	
+	/**
+	 * Create the dataset of an output
+	 * @param dir: folder of the dataset
+	 * @param format: one of {@link ChunkedStore#FORMATS}
+	 * @param size: size of the output, organised as [x, y, c, z, t]
+	 * @param plan: plan of the tiles of the run
+	 * @param output: index of the output image in the plan
+	 * @param gzip: whether the chunks are compressed
+	 * @throws IOException if the dataset cannot be created
+	 */
+	public ChunkedSink(File dir, String format, int[] size, TilePlan plan, int output, boolean gzip) throws IOException {
+		this.output = output;
+		this.size = size.clone();
+		int[] start = plan.get(0).getDestinationStart(output);
+		int[] end = plan.get(0).getDestinationEnd(output);
+		int[] tileChunk = {end[0] - start[0], end[1] - start[1], size[2], end[2] - start[2], 1};
+		store = ChunkedStore.create(dir, format, size, tileChunk, gzip);
+		chunk = store.getChunkSize();
+		grid = store.getGrid();
+		tilesPerChunk = new int[grid[0] * grid[1] * grid[3]];
+		for (Tile tile : plan) {
+			int[] from = getFirstChunk(tile);
+			int[] to = getLastChunk(tile);
+			for (int z = from[2]; z <= to[2]; z ++)
+				for (int y = from[1]; y <= to[1]; y ++)
+					for (int x = from[0]; x <= to[0]; x ++)
+						tilesPerChunk[(z * grid[1] + y) * grid[0] + x] ++;
+		}
+	}
+	
+	public ChunkedStore getStore() {
+		return store;
+	}
+	
+	@Override
+	public synchronized void insert(ImagePlus patch, int[] start, int[] end, int[] offset, int frame) throws IOException {
+		ImageStack stack = patch.getStack();
+		int width = patch.getWidth();
+		int channels = Math.min(size[2], patch.getNChannels());
+		for (int iz = start[2] / chunk[3]; iz <= (end[2] - 1) / chunk[3]; iz ++)
+		for (int iy = start[1] / chunk[1]; iy <= (end[1] - 1) / chunk[1]; iy ++)
+		for (int ix = start[0] / chunk[0]; ix <= (end[0] - 1) / chunk[0]; ix ++) {
+			Pending chunkValues = getPending(frame, ix, iy, iz);
+			if (chunkValues.values == null)
+				chunkValues.values = new float[chunk[0] * chunk[1] * chunk[2] * chunk[3]];
+			// Intersection of the region and the chunk in the output
+			int x0 = Math.max(start[0], ix * chunk[0]);
+			int x1 = Math.min(end[0], (ix + 1) * chunk[0]);
+			int y0 = Math.max(start[1], iy * chunk[1]);
+			int y1 = Math.min(end[1], (iy + 1) * chunk[1]);
+			int z0 = Math.max(start[2], iz * chunk[3]);
+			int z1 = Math.min(end[2], (iz + 1) * chunk[3]);
+			for (int z = z0; z < z1; z ++) {
+				int pz = offset[2] + z - start[2];
+				if (pz < 0 || pz >= patch.getNSlices())
+					continue;
+				for (int c = 0; c < channels; c ++) {
+					int index = patch.getStackIndex(c + 1, pz + 1, 1);
+					float[] pixels = stack.getPixels(index) instanceof float[] ? (float[]) stack.getPixels(index)
+									: (float[]) stack.getProcessor(index).convertToFloat().getPixels();
+					for (int y = y0; y < y1; y ++) {
+						int py = offset[1] + y - start[1];
+						// Only the part of the row inside of the patch is copied
+						int px0 = Math.max(0, offset[0] + x0 - start[0]);
+						int px1 = Math.min(width, offset[0] + x1 - start[0]);
+						if (py < 0 || py >= patch.getHeight() || px1 <= px0)
+							continue;
+						int dst = (((z - iz * chunk[3]) * chunk[2] + c) * chunk[1] + y - iy * chunk[1]) * chunk[0];
+						int dx = px0 - offset[0] + start[0] - ix * chunk[0];
+						System.arraycopy(pixels, py * width + px0, chunkValues.values, dst + dx, px1 - px0);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void tileDone(Tile tile, int frame) throws IOException {
+		int[] from = getFirstChunk(tile);
+		int[] to = getLastChunk(tile);
+		for (int z = from[2]; z <= to[2]; z ++) {
+			for (int y = from[1]; y <= to[1]; y ++) {
+				for (int x = from[0]; x <= to[0]; x ++) {
+					Pending chunkValues = getPending(frame, x, y, z);
+					chunkValues.done ++;
+					if (chunkValues.done < tilesPerChunk[(z * grid[1] + y) * grid[0] + x])
+						continue;
+					if (chunkValues.values != null) {
+						store.writeChunk(new int[] {x, y, 0, z, frame}, chunkValues.values);
+						written ++;
+					}
+					pending.remove(getKey(frame, x, y, z));
+				}
+			}
+		}
+	}
+
+	@Override
+	public ImagePlus getImage() {
+		return null;
+	}
+	
+	/**
+	 * Largest number of chunks that have been in memory at the same time
+	 */
+	public synchronized int getMaxChunks() {
+		return maxChunks;
+	}
+	
+	public synchronized int getWrittenChunks() {
+		return written;
+	}
+
+	@Override
+	public synchronized Object finish() throws IOException {
+		// Chunks with skipped tiles that were never notified
+		for (Long key : pending.keySet()) {
+			Pending chunkValues = pending.get(key);
+			if (chunkValues.values == null)
+				continue;
+			long k = key;
+			int x = (int) (k % grid[0]);
+			k /= grid[0];
+			int y = (int) (k % grid[1]);
+			k /= grid[1];
+			int z = (int) (k % grid[3]);
+			store.writeChunk(new int[] {x, y, 0, z, (int) (k / grid[3])}, chunkValues.values);
+			written ++;
+		}
+		pending.clear();
+		return store.getDirectory();
+	}
+	
+	private long getKey(int frame, int x, int y, int z) {
+		return (((long) frame * grid[3] + z) * grid[1] + y) * grid[0] + x;
+	}
+	
+	/*
+	 * Chunk of a frame that still misses some tiles, created if it does not exist
+	 */
+	private Pending getPending(int frame, int x, int y, int z) {
+		long key = getKey(frame, x, y, z);
+		Pending chunkValues = pending.get(key);
+		if (chunkValues == null) {
+			chunkValues = new Pending();
+			pending.put(key, chunkValues);
+			maxChunks = Math.max(maxChunks, pending.size());
+		}
+		return chunkValues;
+	}
+	
+	/*
+	 * First and last chunks covered by the valid region of a tile in the
+	 * output, organised as [x, y, z]
+	 */
+	private int[] getFirstChunk(Tile tile) {
+		int[] start = tile.getDestinationStart(output);
+		return new int[] {start[0] / chunk[0], start[1] / chunk[1], start[2] / chunk[3]};
+	}
+	
+	private int[] getLastChunk(Tile tile) {
+		int[] end = tile.getDestinationEnd(output);
+		return new int[] {(end[0] - 1) / chunk[0], (end[1] - 1) / chunk[1], (end[2] - 1) / chunk[3]};
+	}
+}
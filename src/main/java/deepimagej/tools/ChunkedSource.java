@@ -0,0 +1,177 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Input read from a chunked array store. The chunks are decoded when a tile
+ * needs them and kept in a small cache, so the chunks shared by neighbouring
+ * tiles are not read again.
+ */
+public class ChunkedSource implements InputSource {
+	
+	/*
+	 * Chunks kept in memory unless the cache size is set
+	 */
+	private static final int		DEFAULT_CACHE_CHUNKS = 64;
+	
+	private final ChunkedStore		store;
+	private final int[]				size;
+	private final int[]				chunk;
+	private final int[]				grid;
+	private int						maxChunks = DEFAULT_CACHE_CHUNKS;
+	/*
+	 * Decoded chunks, the least recently used is dropped first
+	 */
+	private final Map<Long, float[]> chunks = new LinkedHashMap<Long, float[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+			return size() > maxChunks;
+		}
+	};
+	/*
+	 * Chunks read from the store, to report how many were read more than once
+	 */
+	private final Set<Long>			readChunks = new HashSet<Long>();
+	private long					reads = 0;
+	
+	/**
+	 * Create the source of a dataset
+	 * @param store: dataset of the image
+	 */
+	public ChunkedSource(ChunkedStore store) {
+		this.store = store;
+		this.size = store.getSize();
+		this.chunk = store.getChunkSize();
+		this.grid = store.getGrid();
+	}
+	
+	public ChunkedStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * Size of the chunks of the dataset
+	 * @return size organised as [x, y, c, z, t]
+	 */
+	public int[] getChunkSize() {
+		return chunk.clone();
+	}
+	
+	/**
+	 * Set the number of decoded chunks kept in memory. It should cover the chunks
+	 * read by the tiles that follow each other, so every chunk is only read once
+	 * @param maxChunks: number of chunks
+	 */
+	public synchronized void setCacheSize(int maxChunks) {
+		this.maxChunks = Math.max(1, maxChunks);
+	}
+
+	@Override
+	public int[] getSize() {
+		return size.clone();
+	}
+
+	@Override
+	public String getTitle() {
+		return store.getDirectory().getName();
+	}
+
+	@Override
+	public boolean isParallel() {
+		return true;
+	}
+
+	@Override
+	public Object getPlane(int c, int z, int t) {
+		return new int[] {c, z, t};
+	}
+
+	@Override
+	public void readRow(Object plane, int y, int x, int length, float[] dst, int offset) {
+		int[] position = (int[]) plane;
+		int[] index = {0, y / chunk[1], position[0] / chunk[2], position[1] / chunk[3], position[2] / chunk[4]};
+		int row = (((position[2] % chunk[4] * chunk[3] + position[1] % chunk[3]) * chunk[2] + position[0] % chunk[2]) * chunk[1] + y % chunk[1]) * chunk[0];
+		// The row is copied chunk by chunk
+		for (int i = x; i < x + length; ) {
+			index[0] = i / chunk[0];
+			int n = Math.min(x + length, (index[0] + 1) * chunk[0]) - i;
+			System.arraycopy(getChunk(index), row + i % chunk[0], dst, offset + i - x, n);
+			i += n;
+		}
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return store + ", " + readChunks.size() + " chunks read " + reads + " times";
+	}
+	
+	/*
+	 * Decoded chunk at a position of the grid organised as [x, y, c, z, t]
+	 */
+	private synchronized float[] getChunk(int[] index) {
+		long key = (((index[4] * (long) grid[3] + index[3]) * grid[2] + index[2]) * grid[1] + index[1]) * grid[0] + index[0];
+		float[] values = chunks.get(key);
+		if (values != null)
+			return values;
+		try {
+			values = store.readChunk(index);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Cannot read a chunk of " + store.getDirectory().getName() + ": " + ex.getMessage(), ex);
+		}
+		reads ++;
+		readChunks.add(key);
+		chunks.put(key, values);
+		return values;
+	}
+}
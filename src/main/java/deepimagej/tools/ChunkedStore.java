@@ -0,0 +1,656 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Dataset of a chunked array store in the local file system, either in the
+ * N5 or in the Zarr v2 layout, with raw or gzip chunks. The chunks are
+ * exchanged as float arrays in the axes order of ImageJ, [x, y, c, z, t],
+ * whatever the order of the axes in the store.
+ */
+public class ChunkedStore {
+	
+	public static final String N5 = "N5";
+	public static final String ZARR = "Zarr";
+	/*
+	 * Layouts of the stores
+	 */
+	public static final String[] FORMATS = {N5, ZARR};
+	/*
+	 * Axes of the images, in the order of the arrays exchanged with the store
+	 */
+	private static final String AXES = "XYCZT";
+	
+	private final File				dir;
+	private final String			format;
+	/*
+	 * Size of the image and of the chunks, organised as [x, y, c, z, t]
+	 */
+	private final int[]				size;
+	private final int[]				chunk;
+	/*
+	 * Axis of the image of each dimension of the store, in the order of the
+	 * store: the first dimension varies the fastest in N5, the last one in Zarr
+	 */
+	private final int[]				axes;
+	/*
+	 * Bytes of each value: 1 and 2 for unsigned integers, 4 for float
+	 */
+	private final int				bytes;
+	private final ByteOrder			order;
+	/*
+	 * "raw", "gzip" or "zlib"
+	 */
+	private final String			compression;
+	private final float				fillValue;
+	/*
+	 * Separator of the indices in the names of the Zarr chunks
+	 */
+	private final String			separator;
+	
+	private ChunkedStore(File dir, String format, int[] size, int[] chunk, int[] axes, int bytes,
+						 ByteOrder order, String compression, float fillValue, String separator) {
+		this.dir = dir;
+		this.format = format;
+		this.size = size;
+		this.chunk = chunk;
+		this.axes = axes;
+		this.bytes = bytes;
+		this.order = order;
+		this.compression = compression;
+		this.fillValue = fillValue;
+		this.separator = separator;
+	}
+	
+	/**
+	 * Open a dataset with the axes written in its attributes, if any. Otherwise the
+	 * axes of a Zarr array are the last ones of "TCZYX" and those of an N5 dataset
+	 * the first ones of "XYZCT"
+	 * @param dir: folder of the dataset, with a .zarray or an attributes.json file
+	 * @return the dataset
+	 * @throws IOException if the dataset cannot be read
+	 */
+	public static ChunkedStore open(File dir) throws IOException {
+		return open(dir, null);
+	}
+	
+	/**
+	 * Open a dataset
+	 * @param dir: folder of the dataset, with a .zarray or an attributes.json file
+	 * @param axes: axes of the dimensions of the dataset in the order of its metadata,
+	 * 			for example "TCZYX", or null to use the default ones
+	 * @return the dataset
+	 * @throws IOException if the dataset cannot be read or uses an unsupported type or compression
+	 */
+	@SuppressWarnings("unchecked")
+	public static ChunkedStore open(File dir, String axes) throws IOException {
+		File zarray = new File(dir, ".zarray");
+		File attributes = new File(dir, "attributes.json");
+		if (zarray.isFile()) {
+			Map<String, Object> meta = (Map<String, Object>) Json.parse(read(zarray));
+			if (getNumber(meta, "zarr_format", 0) != 2)
+				throw new IOException("Only Zarr v2 arrays are supported");
+			if (!"C".equals(meta.get("order")))
+				throw new IOException("Only Zarr arrays in C order are supported");
+			if (meta.get("filters") != null)
+				throw new IOException("Zarr arrays with filters are not supported");
+			int[] shape = getInts(meta, "shape");
+			int[] chunks = getInts(meta, "chunks");
+			String dtype = String.valueOf(meta.get("dtype"));
+			ByteOrder order = dtype.startsWith(">") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+			int bytes = getBytes(dtype.substring(1));
+			String compression = "raw";
+			if (meta.get("compressor") != null) {
+				compression = String.valueOf(((Map<String, Object>) meta.get("compressor")).get("id"));
+				if (!compression.equals("gzip") && !compression.equals("zlib"))
+					throw new IOException("Unsupported Zarr compressor: " + compression);
+			}
+			float fill = meta.get("fill_value") instanceof Double ? ((Double) meta.get("fill_value")).floatValue() : 0;
+			String separator = meta.get("dimension_separator") == null ? "." : String.valueOf(meta.get("dimension_separator"));
+			if (axes == null)
+				axes = readAxes(new File(dir, ".zattrs"), "_ARRAY_DIMENSIONS");
+			if (axes == null && shape.length <= AXES.length())
+				axes = "TCZYX".substring(AXES.length() - shape.length);
+			return create(dir, ZARR, shape, chunks, axes, bytes, order, compression, fill, separator);
+		} else if (attributes.isFile()) {
+			Map<String, Object> meta = (Map<String, Object>) Json.parse(read(attributes));
+			int[] dimensions = getInts(meta, "dimensions");
+			int[] blockSize = getInts(meta, "blockSize");
+			String type = String.valueOf(meta.get("dataType"));
+			int bytes = type.equals("uint8") ? 1 : type.equals("uint16") ? 2 : type.equals("float32") ? 4 : 0;
+			if (bytes == 0)
+				throw new IOException("Only uint8, uint16 and float32 N5 datasets are supported, not " + type);
+			String compression = "raw";
+			if (meta.get("compression") instanceof Map) {
+				Map<String, Object> c = (Map<String, Object>) meta.get("compression");
+				compression = String.valueOf(c.get("type"));
+				if (compression.equals("gzip") && Boolean.TRUE.equals(c.get("useZlib")))
+					compression = "zlib";
+			} else if (meta.get("compressionType") != null) {
+				compression = String.valueOf(meta.get("compressionType"));
+			}
+			if (!compression.equals("raw") && !compression.equals("gzip") && !compression.equals("zlib"))
+				throw new IOException("Unsupported N5 compression: " + compression);
+			if (axes == null)
+				axes = readAxes(attributes, "axes");
+			if (axes == null && dimensions.length <= AXES.length())
+				axes = "XYZCT".substring(0, dimensions.length);
+			return create(dir, N5, dimensions, blockSize, axes, bytes, ByteOrder.BIG_ENDIAN, compression, 0, "/");
+		}
+		throw new IOException(dir + " is not an N5 dataset nor a Zarr array");
+	}
+	
+	/**
+	 * Create an empty float32 dataset with the five axes of ImageJ. The axes of a Zarr
+	 * array are written in the order "TCZYX" and those of an N5 dataset in the order "XYZCT"
+	 * @param dir: folder of the dataset, created if it does not exist
+	 * @param format: one of {@link #FORMATS}
+	 * @param size: size of the image, organised as [x, y, c, z, t]
+	 * @param chunk: size of the chunks, organised as [x, y, c, z, t]
+	 * @param gzip: whether the chunks are compressed
+	 * @return the dataset
+	 * @throws IOException if the metadata cannot be written
+	 */
+	public static ChunkedStore create(File dir, String format, int[] size, int[] chunk, boolean gzip) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create the folder " + dir);
+		String axes = format.equals(N5) ? "XYZCT" : "TCZYX";
+		int[] shape = new int[axes.length()];
+		int[] chunks = new int[axes.length()];
+		String[] names = new String[axes.length()];
+		for (int d = 0; d < shape.length; d ++) {
+			int axis = AXES.indexOf(axes.charAt(d));
+			shape[d] = size[axis];
+			chunks[d] = Math.max(1, Math.min(chunk[axis], size[axis]));
+			names[d] = "\"" + axes.substring(d, d + 1).toLowerCase() + "\"";
+		}
+		String compression = gzip ? "gzip" : "raw";
+		if (format.equals(N5)) {
+			write(new File(dir, "attributes.json"), "{\"dimensions\":" + Arrays.toString(shape) + ",\"blockSize\":" + Arrays.toString(chunks)
+					+ ",\"dataType\":\"float32\",\"compression\":{\"type\":\"" + compression + "\"},\"axes\":" + Arrays.toString(names) + "}");
+			return create(dir, N5, shape, chunks, axes, 4, ByteOrder.BIG_ENDIAN, compression, 0, "/");
+		}
+		write(new File(dir, ".zarray"), "{\"zarr_format\":2,\"shape\":" + Arrays.toString(shape) + ",\"chunks\":" + Arrays.toString(chunks)
+				+ ",\"dtype\":\"<f4\",\"compressor\":" + (gzip ? "{\"id\":\"gzip\",\"level\":1}" : "null")
+				+ ",\"fill_value\":0.0,\"order\":\"C\",\"filters\":null,\"dimension_separator\":\".\"}");
+		write(new File(dir, ".zattrs"), "{\"_ARRAY_DIMENSIONS\":" + Arrays.toString(names) + "}");
+		return create(dir, ZARR, shape, chunks, axes, 4, ByteOrder.LITTLE_ENDIAN, compression, 0, ".");
+	}
+	
+	/*
+	 * Create the dataset once its metadata has been read. The dimensions of the
+	 * store are reordered as the axes of ImageJ
+	 */
+	private static ChunkedStore create(File dir, String format, int[] shape, int[] chunks, String axes, int bytes,
+									   ByteOrder order, String compression, float fill, String separator) throws IOException {
+		if (axes == null || axes.length() != shape.length || chunks.length != shape.length)
+			throw new IOException("The axes of the " + shape.length + " dimensions of " + dir.getName() + " are unknown");
+		int[] size = {1, 1, 1, 1, 1};
+		int[] chunk = {1, 1, 1, 1, 1};
+		int[] axisOf = new int[shape.length];
+		for (int d = 0; d < shape.length; d ++) {
+			int axis = AXES.indexOf(Character.toUpperCase(axes.charAt(d)));
+			if (axis == -1 || axes.toUpperCase().indexOf(AXES.charAt(axis)) != d)
+				throw new IOException("Invalid axes " + axes + ", each of " + AXES + " can only appear once");
+			if (shape[d] <= 0 || chunks[d] <= 0)
+				throw new IOException("Invalid shape or chunks of " + dir.getName());
+			axisOf[d] = axis;
+			size[axis] = shape[d];
+			chunk[axis] = chunks[d];
+		}
+		return new ChunkedStore(dir, format, size, chunk, axisOf, bytes, order, compression, fill, separator);
+	}
+	
+	public File getDirectory() {
+		return dir;
+	}
+	
+	public String getFormat() {
+		return format;
+	}
+	
+	/**
+	 * Size of the image
+	 * @return size organised as [x, y, c, z, t]
+	 */
+	public int[] getSize() {
+		return size.clone();
+	}
+	
+	/**
+	 * Size of the chunks, the ones at the end of each axis can be smaller
+	 * @return size organised as [x, y, c, z, t]
+	 */
+	public int[] getChunkSize() {
+		return chunk.clone();
+	}
+	
+	/**
+	 * Number of chunks along each axis
+	 * @return number of chunks organised as [x, y, c, z, t]
+	 */
+	public int[] getGrid() {
+		int[] grid = new int[size.length];
+		for (int i = 0; i < grid.length; i ++)
+			grid[i] = (size[i] + chunk[i] - 1) / chunk[i];
+		return grid;
+	}
+	
+	/**
+	 * Read a chunk. The chunks that have not been written are filled with the
+	 * fill value of the dataset
+	 * @param index: position of the chunk in the grid, organised as [x, y, c, z, t]
+	 * @return the values of the chunk with the size of {@link #getChunkSize()}, x
+	 * 			varies the fastest, then y, c, z and t
+	 * @throws IOException if the chunk cannot be read
+	 */
+	public float[] readChunk(int[] index) throws IOException {
+		float[] values = new float[chunk[0] * chunk[1] * chunk[2] * chunk[3] * chunk[4]];
+		File file = getChunkFile(index);
+		if (!file.isFile()) {
+			Arrays.fill(values, fillValue);
+			return values;
+		}
+		byte[] data = Files.readAllBytes(file.toPath());
+		int[] extent = getStoredChunk();
+		int start = 0;
+		if (format.equals(N5)) {
+			// The header of the N5 blocks is not compressed, it contains the
+			// size of the block, which is smaller at the end of the axes
+			ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+			int mode = header.getShort(0);
+			int dims = header.getShort(2);
+			if (mode != 0 || dims != axes.length)
+				throw new IOException("Unsupported N5 block " + file);
+			for (int d = 0; d < dims; d ++)
+				extent[d] = header.getInt(4 + 4 * d);
+			start = 4 + 4 * dims;
+			Arrays.fill(values, fillValue);
+		}
+		byte[] raw = decompress(data, start);
+		ByteBuffer buffer = ByteBuffer.wrap(raw).order(order);
+		int[] stride = getStrides(extent);
+		int[] limit = new int[size.length];
+		Arrays.fill(limit, 1);
+		for (int d = 0; d < axes.length; d ++)
+			limit[axes[d]] = Math.min(extent[d], chunk[axes[d]]);
+		if (raw.length < (long) product(extent) * bytes)
+			throw new IOException("The chunk " + file + " is shorter than expected");
+		int[] pos = new int[size.length];
+		for (pos[4] = 0; pos[4] < limit[4]; pos[4] ++)
+		for (pos[3] = 0; pos[3] < limit[3]; pos[3] ++)
+		for (pos[2] = 0; pos[2] < limit[2]; pos[2] ++)
+		for (pos[1] = 0; pos[1] < limit[1]; pos[1] ++) {
+			int dst = (((pos[4] * chunk[3] + pos[3]) * chunk[2] + pos[2]) * chunk[1] + pos[1]) * chunk[0];
+			int src = pos[1] * stride[1] + pos[2] * stride[2] + pos[3] * stride[3] + pos[4] * stride[4];
+			for (int x = 0; x < limit[0]; x ++)
+				values[dst + x] = getValue(buffer, (src + x * stride[0]) * bytes);
+		}
+		return values;
+	}
+	
+	/**
+	 * Write a float32 chunk
+	 * @param index: position of the chunk in the grid, organised as [x, y, c, z, t]
+	 * @param values: values of the chunk as returned by {@link #readChunk(int[])}
+	 * @throws IOException if the chunk cannot be written
+	 */
+	public void writeChunk(int[] index, float[] values) throws IOException {
+		if (bytes != 4)
+			throw new IOException("Only float32 datasets can be written");
+		int[] extent = getStoredChunk();
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		if (format.equals(N5)) {
+			// N5 only stores the part of the block inside of the dataset
+			for (int d = 0; d < axes.length; d ++)
+				extent[d] = Math.min(extent[d], size[axes[d]] - index[axes[d]] * chunk[axes[d]]);
+			ByteBuffer h = ByteBuffer.allocate(4 + 4 * axes.length).order(ByteOrder.BIG_ENDIAN);
+			h.putShort((short) 0).putShort((short) axes.length);
+			for (int d = 0; d < axes.length; d ++)
+				h.putInt(extent[d]);
+			header.write(h.array());
+		}
+		int[] stride = getStrides(extent);
+		ByteBuffer buffer = ByteBuffer.allocate(product(extent) * 4).order(order);
+		int[] limit = new int[size.length];
+		Arrays.fill(limit, 1);
+		for (int d = 0; d < axes.length; d ++)
+			limit[axes[d]] = Math.min(extent[d], chunk[axes[d]]);
+		int[] pos = new int[size.length];
+		for (pos[4] = 0; pos[4] < limit[4]; pos[4] ++)
+		for (pos[3] = 0; pos[3] < limit[3]; pos[3] ++)
+		for (pos[2] = 0; pos[2] < limit[2]; pos[2] ++)
+		for (pos[1] = 0; pos[1] < limit[1]; pos[1] ++) {
+			int src = (((pos[4] * chunk[3] + pos[3]) * chunk[2] + pos[2]) * chunk[1] + pos[1]) * chunk[0];
+			int dst = pos[1] * stride[1] + pos[2] * stride[2] + pos[3] * stride[3] + pos[4] * stride[4];
+			for (int x = 0; x < limit[0]; x ++)
+				buffer.putFloat((dst + x * stride[0]) * 4, values[src + x]);
+		}
+		File file = getChunkFile(index);
+		File parent = file.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Cannot create the folder " + parent);
+		try (OutputStream out = Files.newOutputStream(file.toPath())) {
+			out.write(header.toByteArray());
+			if (compression.equals("raw")) {
+				out.write(buffer.array());
+			} else {
+				// The file is closed by the outer block
+				GZIPOutputStream gzip = new GZIPOutputStream(out);
+				gzip.write(buffer.array());
+				gzip.finish();
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return format + " dataset " + dir.getName() + " of " + size[0] + "x" + size[1] + "x" + size[2] + "x" + size[3] + "x" + size[4]
+				+ " (XYCZT) in chunks of " + chunk[0] + "x" + chunk[1] + "x" + chunk[2] + "x" + chunk[3] + "x" + chunk[4] + ", " + compression;
+	}
+	
+	/*
+	 * File of a chunk, given its position in the grid organised as [x, y, c, z, t]
+	 */
+	private File getChunkFile(int[] index) {
+		StringBuilder name = new StringBuilder();
+		for (int d = 0; d < axes.length; d ++) {
+			if (d > 0)
+				name.append(format.equals(N5) ? File.separator : separator.replace("/", File.separator));
+			name.append(index[axes[d]]);
+		}
+		return new File(dir, name.toString());
+	}
+	
+	/*
+	 * Size of a full chunk in the order of the dimensions of the store
+	 */
+	private int[] getStoredChunk() {
+		int[] extent = new int[axes.length];
+		for (int d = 0; d < axes.length; d ++)
+			extent[d] = chunk[axes[d]];
+		return extent;
+	}
+	
+	/*
+	 * Distance in values between two consecutive positions along each axis of
+	 * ImageJ, for a chunk of size 'extent' in the order of the store
+	 */
+	private int[] getStrides(int[] extent) {
+		int[] stride = new int[size.length];
+		int s = 1;
+		for (int i = 0; i < axes.length; i ++) {
+			// The first dimension varies the fastest in N5, the last one in Zarr
+			int d = format.equals(N5) ? i : axes.length - 1 - i;
+			stride[axes[d]] = s;
+			s *= extent[d];
+		}
+		return stride;
+	}
+	
+	private float getValue(ByteBuffer buffer, int position) {
+		if (bytes == 4)
+			return buffer.getFloat(position);
+		if (bytes == 2)
+			return buffer.getShort(position) & 0xffff;
+		return buffer.get(position) & 0xff;
+	}
+	
+	private byte[] decompress(byte[] data, int start) throws IOException {
+		if (compression.equals("raw"))
+			return start == 0 ? data : Arrays.copyOfRange(data, start, data.length);
+		ByteArrayInputStream in = new ByteArrayInputStream(data, start, data.length - start);
+		try (InputStream stream = compression.equals("gzip") ? new GZIPInputStream(in) : new InflaterInputStream(in)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] block = new byte[1 << 16];
+			for (int n = stream.read(block); n > 0; n = stream.read(block))
+				out.write(block, 0, n);
+			return out.toByteArray();
+		}
+	}
+	
+	private static int product(int[] values) {
+		int p = 1;
+		for (int v : values)
+			p *= v;
+		return p;
+	}
+	
+	/*
+	 * Bytes of a Zarr data type without the byte order, such as "f4"
+	 */
+	private static int getBytes(String type) throws IOException {
+		if (type.equals("u1"))
+			return 1;
+		if (type.equals("u2"))
+			return 2;
+		if (type.equals("f4"))
+			return 4;
+		throw new IOException("Only u1, u2 and f4 Zarr arrays are supported, not " + type);
+	}
+	
+	/*
+	 * Axes written as a list of names such as ["t", "c", "z", "y", "x"] in an
+	 * attribute of a JSON file, null if there is no such attribute
+	 */
+	@SuppressWarnings("unchecked")
+	private static String readAxes(File file, String key) throws IOException {
+		if (!file.isFile())
+			return null;
+		Object value = ((Map<String, Object>) Json.parse(read(file))).get(key);
+		if (!(value instanceof List))
+			return null;
+		StringBuilder axes = new StringBuilder();
+		for (Object name : (List<Object>) value) {
+			String axis = String.valueOf(name).toUpperCase();
+			if (axis.length() != 1 || AXES.indexOf(axis) == -1)
+				return null;
+			axes.append(axis);
+		}
+		return axes.toString();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static int[] getInts(Map<String, Object> meta, String key) throws IOException {
+		if (!(meta.get(key) instanceof List))
+			throw new IOException("The metadata does not contain '" + key + "'");
+		List<Object> list = (List<Object>) meta.get(key);
+		int[] values = new int[list.size()];
+		for (int i = 0; i < values.length; i ++)
+			values[i] = ((Double) list.get(i)).intValue();
+		return values;
+	}
+	
+	private static double getNumber(Map<String, Object> meta, String key, double defaultValue) {
+		return meta.get(key) instanceof Double ? (Double) meta.get(key) : defaultValue;
+	}
+	
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+	
+	private static void write(File file, String text) throws IOException {
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/*
+	 * Minimal reader of the JSON metadata of the stores. Objects are read as
+	 * maps, arrays as lists and numbers as doubles
+	 */
+	private static class Json {
+		private final String text;
+		private int pos = 0;
+		
+		private Json(String text) {
+			this.text = text;
+		}
+		
+		static Object parse(String text) throws IOException {
+			Json json = new Json(text);
+			try {
+				Object value = json.value();
+				json.skipSpaces();
+				if (json.pos != text.length())
+					throw new IOException("Unexpected characters at the end of the JSON metadata");
+				return value;
+			} catch (IndexOutOfBoundsException | NumberFormatException ex) {
+				throw new IOException("Invalid JSON metadata");
+			}
+		}
+		
+		private Object value() throws IOException {
+			skipSpaces();
+			if (pos >= text.length())
+				throw new IOException("Unexpected end of the JSON metadata");
+			char c = text.charAt(pos);
+			if (c == '{') {
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				pos ++;
+				skipSpaces();
+				if (text.charAt(pos) == '}') {
+					pos ++;
+					return map;
+				}
+				do {
+					skipSpaces();
+					String key = string();
+					skipSpaces();
+					expect(':');
+					map.put(key, value());
+					skipSpaces();
+				} while (text.charAt(pos ++) == ',');
+				if (text.charAt(pos - 1) != '}')
+					throw new IOException("Expected '}' in the JSON metadata");
+				return map;
+			} else if (c == '[') {
+				List<Object> list = new ArrayList<Object>();
+				pos ++;
+				skipSpaces();
+				if (text.charAt(pos) == ']') {
+					pos ++;
+					return list;
+				}
+				do {
+					list.add(value());
+					skipSpaces();
+				} while (text.charAt(pos ++) == ',');
+				if (text.charAt(pos - 1) != ']')
+					throw new IOException("Expected ']' in the JSON metadata");
+				return list;
+			} else if (c == '"') {
+				return string();
+			} else if (text.startsWith("true", pos)) {
+				pos += 4;
+				return Boolean.TRUE;
+			} else if (text.startsWith("false", pos)) {
+				pos += 5;
+				return Boolean.FALSE;
+			} else if (text.startsWith("null", pos)) {
+				pos += 4;
+				return null;
+			}
+			int start = pos;
+			while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) != -1)
+				pos ++;
+			try {
+				return Double.parseDouble(text.substring(start, pos));
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid value in the JSON metadata at position " + start);
+			}
+		}
+		
+		private String string() throws IOException {
+			expect('"');
+			StringBuilder s = new StringBuilder();
+			while (text.charAt(pos) != '"') {
+				char c = text.charAt(pos ++);
+				if (c == '\\') {
+					char e = text.charAt(pos ++);
+					if (e == 'u') {
+						s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+						pos += 4;
+					} else {
+						s.append(e == 'n' ? '\n' : e == 't' ? '\t' : e == 'r' ? '\r' : e == 'b' ? '\b' : e == 'f' ? '\f' : e);
+					}
+				} else {
+					s.append(c);
+				}
+			}
+			pos ++;
+			return s.toString();
+		}
+		
+		private void expect(char c) throws IOException {
+			if (pos >= text.length() || text.charAt(pos) != c)
+				throw new IOException("Expected '" + c + "' in the JSON metadata at position " + pos);
+			pos ++;
+		}
+		
+		private void skipSpaces() {
+			while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+				pos ++;
+		}
+	}
+}
@@ -37,72 +37,19 @@
 
 package deepimagej.tools;
 
-import ij.IJ;
-import ij.ImagePlus;
-import ij.process.FloatProcessor;
-import ij.process.ImageProcessor;
-
 public class CompactMirroring {
 	
-	public static ImagePlus mirrorXY(ImagePlus imp, 
-							   int paddingXLeft, int paddingXRight,
-							   int paddingYTop, int paddingYBottom,
-							   int paddingZFront, int paddingZBack) {
-		int nx = imp.getWidth();
-		int ny = imp.getHeight();
-		int nc = imp.getNChannels();
-		int nz = imp.getNSlices();
-		int nt = imp.getNFrames();
-		ImagePlus out = IJ.createImage("Mirror", "32-bits", nx + paddingXLeft + paddingXRight,
-										ny + paddingYTop + paddingYBottom, nc, nz + paddingZFront + paddingZBack, nt);
-		for(int c=0; c<nc; c++)
-			for(int z=0; z<nz; z++)
-				for(int t=0; t<nt; t++) {
-					imp.setPositionWithoutUpdate(c + 1, z + 1, t + 1);
-					out.setPositionWithoutUpdate(c + 1, z + paddingZFront + 1, t + 1);
-					ImageProcessor ip = imp.getProcessor();
-					ImageProcessor op = mirrorXY(ip, paddingXLeft, paddingXRight,
-							   					 paddingYTop, paddingYBottom);
-					out.setProcessor(op);
-					if (z < paddingZFront) {
-						out.setPositionWithoutUpdate(c + 1, z + 1, t + 1);
-					} else if (z >= nz - paddingZBack) {
-						int sliceZBack = 2 * nz - z;
-						out.setPositionWithoutUpdate(c + 1, sliceZBack, t + 1);
-					}
-					out.setProcessor(op);
-				}
-		return out;
-	}
-	
-	private static ImageProcessor mirrorXY(ImageProcessor ip,
-								   int paddingXLeft, int paddingXRight,
-								   int paddingYTop, int paddingYBottom) {
-		int nx = ip.getWidth();
-		int ny = ip.getHeight();
-		FloatProcessor fp = new FloatProcessor(nx + paddingXLeft + paddingXRight,
-												ny + paddingYTop + paddingYBottom);
-		int periodX = 2*nx - 2;
-		int periodY = 2*ny - 2;
-		int xm, ym;
-		for(int x = -paddingXLeft; x<nx+paddingXRight; x++) {
-			xm = mirror(x, nx, periodX);
-			for(int y = -paddingYTop; y<ny+paddingYBottom; y++) {
-				ym = mirror(y, ny, periodY);
-				double v = ip.getPixelValue(xm, ym);
-				fp.putPixelValue(x+paddingXLeft, y+paddingYTop, v);
-			}
-		}
-		return fp;
-	}
-	
-	private static int mirror(int a, int n, int period) {
-		while (a < 0)
+	/*
+	 * Position inside [0, n) of the mirrored pixel 'a', where 'period' is 2 * n - 2.
+	 * The index is computed directly instead of folding the position until it
+	 * falls inside the image
+	 */
+	public static int mirror(int a, int n, int period) {
+		if (n == 1)
+			return 0;
+		a = a % period;
+		if (a < 0)
 			a += period;
-		while (a >= n) {
-			a = period - a;
-			a = (a < 0 ? -a : a);
-		}
-		return a;
+		return a < n ? a : period - a;
 	}
 }
@@ -0,0 +1,190 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.awt.EventQueue;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.process.ImageProcessor;
+
+/**
+ * Running display range of an image that is built tile by tile. Every
+ * stitched tile updates the range with the min and max of the region it
+ * writes, so the full output never has to be scanned again. The range is
+ * applied to the image at most once every refresh interval while the
+ * image is being built, and always when it is finished.
+ */
+public class DisplayRange {
+	
+	private final ImagePlus image;
+	/*
+	 * Minimum time in milliseconds between two updates of the display
+	 */
+	private final long refreshInterval;
+	private double min = Double.MAX_VALUE;
+	private double max = -Double.MAX_VALUE;
+	private long lastRefresh = 0;
+	
+	/**
+	 * Create the display range of an image
+	 * @param image: image whose display range is tracked
+	 * @param refreshInterval: minimum time in ms between two refreshes of the display
+	 */
+	public DisplayRange(ImagePlus image, long refreshInterval) {
+		this.image = image;
+		this.refreshInterval = refreshInterval;
+	}
+	
+	/**
+	 * Update the range with the region of a tile that is inserted in the image.
+	 * The region is the same one used by
+	 * {@link ArrayOperations#imagePlusReconstructor(ImagePlus, ImagePlus, int, int, int, int, int, int, int, int, int)}
+	 * @param patch: tile computed by the model
+	 * @param x0: start of the region in X in the tile
+	 * @param y0: start of the region in Y in the tile
+	 * @param z0: start of the region in Z in the tile
+	 * @param roiX: size of the region in X
+	 * @param roiY: size of the region in Y
+	 * @param roiZ: size of the region in Z
+	 */
+	public void update(ImagePlus patch, int x0, int y0, int z0, int roiX, int roiY, int roiZ) {
+		int xEnd = Math.min(x0 + roiX, patch.getWidth());
+		int yEnd = Math.min(y0 + roiY, patch.getHeight());
+		int zEnd = Math.min(z0 + roiZ, patch.getNSlices());
+		x0 = Math.max(x0, 0); y0 = Math.max(y0, 0); z0 = Math.max(z0, 0);
+		int width = patch.getWidth();
+		ImageStack stack = patch.getStack();
+		double tileMin = Double.MAX_VALUE;
+		double tileMax = -Double.MAX_VALUE;
+		for (int z = z0; z < zEnd; z ++) {
+			for (int c = 0; c < patch.getNChannels(); c ++) {
+				int ind = patch.getStackIndex(c + 1, z + 1, 1);
+				Object pixels = stack.getPixels(ind);
+				if (pixels instanceof float[]) {
+					float[] fp = (float[]) pixels;
+					for (int y = y0; y < yEnd; y ++) {
+						for (int i = y * width + x0; i < y * width + xEnd; i ++) {
+							float v = fp[i];
+							if (v < tileMin)
+								tileMin = v;
+							if (v > tileMax)
+								tileMax = v;
+						}
+					}
+				} else {
+					ImageProcessor ip = stack.getProcessor(ind);
+					for (int y = y0; y < yEnd; y ++) {
+						for (int x = x0; x < xEnd; x ++) {
+							double v = ip.getPixelValue(x, y);
+							if (v < tileMin)
+								tileMin = v;
+							if (v > tileMax)
+								tileMax = v;
+						}
+					}
+				}
+			}
+		}
+		synchronized (this) {
+			min = Math.min(min, tileMin);
+			max = Math.max(max, tileMax);
+		}
+	}
+	
+	/**
+	 * Extend the range with the given values, for example with the range
+	 * of an image whose tiles are only partially replaced
+	 * @param rangeMin: minimum value
+	 * @param rangeMax: maximum value
+	 */
+	public synchronized void include(double rangeMin, double rangeMax) {
+		min = Math.min(min, rangeMin);
+		max = Math.max(max, rangeMax);
+	}
+	
+	public synchronized double getMin() {
+		return min;
+	}
+	
+	public synchronized double getMax() {
+		return max;
+	}
+	
+	/**
+	 * Whether no pixel has been added to the range yet
+	 */
+	public synchronized boolean isEmpty() {
+		return min > max;
+	}
+	
+	/**
+	 * Refresh the display of the image if the refresh interval has passed
+	 * since the last refresh. The display is updated in the event dispatch
+	 * thread, so the caller does not wait for the image to be drawn
+	 */
+	public void refresh() {
+		long now = System.currentTimeMillis();
+		if (now - lastRefresh < refreshInterval || isEmpty())
+			return;
+		lastRefresh = now;
+		final double dMin = getMin();
+		final double dMax = getMax();
+		EventQueue.invokeLater(() -> {
+			image.setDisplayRange(dMin, dMax);
+			image.updateAndDraw();
+		});
+	}
+	
+	/**
+	 * Set the final display range of the image
+	 */
+	public void apply() {
+		if (isEmpty())
+			return;
+		image.setDisplayRange(getMin(), getMax());
+		image.updateAndDraw();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Input read from an ImagePlus. The pixels of a virtual stack are
+ * read by ImageJ one plane at a time.
+ */
+public class ImageSource implements InputSource {
+	
+	private final ImagePlus image;
+	private final ImageStack stack;
+	/*
+	 * Calibration table of 8 and 16-bit images, null if there is none
+	 */
+	private final float[] cTable;
+	
+	/**
+	 * Create the source of an image
+	 * @param image: 8, 16 or 32-bit image
+	 */
+	public ImageSource(ImagePlus image) {
+		this.image = image;
+		this.stack = image.getStack();
+		this.cTable = image.getCalibration().getCTable();
+	}
+	
+	public ImagePlus getImage() {
+		return image;
+	}
+
+	@Override
+	public int[] getSize() {
+		return image.getDimensions();
+	}
+
+	@Override
+	public String getTitle() {
+		return image.getTitle();
+	}
+
+	/*
+	 * The planes of virtual stacks are read from disk, one at a time
+	 */
+	@Override
+	public boolean isParallel() {
+		return !stack.isVirtual();
+	}
+
+	@Override
+	public Object getPlane(int c, int z, int t) {
+		return stack.getPixels(image.getStackIndex(c + 1, z + 1, t + 1));
+	}
+
+	/*
+	 * 8 and 16-bit values are converted with the calibration table, if any
+	 */
+	@Override
+	public void readRow(Object plane, int y, int x, int length, float[] dst, int offset) {
+		int start = y * image.getWidth() + x;
+		if (plane instanceof float[]) {
+			System.arraycopy((float[]) plane, start, dst, offset, length);
+		} else if (plane instanceof short[]) {
+			short[] pixels = (short[]) plane;
+			for (int i = 0; i < length; i ++)
+				dst[offset + i] = cTable == null ? pixels[start + i] & 0xffff : cTable[pixels[start + i] & 0xffff];
+		} else if (plane instanceof byte[]) {
+			byte[] pixels = (byte[]) plane;
+			for (int i = 0; i < length; i ++)
+				dst[offset + i] = cTable == null ? pixels[start + i] & 0xff : cTable[pixels[start + i] & 0xff];
+		} else {
+			throw new IllegalArgumentException("Unsupported pixel type: " + plane.getClass().getSimpleName());
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import deepimagej.ParametersCache;
+import ij.ImagePlus;
+import ij.gui.Roi;
+
+/**
+ * State of a run that allows the next run of the same model on the same
+ * image to recompute only the tiles that have changed. For each image the
+ * tile plan, a fingerprint of every tile and the stitched outputs of the
+ * last run are kept. When the model is run again with the same plan, every
+ * tile is extracted and it is only sent to the model if:
+ * - the pixels of the tile are not the same ones of the last run, or
+ * - the image has a ROI and the region read by the tile (its valid region
+ * plus the halo) intersects the bounds of the ROI.
+ * The recomputed tiles are stitched into the outputs of the last run. As
+ * every tile reused is checked against its fingerprint, the outputs of an
+ * image are never patched into the run of another image with the same title.
+ */
+public class IncrementalRun {
+	
+	/*
+	 * Maximum number of images whose last run is kept. The outputs of
+	 * the runs stay in memory as long as they are kept
+	 */
+	private static final int MAX_IMAGES = 2;
+	/*
+	 * Last run of each image, by the title and the size of the image. The
+	 * plugin runs the model on a copy of the displayed image, so the ID
+	 * changes from one run to the next, but the title does not
+	 */
+	private static final LinkedHashMap<String, IncrementalRun> lastRuns = new LinkedHashMap<String, IncrementalRun>(4, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, IncrementalRun> eldest) {
+			return size() > MAX_IMAGES;
+		}
+	};
+	
+	/*
+	 * Hash of everything but the pixels that determines the outputs
+	 */
+	private final String signature;
+	/*
+	 * Fingerprint of each tile, organised as [frame][tile]
+	 */
+	private final String[][] fingerprints;
+	/*
+	 * Last run of the image with the same signature, null if there is none
+	 */
+	private final IncrementalRun previous;
+	/*
+	 * Bounds of the region that is recomputed whatever its pixels, null if there is none
+	 */
+	private final Rectangle dirty;
+	private ImagePlus[] outputs;
+	private int recomputed = 0;
+	
+	private IncrementalRun(String signature, int frames, int tiles, IncrementalRun previous, Rectangle dirty) {
+		this.signature = signature;
+		this.fingerprints = new String[frames][tiles];
+		this.previous = previous;
+		this.dirty = dirty;
+	}
+	
+	/**
+	 * Start a run, retrieving the last run of the image if it was made with the
+	 * same signature and its outputs are still open
+	 * @param image: input image
+	 * @param signature: value returned by {@link #getSignature(String, String, TilePlan, String, int, String, double)}
+	 * @param plan: tile plan of the run
+	 * @param frames: number of frames of the image
+	 * @param nOutputs: number of output images of the model
+	 * @return the new run
+	 */
+	public static IncrementalRun start(ImagePlus image, String signature, TilePlan plan, int frames, int nOutputs) {
+		IncrementalRun previous;
+		synchronized (lastRuns) {
+			previous = lastRuns.get(getKey(image));
+		}
+		if (previous != null && (!previous.signature.equals(signature) || previous.outputs == null
+				|| previous.outputs.length != nOutputs || !previous.isOpen())) {
+			// The outputs that were closed cannot be reused
+			synchronized (lastRuns) {
+				lastRuns.remove(getKey(image));
+			}
+			previous = null;
+		}
+		Rectangle dirty = null;
+		Roi roi = image.getRoi();
+		if (previous != null && roi != null)
+			dirty = roi.getBounds();
+		return new IncrementalRun(signature, frames, plan.size(), previous, dirty);
+	}
+	
+	/**
+	 * Hash of the parameters of a run that determine its outputs, apart from
+	 * the pixels of the image
+	 * @param modelName: name of the model
+	 * @param weightsSha256: sha256 of the weights of the model
+	 * @param plan: tile plan of the run
+	 * @param paddingMode: padding of the tiles at the border of the image
+	 * @param frames: number of frames of the image
+	 * @param backgroundTiles: how the background tiles are skipped, one of {@link TileClassifier#MODES}
+	 * @param backgroundThreshold: threshold of the background tiles
+	 * @return the signature
+	 */
+	public static String getSignature(String modelName, String weightsSha256, TilePlan plan, String paddingMode, int frames,
+									  String backgroundTiles, double backgroundThreshold) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(modelName).append('|').append(weightsSha256).append('|').append(paddingMode).append('|').append(frames);
+		sb.append('|').append(backgroundTiles).append('|').append(backgroundThreshold);
+		sb.append('|').append(Arrays.toString(plan.getImageSize())).append('|').append(Arrays.toString(plan.getPatchSize()));
+		sb.append('|').append(Arrays.deepToString(plan.getAddedPixels())).append('|').append(Arrays.toString(plan.getGrid()));
+		for (int o = 0; o < plan.getOutputCount(); o ++)
+			sb.append('|').append(Arrays.toString(plan.getScale(o))).append(Arrays.toString(plan.getOffset(o)));
+		return ParametersCache.sha256(sb.toString());
+	}
+	
+	/**
+	 * Outputs of the last run, where the recomputed tiles have to be stitched
+	 * @return the outputs, null if every tile has to be computed
+	 */
+	public ImagePlus[] getPreviousOutputs() {
+		return previous == null ? null : previous.outputs;
+	}
+	
+	/**
+	 * Record the fingerprint of an extracted tile and compare it with the last run
+	 * @param frame: frame of the tile, starting at 0
+	 * @param tile: tile of the plan
+	 * @param patch: pixels of the tile, as sent to the model
+	 * @return true if the tile does not have to be recomputed
+	 */
+	public boolean isUnchanged(int frame, Tile tile, ImagePlus patch) {
+		String fingerprint = TileResultCache.hashPixels(patch);
+		fingerprints[frame][tile.getIndex()] = fingerprint;
+		boolean unchanged = previous != null && !readsDirtyRegion(tile)
+							&& fingerprint.equals(previous.fingerprints[frame][tile.getIndex()]);
+		if (!unchanged)
+			recomputed ++;
+		return unchanged;
+	}
+	
+	/**
+	 * Keep the run as the last one of the image
+	 * @param image: input image
+	 * @param outputs: stitched outputs of the run
+	 */
+	public void finish(ImagePlus image, ImagePlus[] outputs) {
+		this.outputs = outputs.clone();
+		synchronized (lastRuns) {
+			lastRuns.put(getKey(image), this);
+		}
+	}
+	
+	/**
+	 * Forget the last run of every image, releasing its outputs
+	 */
+	public static void clear() {
+		synchronized (lastRuns) {
+			lastRuns.clear();
+		}
+	}
+	
+	private static String getKey(ImagePlus image) {
+		return image.getTitle() + Arrays.toString(image.getDimensions());
+	}
+	
+	/*
+	 * Whether the region read by a tile intersects the ROI of the image
+	 */
+	private boolean readsDirtyRegion(Tile tile) {
+		if (dirty == null)
+			return false;
+		int[] start = tile.getSourceStart();
+		int[] end = tile.getSourceEnd();
+		return new Rectangle(start[0], start[1], end[0] - start[0], end[1] - start[1]).intersects(dirty);
+	}
+	
+	/*
+	 * Whether all the outputs of the run are still open. Closing an image
+	 * releases its pixels
+	 */
+	private boolean isOpen() {
+		for (ImagePlus output : outputs) {
+			if (output == null || output.getStack() == null || output.getStack().getSize() == 0)
+				return false;
+			for (int i = 1; i <= output.getStackSize(); i ++) {
+				if (output.getStack().getPixels(i) == null)
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		int tiles = fingerprints.length * (fingerprints.length == 0 ? 0 : fingerprints[0].length);
+		if (previous == null)
+			return "Incremental run: no previous run with the same model and tiles, " + recomputed + " tiles computed";
+		return "Incremental run: " + recomputed + " of " + tiles + " tiles recomputed"
+				+ (dirty == null ? " (changed pixels)" : " (changed pixels and tiles that intersect the ROI)");
+	}
+}
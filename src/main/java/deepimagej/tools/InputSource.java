@@ -0,0 +1,89 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+/**
+ * Image the tiles are read from. The rows of the tiles are read one by one,
+ * so an implementation only needs to access the pixels of the tiles, without
+ * loading the whole image in memory.
+ */
+public interface InputSource {
+	
+	/**
+	 * Size of the image
+	 * @return size organised as [x, y, c, z, t]
+	 */
+	public int[] getSize();
+	
+	public String getTitle();
+	
+	/**
+	 * Whether the rows can be read by several threads at the same time
+	 * @return false if the rows have to be read serially
+	 */
+	public boolean isParallel();
+	
+	/**
+	 * Access one plane of the image. The plane is only meant to be
+	 * passed to {@link #readRow(Object, int, int, int, float[], int)}
+	 * @param c: channel, starting at 0
+	 * @param z: slice, starting at 0
+	 * @param t: frame, starting at 0
+	 * @return the plane
+	 */
+	public Object getPlane(int c, int z, int t);
+	
+	/**
+	 * Read part of a row of a plane, converted to float
+	 * @param plane: plane returned by {@link #getPlane(int, int, int)}
+	 * @param y: row of the plane
+	 * @param x: first pixel of the row that is read
+	 * @param length: number of pixels read, all of them inside of the row
+	 * @param dst: array where the pixels are written
+	 * @param offset: position of the first pixel in 'dst'
+	 */
+	public void readRow(Object plane, int y, int x, int length, float[] dst, int offset);
+}
@@ -0,0 +1,417 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ij.ImagePlus;
+import ij.io.FileInfo;
+
+/**
+ * Input read from an uncompressed raw or TIFF file mapped in memory. Only the
+ * pages of the file that contain the rows of the tiles are read by the
+ * operating system, so the image never needs to fit in the heap.
+ * Each plane has to be stored contiguously, with the channels first,
+ * then the slices and then the frames, as ImageJ writes them.
+ */
+public class MappedSource implements InputSource {
+	
+	/*
+	 * Maximum number of planes mapped at the same time
+	 */
+	private static final int		MAX_MAPPED_PLANES = 64;
+	
+	private final File				file;
+	private final String			title;
+	/*
+	 * Size of the image, organised as [x, y, c, z, t]
+	 */
+	private final int[]				size;
+	/*
+	 * Bytes of each pixel: 1, 2 or 4 for 8, 16 and 32-bit float images
+	 */
+	private final int				bytes;
+	private final ByteOrder			order;
+	/*
+	 * Position in the file of the first byte of each plane
+	 */
+	private final long[]			planeOffsets;
+	/*
+	 * Calibration table of 8 and 16-bit images, null if there is none
+	 */
+	private final float[]			cTable;
+	/*
+	 * Planes mapped the last, the least recently used is unmapped first
+	 */
+	private final Map<Integer, ByteBuffer> mapped = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+			return size() > MAX_MAPPED_PLANES;
+		}
+	};
+	
+	private MappedSource(File file, String title, int[] size, int bitDepth, ByteOrder order, long[] planeOffsets, float[] cTable) {
+		if (bitDepth != 8 && bitDepth != 16 && bitDepth != 32)
+			throw new IllegalArgumentException("Only 8, 16 and 32-bit float images can be mapped, not " + bitDepth + "-bit");
+		if (planeOffsets.length != size[2] * size[3] * size[4])
+			throw new IllegalArgumentException("The file contains " + planeOffsets.length + " planes instead of " + size[2] * size[3] * size[4]);
+		if ((long) size[0] * size[1] * bitDepth / 8 > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Planes larger than 2 GB cannot be mapped");
+		this.file = file;
+		this.title = title;
+		this.size = size.clone();
+		this.bytes = bitDepth / 8;
+		this.order = order;
+		this.planeOffsets = planeOffsets;
+		this.cTable = cTable;
+		long planeBytes = (long) size[0] * size[1] * bytes;
+		for (long planeOffset : planeOffsets) {
+			if (planeOffset < 0 || planeOffset + planeBytes > file.length())
+				throw new IllegalArgumentException("The file " + file.getName() + " is shorter than the image it should contain");
+		}
+	}
+	
+	/**
+	 * Map a raw file
+	 * @param file: raw file
+	 * @param size: size of the image, organised as [x, y, c, z, t]
+	 * @param bitDepth: 8 and 16 for unsigned integers or 32 for float
+	 * @param littleEndian: byte order of the pixels
+	 * @param offset: position of the first plane in the file
+	 * @param gap: bytes between two consecutive planes
+	 * @return the source of the file
+	 */
+	public static MappedSource raw(File file, int[] size, int bitDepth, boolean littleEndian, long offset, long gap) {
+		long[] planeOffsets = new long[size[2] * size[3] * size[4]];
+		for (int i = 0; i < planeOffsets.length; i ++)
+			planeOffsets[i] = offset + i * ((long) size[0] * size[1] * bitDepth / 8 + gap);
+		return new MappedSource(file, file.getName(), size, bitDepth, littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN, planeOffsets, null);
+	}
+	
+	/**
+	 * Map an uncompressed TIFF or BigTIFF file with one sample per pixel, such as the
+	 * ones written by ImageJ or by {@link BigTiffSink}. The channels, slices and frames
+	 * are read from the ImageJ description, otherwise every plane is a slice
+	 * @param file: TIFF file
+	 * @return the source of the file
+	 * @throws IOException if the file cannot be read or cannot be mapped, because it is
+	 * 			compressed, tiled or its planes are not contiguous
+	 */
+	public static MappedSource openTiff(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, 16, ByteOrder.LITTLE_ENDIAN);
+			ByteOrder order;
+			if (header.get(0) == 'I' && header.get(1) == 'I')
+				order = ByteOrder.LITTLE_ENDIAN;
+			else if (header.get(0) == 'M' && header.get(1) == 'M')
+				order = ByteOrder.BIG_ENDIAN;
+			else
+				throw new IOException(file.getName() + " is not a TIFF file");
+			header.order(order);
+			boolean big = header.getShort(2) == 43;
+			if (!big && header.getShort(2) != 42)
+				throw new IOException(file.getName() + " is not a TIFF file");
+			long ifd = big ? header.getLong(8) : header.getInt(4) & 0xffffffffL;
+			int width = 0;
+			int height = 0;
+			int bitDepth = 0;
+			String description = null;
+			List<Long> offsets = new ArrayList<Long>();
+			// Avoid looping forever in corrupted files
+			Set<Long> visited = new HashSet<Long>();
+			while (ifd != 0 && visited.add(ifd)) {
+				long count = big ? read(channel, ifd, 8, order).getLong(0) : read(channel, ifd, 2, order).getShort(0) & 0xffff;
+				int entrySize = big ? 20 : 12;
+				int pointerSize = big ? 8 : 4;
+				if (count <= 0 || count > 0xffff)
+					throw new IOException("Corrupted TIFF directory");
+				ByteBuffer entries = read(channel, ifd + (big ? 8 : 2), (int) count * entrySize + pointerSize, order);
+				long[] strips = null;
+				long[] stripBytes = null;
+				int bits = 1;
+				int format = 1;
+				int samples = 1;
+				int compression = 1;
+				int w = 0;
+				int h = 0;
+				for (int i = 0; i < count; i ++) {
+					int pos = i * entrySize;
+					int tag = entries.getShort(pos) & 0xffff;
+					int type = entries.getShort(pos + 2) & 0xffff;
+					long n = big ? entries.getLong(pos + 4) : entries.getInt(pos + 4) & 0xffffffffL;
+					int valuePos = pos + (big ? 12 : 8);
+					switch (tag) {
+						case 256: w = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 257: h = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 258: bits = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 259: compression = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 277: samples = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 339: format = (int) readValues(channel, entries, valuePos, type, n, big)[0]; break;
+						case 273: strips = readValues(channel, entries, valuePos, type, n, big); break;
+						case 279: stripBytes = readValues(channel, entries, valuePos, type, n, big); break;
+						case 322: throw new IOException("Tiled TIFF files cannot be mapped");
+						case 270:
+							if (description == null && type == 2) {
+								long[] chars = readValues(channel, entries, valuePos, 1, n, big);
+								byte[] text = new byte[chars.length];
+								for (int c = 0; c < chars.length; c ++)
+									text[c] = (byte) chars[c];
+								description = new String(text, StandardCharsets.ISO_8859_1);
+							}
+							break;
+					}
+				}
+				if (compression != 1 || samples != 1 || strips == null || stripBytes == null || strips.length != stripBytes.length)
+					throw new IOException("Only uncompressed TIFF files with one sample per pixel can be mapped");
+				if ((bits == 32) != (format == 3) || format == 2)
+					throw new IOException("Only 8 and 16-bit unsigned and 32-bit float TIFF files can be mapped");
+				if (offsets.isEmpty()) {
+					width = w;
+					height = h;
+					bitDepth = bits;
+				} else if (w != width || h != height || bits != bitDepth) {
+					throw new IOException("All the planes of the TIFF file must have the same size and type");
+				}
+				for (int i = 1; i < strips.length; i ++) {
+					if (strips[i] != strips[i - 1] + stripBytes[i - 1])
+						throw new IOException("The planes of the TIFF file are not contiguous");
+				}
+				offsets.add(strips[0]);
+				ifd = big ? entries.getLong((int) count * entrySize) : entries.getInt((int) count * entrySize) & 0xffffffffL;
+			}
+			int[] size = {width, height, getDimension(description, "channels"), getDimension(description, "slices"), getDimension(description, "frames")};
+			int planes = Math.max(offsets.size(), getDimension(description, "images"));
+			if (size[2] * size[3] * size[4] != planes)
+				size = new int[] {width, height, 1, planes, 1};
+			// ImageJ writes a single directory for the stacks larger than 4 GB,
+			// the rest of the planes follow the first one
+			long[] planeOffsets = new long[planes];
+			for (int i = 0; i < planes; i ++)
+				planeOffsets[i] = i < offsets.size() ? offsets.get(i) : offsets.get(0) + i * (long) width * height * bitDepth / 8;
+			try {
+				return new MappedSource(file, file.getName(), size, bitDepth, order, planeOffsets, null);
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(ex.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Map the file of a virtual stack opened by ImageJ from an uncompressed
+	 * raw or TIFF file, so the tiles do not read whole planes
+	 * @param image: image
+	 * @return the source of the file or null if the image cannot be mapped
+	 */
+	public static MappedSource of(ImagePlus image) {
+		FileInfo info = image.getOriginalFileInfo();
+		if (!image.getStack().isVirtual() || info == null || info.directory == null || info.fileName == null)
+			return null;
+		File file = new File(info.directory, info.fileName);
+		int bitDepth = info.fileType == FileInfo.GRAY8 ? 8 : info.fileType == FileInfo.GRAY16_UNSIGNED ? 16 : info.fileType == FileInfo.GRAY32_FLOAT ? 32 : 0;
+		if (!file.isFile() || bitDepth != image.getBitDepth() || info.compression > FileInfo.COMPRESSION_NONE
+				|| info.width != image.getWidth() || info.height != image.getHeight())
+			return null;
+		int[] size = image.getDimensions();
+		float[] cTable = image.getCalibration().getCTable();
+		try {
+			MappedSource source;
+			String name = info.fileName.toLowerCase();
+			if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+				source = openTiff(file);
+			} else {
+				if (info.nImages < size[2] * size[3] * size[4])
+					return null;
+				source = raw(file, size, bitDepth, info.intelByteOrder, info.getOffset(), info.gapBetweenImages);
+			}
+			if (source.bytes * 8 != bitDepth)
+				return null;
+			return new MappedSource(file, image.getTitle(), size, bitDepth, source.order, source.planeOffsets, cTable);
+		} catch (IOException | IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	@Override
+	public int[] getSize() {
+		return size.clone();
+	}
+
+	@Override
+	public String getTitle() {
+		return title;
+	}
+
+	/*
+	 * The mapped planes are only read with absolute positions
+	 */
+	@Override
+	public boolean isParallel() {
+		return true;
+	}
+
+	@Override
+	public Object getPlane(int c, int z, int t) {
+		int index = (t * size[3] + z) * size[2] + c;
+		synchronized (mapped) {
+			ByteBuffer plane = mapped.get(index);
+			if (plane != null)
+				return plane;
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				// The mapping stays valid once the channel is closed
+				plane = channel.map(FileChannel.MapMode.READ_ONLY, planeOffsets[index], (long) size[0] * size[1] * bytes).order(order);
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Cannot map the plane " + (index + 1) + " of " + file.getName(), ex);
+			}
+			mapped.put(index, plane);
+			return plane;
+		}
+	}
+
+	/*
+	 * 8 and 16-bit values are converted with the calibration table, if any
+	 */
+	@Override
+	public void readRow(Object plane, int y, int x, int length, float[] dst, int offset) {
+		ByteBuffer pixels = (ByteBuffer) plane;
+		int start = (y * size[0] + x) * bytes;
+		if (bytes == 4) {
+			ByteBuffer row = pixels.duplicate().order(order);
+			row.position(start);
+			row.asFloatBuffer().get(dst, offset, length);
+		} else if (bytes == 2) {
+			for (int i = 0; i < length; i ++) {
+				int value = pixels.getShort(start + 2 * i) & 0xffff;
+				dst[offset + i] = cTable == null ? value : cTable[value];
+			}
+		} else {
+			for (int i = 0; i < length; i ++) {
+				int value = pixels.get(start + i) & 0xff;
+				dst[offset + i] = cTable == null ? value : cTable[value];
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "memory-mapped file " + file.getName() + " (" + bytes * 8 + "-bit, " + planeOffsets.length + " planes of "
+				+ size[0] + "x" + size[1] + ")";
+	}
+	
+	/*
+	 * Value of a dimension in the description that ImageJ writes in its TIFF files,
+	 * such as "slices=10". 1 if there is no description or no such dimension
+	 */
+	private static int getDimension(String description, String name) {
+		if (description == null || !description.startsWith("ImageJ"))
+			return 1;
+		for (String line : description.split("\n")) {
+			if (line.startsWith(name + "=")) {
+				try {
+					return Math.max(1, Integer.parseInt(line.substring(name.length() + 1).trim()));
+				} catch (NumberFormatException ex) {
+					return 1;
+				}
+			}
+		}
+		return 1;
+	}
+	
+	/*
+	 * Values of an entry of a TIFF directory. They are stored in the entry
+	 * itself if they fit, otherwise the entry contains their position in the file
+	 */
+	private static long[] readValues(FileChannel channel, ByteBuffer entries, int valuePos, int type, long count, boolean big) throws IOException {
+		int typeSize = type == 3 ? 2 : type == 4 ? 4 : type == 16 ? 8 : 1;
+		if (count <= 0 || count * typeSize > Integer.MAX_VALUE)
+			throw new IOException("Corrupted TIFF directory");
+		ByteBuffer values = entries;
+		int pos = valuePos;
+		if (count * typeSize > (big ? 8 : 4)) {
+			long offset = big ? entries.getLong(valuePos) : entries.getInt(valuePos) & 0xffffffffL;
+			values = read(channel, offset, (int) count * typeSize, entries.order());
+			pos = 0;
+		}
+		long[] result = new long[(int) count];
+		for (int i = 0; i < result.length; i ++) {
+			if (typeSize == 2)
+				result[i] = values.getShort(pos + 2 * i) & 0xffff;
+			else if (typeSize == 4)
+				result[i] = values.getInt(pos + 4 * i) & 0xffffffffL;
+			else if (typeSize == 8)
+				result[i] = values.getLong(pos + 8 * i);
+			else
+				result[i] = values.get(pos + i) & 0xff;
+		}
+		return result;
+	}
+	
+	/*
+	 * Read 'length' bytes of the file starting at 'position'
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length, ByteOrder order) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Unexpected end of the TIFF file");
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
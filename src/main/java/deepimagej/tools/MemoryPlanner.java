@@ -0,0 +1,300 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.List;
+
+/**
+ * Estimate of the memory needed to run a model tile by tile, and choice of
+ * the largest tile whose run fits in a fraction of the heap. The estimate
+ * only counts the memory allocated by the run: the output images, the tile
+ * buffers and the results of the tiles that are in the model runner, the
+ * results kept by the tile cache, and the padded image when it is created.
+ * The input image is already in memory.
+ * All the arrays are organised as [x, y, c, z].
+ */
+public class MemoryPlanner {
+	
+	/*
+	 * Default fraction of the free heap that a run can use
+	 */
+	public static final double DEFAULT_FRACTION = 0.5;
+	/*
+	 * The tiles, the results and the outputs are 32-bit images
+	 */
+	private static final int PIXEL_BYTES = 4;
+	
+	/**
+	 * Memory that a run can use
+	 * @param fraction: fraction of the free heap, between 0 and 1
+	 * @return bytes, computed from the used and the maximum heap given by {@link SystemUsage#getHeap()}
+	 */
+	public static double getBudget(double fraction) {
+		double[] heap = SystemUsage.getHeap();
+		return Math.max(0, heap[2] - heap[1]) * fraction;
+	}
+	
+	/**
+	 * Estimate the peak memory of a run
+	 * @param size: size of the input image
+	 * @param frames: frames of the input image, the outputs have as many
+	 * @param patchSize: size of the tiles
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @param inputs: input tensors of the model
+	 * @param outputs: output tensors of the model
+	 * @param tilesInFlight: batches of tiles that are in the model runner at the same time
+	 * @param batchSize: tiles stacked in each call to the model runner
+	 * @param blending: whether the tiles are blended, which needs a weight
+	 * 			buffer of one float per voxel of each output along X, Y and Z
+	 * @param streaming: whether the outputs are streamed to disk, then only
+	 * 			one band of a row of tiles of each output is kept in memory
+	 * @param materializePadding: whether the padded image is created, instead
+	 * 			of padding the tiles when they are extracted
+	 * @param cacheBytes: bytes of the tile results kept in memory by the
+	 * 			{@link TileResultCache}, 0 if there is no cache
+	 * @return the estimate
+	 */
+	public static Estimate estimate(int[] size, int frames, int[] patchSize, int[] padding, List<DijTensor> inputs,
+									List<DijTensor> outputs, int tilesInFlight, int batchSize, boolean blending,
+									boolean streaming, boolean materializePadding, double cacheBytes) {
+		double patchVoxels = voxels(patchSize);
+		int tilesInRunner = tilesInFlight * batchSize;
+		// Buffers of the pool plus the one being extracted. The batches share
+		// the pixels of the tiles, see ArrayOperations.stackBatch
+		double tileBytes = (tilesInRunner + 1) * patchVoxels * PIXEL_BYTES;
+		double outputBytes = 0;
+		double resultBytes = 0;
+		for (DijTensor out : outputs) {
+			if (!out.tensorType.contains("image"))
+				continue;
+			float[] scale = findScale(out, inputs);
+			if (streaming) {
+				// The band covers the valid rows of a row of tiles in a single frame,
+				// the chunks of the tiles being stitched are not larger
+				int[] band = size.clone();
+				band[AxisLayout.Y] = Math.min(size[AxisLayout.Y], Math.max(1, patchSize[AxisLayout.Y] - 2 * padding[AxisLayout.Y]));
+				outputBytes += voxels(band, scale) * PIXEL_BYTES;
+			} else {
+				outputBytes += voxels(size, scale) * Math.max(1, frames) * PIXEL_BYTES;
+			}
+			// The weights of the blender are shared by the frames and the channels
+			if (blending)
+				outputBytes += voxels(new int[] {size[0], size[1], 1, size[3]}, scale) * PIXEL_BYTES;
+			// The images of the tiles split from the result of a batch share its pixels
+			resultBytes += tilesInRunner * voxels(patchSize, scale) * PIXEL_BYTES;
+		}
+		double paddingBytes = 0;
+		if (materializePadding) {
+			int[] roi = new int[4];
+			for (int i = 0; i < roi.length; i ++)
+				roi[i] = Math.max(1, patchSize[i] - 2 * padding[i]);
+			int[][] added = ArrayOperations.findAddedPixels(size, padding, roi);
+			int[] paddedSize = size.clone();
+			for (int i = 0; i < paddedSize.length; i ++) {
+				if (i != AxisLayout.C)
+					paddedSize[i] += added[0][i] + added[1][i];
+			}
+			paddingBytes = voxels(paddedSize) * PIXEL_BYTES;
+		}
+		return new Estimate(patchSize, outputBytes, tileBytes, resultBytes, paddingBytes, cacheBytes);
+	}
+	
+	/**
+	 * Find the largest tile that is not bigger than 'patchSize' and whose run
+	 * fits in the memory budget. The tile is reduced one step at a time along
+	 * the largest of X, Y and Z, so it stays as close as possible to a square.
+	 * Each size is always minimum_size + step * n and leaves some valid pixels
+	 * after removing the padding
+	 * @param size: size of the input image
+	 * @param frames: frames of the input image
+	 * @param patchSize: largest tile wanted, usually the one covering the whole image
+	 * @param minimum: minimum size of the tile
+	 * @param step: step of the tile size, 0 if the size is fixed
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @param inputs: input tensors of the model
+	 * @param outputs: output tensors of the model
+	 * @param tilesInFlight: batches of tiles that are in the model runner at the same time
+	 * @param batchSize: tiles stacked in each call to the model runner
+	 * @param blending: whether the tiles are blended
+	 * @param streaming: whether the outputs are streamed to disk
+	 * @param cacheBytes: bytes of the tile results kept in memory by the cache
+	 * @param budget: bytes available for the run
+	 * @return the estimate of the chosen tile. If not even the smallest tile
+	 * 			fits, the estimate of the smallest one
+	 */
+	public static Estimate fitPatchSize(int[] size, int frames, int[] patchSize, int[] minimum, int[] step, int[] padding,
+										List<DijTensor> inputs, List<DijTensor> outputs, int tilesInFlight,
+										int batchSize, boolean blending, boolean streaming, double cacheBytes, double budget) {
+		int[] patch = patchSize.clone();
+		int[] axes = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+		while (true) {
+			Estimate estimate = estimate(size, frames, patch, padding, inputs, outputs, tilesInFlight, batchSize, blending, streaming, false, cacheBytes);
+			if (estimate.getTotal() <= budget)
+				return estimate;
+			int reduce = -1;
+			for (int axis : axes) {
+				int smaller = patch[axis] - step[axis];
+				if (step[axis] <= 0 || smaller < minimum[axis] || smaller <= 2 * padding[axis])
+					continue;
+				if (reduce == -1 || patch[axis] > patch[reduce])
+					reduce = axis;
+			}
+			if (reduce == -1)
+				return estimate;
+			patch[reduce] -= step[reduce];
+		}
+	}
+	
+	/*
+	 * Size of a pixel of the input in pixels of the output, organised
+	 * as [x, y, c, z]. Axes missing in the output or in its reference
+	 * input have a size of 1 pixel in the output
+	 */
+	private static float[] findScale(DijTensor out, List<DijTensor> inputs) {
+		DijTensor ref = DijTensor.retrieveByName(out.referenceImage, inputs);
+		AxisLayout outLayout = out.getLayout();
+		float[] scale = {1, 1, 1, 1};
+		for (int i = 0; i < scale.length; i ++) {
+			int indOut = outLayout.indexOf(i);
+			if (ref != null && out.scale != null && indOut != -1 && ref.getLayout().has(i))
+				scale[i] = out.scale[indOut];
+		}
+		return scale;
+	}
+	
+	private static double voxels(int[] size) {
+		return (double) size[0] * size[1] * size[2] * size[3];
+	}
+	
+	private static double voxels(int[] size, float[] scale) {
+		double voxels = 1;
+		for (int i = 0; i < size.length; i ++)
+			voxels *= Math.max(1, Math.ceil(size[i] * scale[i]));
+		return voxels;
+	}
+	
+	/**
+	 * Bytes estimated for a run with a given tile size
+	 */
+	public static class Estimate {
+		
+		private final int[] patchSize;
+		private final double outputBytes;
+		private final double tileBytes;
+		private final double resultBytes;
+		private final double paddingBytes;
+		private final double cacheBytes;
+		
+		Estimate(int[] patchSize, double outputBytes, double tileBytes, double resultBytes, double paddingBytes, double cacheBytes) {
+			this.patchSize = patchSize.clone();
+			this.outputBytes = outputBytes;
+			this.tileBytes = tileBytes;
+			this.resultBytes = resultBytes;
+			this.paddingBytes = paddingBytes;
+			this.cacheBytes = cacheBytes;
+		}
+		
+		/**
+		 * @return size of the tiles, organised as [x, y, c, z]
+		 */
+		public int[] getPatchSize() {
+			return patchSize.clone();
+		}
+		
+		/**
+		 * @return bytes of the output images
+		 */
+		public double getOutputBytes() {
+			return outputBytes;
+		}
+		
+		/**
+		 * @return bytes of the tiles extracted from the input
+		 */
+		public double getTileBytes() {
+			return tileBytes;
+		}
+		
+		/**
+		 * @return bytes of the results returned by the model runner
+		 */
+		public double getResultBytes() {
+			return resultBytes;
+		}
+		
+		/**
+		 * @return bytes of the padded image, 0 if it is not created
+		 */
+		public double getPaddingBytes() {
+			return paddingBytes;
+		}
+		
+		/**
+		 * @return bytes of the tile results kept in memory by the cache, 0 if there is no cache
+		 */
+		public double getCacheBytes() {
+			return cacheBytes;
+		}
+		
+		/**
+		 * @return bytes of the whole run
+		 */
+		public double getTotal() {
+			return outputBytes + tileBytes + resultBytes + paddingBytes + cacheBytes;
+		}
+		
+		@Override
+		public String toString() {
+			String s = "tile " + patchSize[0] + "x" + patchSize[1] + "x" + patchSize[2] + "x" + patchSize[3]
+					+ ": " + NumFormat.bytes(getTotal()) + " (outputs " + NumFormat.bytes(outputBytes)
+					+ ", tiles " + NumFormat.bytes(tileBytes) + ", results " + NumFormat.bytes(resultBytes);
+			if (paddingBytes > 0)
+				s += ", padded image " + NumFormat.bytes(paddingBytes);
+			if (cacheBytes > 0)
+				s += ", result cache " + NumFormat.bytes(cacheBytes);
+			return s + ")";
+		}
+	}
+}
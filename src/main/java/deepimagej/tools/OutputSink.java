@@ -0,0 +1,92 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.io.IOException;
+
+import ij.ImagePlus;
+
+/**
+ * Destination of the tiles of an output image once they have been computed
+ * by the model. The tiles can be kept in an image in memory or written to
+ * disk as soon as a band of the output is complete, so the output does
+ * not need to fit in memory.
+ */
+public interface OutputSink {
+	
+	/**
+	 * Insert the valid region of a computed tile in the output. Same region as
+	 * {@link ArrayOperations#imagePlusReconstructor(ImagePlus, ImagePlus, int, int, int, int, int, int, int, int, int, int)}
+	 * @param patch: output of the model for the tile
+	 * @param start: first pixel of the region in the output, organised as [x, y, z]
+	 * @param end: end of the region in the output, organised as [x, y, z]
+	 * @param offset: first pixel of the region in the patch, organised as [x, y, z]
+	 * @param frame: frame of the output, starting at 0
+	 * @throws IOException if the region cannot be written
+	 */
+	public void insert(ImagePlus patch, int[] start, int[] end, int[] offset, int frame) throws IOException;
+	
+	/**
+	 * Notify that a tile of the plan will not change anymore, either because it
+	 * has been inserted or because it is skipped
+	 * @param tile: tile of the plan
+	 * @param frame: frame of the output, starting at 0
+	 * @throws IOException if a completed band cannot be written
+	 */
+	public void tileDone(Tile tile, int frame) throws IOException;
+	
+	/**
+	 * Image with the whole output, if it is kept in memory
+	 * @return the image or null if the output is not in memory
+	 */
+	public ImagePlus getImage();
+	
+	/**
+	 * Complete the output once all the tiles have been inserted
+	 * @return the output, an ImagePlus or the File where it has been written
+	 * @throws IOException if the output cannot be completed
+	 */
+	public Object finish() throws IOException;
+}
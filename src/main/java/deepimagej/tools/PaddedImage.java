@@ -0,0 +1,306 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Virtual view of an image extended with a border in X, Y and Z. The padded
+ * image is never created: when a tile is extracted, the coordinates that fall
+ * outside of the image are resolved to the pixel that fills them, so only
+ * the tiles that touch the border pay for the padding.
+ * The coordinates used by this class are the ones of the padded image.
+ */
+public class PaddedImage {
+	
+	/*
+	 * Mirror the image at the border, without repeating the border pixel
+	 */
+	public static final String REFLECT = "reflect";
+	/*
+	 * Repeat the pixel at the border of the image
+	 */
+	public static final String EDGE = "edge";
+	/*
+	 * Fill the border with zeros
+	 */
+	public static final String ZERO = "zero";
+	/*
+	 * Padding modes available
+	 */
+	public static final String[] MODES = {REFLECT, EDGE, ZERO};
+	
+	private final InputSource source;
+	/*
+	 * Size of the image, organised as [x, y, c, z, t]
+	 */
+	private final int[] size;
+	/*
+	 * Pixels added before the image, organised as [x, y, c, z]
+	 */
+	private final int[] before;
+	/*
+	 * Size of the padded image, organised as [x, y, c, z]
+	 */
+	private final int[] paddedSize;
+	private final String mode;
+	/*
+	 * Frame of the image the tiles are extracted from, starting at 0
+	 */
+	private int frame = 0;
+	/*
+	 * Position in the image of the first pixel of the region that is
+	 * tiled, organised as [x, y, z]
+	 */
+	private int[] origin = {0, 0, 0};
+	
+	/**
+	 * Create the padded view of an image
+	 * @param image: image to be padded
+	 * @param addedPixels: pixels added at each side of the image as returned by
+	 * 			{@link ArrayOperations#findAddedPixels(int[], int[], int[])}, that is
+	 * 			[[x_before, y_before, c_before, z_before], [x_after, y_after, c_after, z_after]].
+	 * 			No padding is added to the channels
+	 * @param mode: how the pixels outside of the image are filled, one of {@link #MODES}
+	 */
+	public PaddedImage(ImagePlus image, int[][] addedPixels, String mode) {
+		this(new ImageSource(image), addedPixels, mode);
+	}
+	
+	/**
+	 * Create the padded view of an image that is read from a source
+	 * @param source: source of the image
+	 * @param addedPixels: pixels added at each side of the image, as in
+	 * 			{@link #PaddedImage(ImagePlus, int[][], String)}
+	 * @param mode: how the pixels outside of the image are filled, one of {@link #MODES}
+	 */
+	public PaddedImage(InputSource source, int[][] addedPixels, String mode) {
+		this.source = source;
+		this.mode = Arrays.asList(MODES).contains(mode) ? mode : REFLECT;
+		size = source.getSize();
+		before = new int[] {addedPixels[0][0], addedPixels[0][1], 0, addedPixels[0][3]};
+		paddedSize = new int[] {size[0] + addedPixels[0][0] + addedPixels[1][0],
+								size[1] + addedPixels[0][1] + addedPixels[1][1],
+								size[2],
+								size[3] + addedPixels[0][3] + addedPixels[1][3]};
+	}
+	
+	/**
+	 * Size of the padded image
+	 * @return size organised as [x, y, c, z]
+	 */
+	public int[] getPaddedSize() {
+		return paddedSize.clone();
+	}
+	
+	public String getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Select the frame the next tiles are extracted from. The tile plan and
+	 * the buffers of the tiles do not depend on the frame, so they can be
+	 * reused for every frame of a time-lapse
+	 * @param frame: frame of the image, starting at 0
+	 */
+	public void setFrame(int frame) {
+		if (frame < 0 || frame >= size[4])
+			throw new IllegalArgumentException("Frame " + frame + " out of the " + size[4] + " frames of the image");
+		this.frame = frame;
+	}
+	
+	public int getFrame() {
+		return frame;
+	}
+	
+	/**
+	 * Tile only a region of the image. The coordinates of the tiles are
+	 * relative to the origin of the region, and the pixels of the tiles
+	 * that fall outside of the region are read from the image, so the
+	 * padding mode is only used outside of the image
+	 * @param origin: first pixel of the region, organised as [x, y, z]
+	 */
+	public void setOrigin(int[] origin) {
+		this.origin = origin.clone();
+	}
+	
+	/**
+	 * Extract a tile from the padded image. Same arguments as
+	 * {@link ArrayOperations#extractPatch(ImagePlus, int[], int, int, int, int, int, int, TileBufferPool)}
+	 * where the image is the padded one
+	 * @param sPatch: size of the tile, organised as [x, y, c, z]
+	 * @param xStart: start of the valid region of the tile in X
+	 * @param yStart: start of the valid region of the tile in Y
+	 * @param zStart: start of the valid region of the tile in Z
+	 * @param overlapX: pixels before the valid region in X
+	 * @param overlapY: pixels before the valid region in Y
+	 * @param overlapZ: pixels before the valid region in Z
+	 * @param pool: pool where the tile buffer is taken from, can be null
+	 * @return a 32-bit image with the tile
+	 */
+	public ImagePlus extractPatch(int[] sPatch, int xStart, int yStart, int zStart,
+								  int overlapX, int overlapY, int overlapZ, TileBufferPool pool) {
+		// First pixel of the tile in the coordinates of the original image
+		int[] start = {xStart - overlapX - before[0], yStart - overlapY - before[1], zStart - overlapZ - before[3]};
+		return extractTile(sPatch, start, pool);
+	}
+	
+	/**
+	 * Extract the source region of a tile
+	 * @param tile: tile of a {@link TilePlan}
+	 * @param plan: plan the tile belongs to
+	 * @param pool: pool where the tile buffer is taken from, can be null
+	 * @return a 32-bit image with the tile
+	 */
+	public ImagePlus extractPatch(Tile tile, TilePlan plan, TileBufferPool pool) {
+		return extractTile(plan.getPatchSize(), tile.getSourceStart(), pool);
+	}
+	
+	/*
+	 * Extract a tile whose first pixel is at 'start' in the coordinates of
+	 * the tiled region, organised as [x, y, z]. The pixels outside of the
+	 * image are filled according to the padding mode
+	 */
+	private ImagePlus extractTile(int[] sPatch, int[] start, TileBufferPool pool) {
+		ImagePlus patchImage = null;
+		if (pool != null)
+			patchImage = pool.acquire();
+		if (patchImage == null)
+			patchImage = IJ.createImage("aux", "32-bit", sPatch[0], sPatch[1], sPatch[2], sPatch[3], 1);
+		int x0 = start[0] + origin[0];
+		int y0 = start[1] + origin[1];
+		int z0 = start[2] + origin[2];
+		int[] xs = sourceIndices(x0, sPatch[0], size[0]);
+		int[] ys = sourceIndices(y0, sPatch[1], size[1]);
+		int[] zs = sourceIndices(z0, sPatch[3], size[3]);
+		boolean rowInside = x0 >= 0 && x0 + sPatch[0] <= size[0];
+		// Columns of the image that fill the tile when it does not fit in the
+		// image along X. Only those are read from the source
+		int xFrom = size[0];
+		int xTo = 0;
+		for (int x : xs) {
+			if (x != -1) {
+				xFrom = Math.min(xFrom, x);
+				xTo = Math.max(xTo, x + 1);
+			}
+		}
+		int columns = Math.max(0, xTo - xFrom);
+		int firstColumn = xFrom;
+		
+		ImageStack patchStack = patchImage.getStack();
+		ImagePlus tileImage = patchImage;
+		// Every block of rows writes a different part of the tile
+		ParallelLoop.forEachRows(sPatch[2] * sPatch[3], sPatch[1], sPatch[0], source.isParallel(), (plane, from, to) -> {
+			int c = plane % sPatch[2];
+			int z = plane / sPatch[2];
+			float[] op = (float[]) patchStack.getPixels(tileImage.getStackIndex(c + 1, z + 1, 1));
+			if (zs[z] == -1) {
+				Arrays.fill(op, from * sPatch[0], to * sPatch[0], 0);
+				return;
+			}
+			Object ip = source.getPlane(c, zs[z], frame);
+			float[] row = rowInside ? null : new float[columns];
+			for (int y = from; y < to; y ++) {
+				int offset = y * sPatch[0];
+				if (ys[y] == -1) {
+					Arrays.fill(op, offset, offset + sPatch[0], 0);
+				} else if (rowInside) {
+					source.readRow(ip, ys[y], x0, sPatch[0], op, offset);
+				} else {
+					if (columns > 0)
+						source.readRow(ip, ys[y], firstColumn, columns, row, 0);
+					for (int x = 0; x < xs.length; x ++)
+						op[offset + x] = xs[x] == -1 ? 0 : row[xs[x] - firstColumn];
+				}
+			}
+		});
+		return patchImage;
+	}
+	
+	/**
+	 * Create the whole padded image. Only meant for debugging, as it
+	 * allocates a 32-bit copy of the image with the border
+	 * @return the padded image
+	 */
+	public ImagePlus materialize() {
+		ImagePlus padded = extractPatch(paddedSize, 0, 0, 0, 0, 0, 0, null);
+		padded.setTitle("Mirror");
+		return padded;
+	}
+	
+	/*
+	 * Position in the image of each of the 'length' pixels that start at 'start'
+	 * along an axis of size 'n'. The positions outside of the image are resolved
+	 * with the padding mode, -1 means that the pixel is zero
+	 */
+	private int[] sourceIndices(int start, int length, int n) {
+		int[] indices = new int[length];
+		for (int i = 0; i < length; i ++)
+			indices[i] = resolve(start + i, n, mode);
+		return indices;
+	}
+	
+	/**
+	 * Position in the image of the pixel that fills the position 'a' of an
+	 * axis of size 'n' when the image is padded
+	 * @param a: position, can be outside of the image
+	 * @param n: size of the axis
+	 * @param mode: padding mode, one of {@link #MODES}
+	 * @return the position inside the image or -1 if the pixel is zero
+	 */
+	public static int resolve(int a, int n, String mode) {
+		if (a >= 0 && a < n)
+			return a;
+		if (mode.equals(ZERO))
+			return -1;
+		if (mode.equals(EDGE))
+			return a < 0 ? 0 : n - 1;
+		return CompactMirroring.mirror(a, n, 2 * n - 2);
+	}
+}
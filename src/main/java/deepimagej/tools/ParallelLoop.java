@@ -0,0 +1,210 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Run the iterations of a pixel loop in a ForkJoinPool. It is used to extract
+ * and to stitch the tiles, where every iteration writes a different row or
+ * plane of the output, so the iterations do not need any lock and the result
+ * is the same as running them one after the other.
+ * The number of threads is given by the system property {@value #PROPERTY},
+ * by default the number of processors, and can be changed with
+ * {@link #setParallelism(int)}. With 1 thread the loops run serially in the
+ * calling thread.
+ */
+public class ParallelLoop {
+	
+	/*
+	 * System property with the number of threads used by the pixel loops
+	 */
+	public static final String PROPERTY = "deepimagej.threads";
+	/*
+	 * Minimum number of pixels processed by each task, so small tiles are
+	 * not split into tasks that cost more to schedule than to run
+	 */
+	private static final int MIN_TASK_PIXELS = 1 << 14;
+	/*
+	 * Pool used by the loops, null to run them serially
+	 */
+	private static volatile ForkJoinPool pool = createPool(defaultParallelism());
+	
+	/**
+	 * Set the number of threads used by the pixel loops
+	 * @param threads: number of threads, 1 to run the loops serially
+	 */
+	public static synchronized void setParallelism(int threads) {
+		ForkJoinPool old = pool;
+		pool = createPool(threads);
+		if (old != null)
+			old.shutdown();
+	}
+	
+	/**
+	 * Use an existing pool for the pixel loops. The pool is not shut
+	 * down when it is replaced
+	 * @param forkJoinPool: the pool, null to run the loops serially
+	 */
+	public static synchronized void setPool(ForkJoinPool forkJoinPool) {
+		pool = forkJoinPool;
+	}
+	
+	/**
+	 * @return number of threads used by the pixel loops
+	 */
+	public static int getParallelism() {
+		ForkJoinPool current = pool;
+		return current == null ? 1 : current.getParallelism();
+	}
+	
+	/**
+	 * Run body.accept(i) for every i in [0, n). The iterations are split in
+	 * tasks of 'grain' consecutive iterations that can run in parallel, so
+	 * two iterations must never write the same pixels
+	 * @param n: number of iterations
+	 * @param grain: minimum number of iterations of a task
+	 * @param body: iteration
+	 */
+	public static void forEach(int n, int grain, IntConsumer body) {
+		ForkJoinPool current = pool;
+		grain = Math.max(1, grain);
+		if (current == null || n <= grain) {
+			for (int i = 0; i < n; i ++)
+				body.accept(i);
+			return;
+		}
+		current.invoke(new RangeTask(0, n, grain, body));
+	}
+	
+	/**
+	 * Run a loop over the rows of several planes. Each plane is split in blocks
+	 * of consecutive rows only when there are less planes than threads, so
+	 * large stacks are processed plane by plane
+	 * @param planes: number of planes
+	 * @param rows: rows of each plane
+	 * @param rowLength: pixels of each row
+	 * @param parallel: false to run the loop serially, for example for
+	 * 			virtual stacks, which read each plane from disk
+	 * @param body: called once for every block of rows of every plane
+	 */
+	public static void forEachRows(int planes, int rows, int rowLength, boolean parallel, RowBlock body) {
+		int parallelism = parallel ? getParallelism() : 1;
+		if (parallelism == 1 || planes * rows == 0) {
+			for (int plane = 0; plane < planes; plane ++)
+				body.accept(plane, 0, rows);
+			return;
+		}
+		double planePixels = (double) rows * rowLength;
+		int blocks = 1;
+		if (planes < parallelism) {
+			int maxBlocks = (int) Math.max(1, Math.min(rows, planePixels / MIN_TASK_PIXELS));
+			blocks = Math.min(maxBlocks, (parallelism + planes - 1) / planes);
+		}
+		int blockCount = blocks;
+		int grain = (int) Math.max(1, MIN_TASK_PIXELS / (planePixels / blocks));
+		forEach(planes * blocks, grain, i -> {
+			int block = i % blockCount;
+			body.accept(i / blockCount, block * rows / blockCount, (block + 1) * rows / blockCount);
+		});
+	}
+	
+	/**
+	 * Block of rows of a plane
+	 */
+	public interface RowBlock {
+		/**
+		 * @param plane: index of the plane
+		 * @param from: first row of the block
+		 * @param to: last row (exclusive) of the block
+		 */
+		void accept(int plane, int from, int to);
+	}
+	
+	private static int defaultParallelism() {
+		try {
+			return Integer.parseInt(System.getProperty(PROPERTY, "" + Runtime.getRuntime().availableProcessors()));
+		} catch (NumberFormatException ex) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+	}
+	
+	private static ForkJoinPool createPool(int threads) {
+		return threads <= 1 ? null : new ForkJoinPool(threads);
+	}
+	
+	/*
+	 * Task that splits its range of iterations in two until it is not
+	 * bigger than the grain
+	 */
+	private static class RangeTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final IntConsumer body;
+		
+		RangeTask(int from, int to, int grain, IntConsumer body) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.body = body;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				for (int i = from; i < to; i ++)
+					body.accept(i);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+		}
+	}
+}
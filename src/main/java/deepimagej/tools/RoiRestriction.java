@@ -0,0 +1,211 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.awt.Rectangle;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.gui.Roi;
+import ij.process.ImageProcessor;
+
+/**
+ * Restrict the inference to a region of interest. Only the bounding box of
+ * the ROI is tiled, and the halo of the tiles at the border of the box is
+ * read from the image around it instead of being padded. For ROIs that are
+ * not rectangles, the tiles whose valid region does not touch the mask are
+ * skipped and left empty.
+ */
+public class RoiRestriction {
+	
+	/*
+	 * Process the whole image
+	 */
+	public static final String WHOLE_IMAGE = "whole image";
+	/*
+	 * Process the ROI, the outputs only cover its bounding box
+	 */
+	public static final String CROPPED = "ROI, cropped output";
+	/*
+	 * Process the ROI, the outputs have the size of the image and
+	 * are empty outside of the bounding box
+	 */
+	public static final String FULL_SIZE = "ROI, full size output";
+	/*
+	 * Regions that can be processed
+	 */
+	public static final String[] MODES = {WHOLE_IMAGE, CROPPED, FULL_SIZE};
+	
+	/*
+	 * Bounding box of the ROI clipped to the image
+	 */
+	private final Rectangle bounds;
+	/*
+	 * Bounding box of the ROI, which is the region covered by the mask
+	 */
+	private final Rectangle roiBounds;
+	/*
+	 * Mask of the ROI, null for rectangles
+	 */
+	private final ImageProcessor mask;
+	private final int width;
+	private final int height;
+	
+	/**
+	 * Create the restriction to a ROI
+	 * @param roi: region of interest
+	 * @param width: width of the image
+	 * @param height: height of the image
+	 * @throws IllegalArgumentException if the ROI does not overlap with the image
+	 */
+	public RoiRestriction(Roi roi, int width, int height) {
+		this.width = width;
+		this.height = height;
+		roiBounds = roi.getBounds();
+		bounds = roiBounds.intersection(new Rectangle(0, 0, width, height));
+		if (bounds.isEmpty())
+			throw new IllegalArgumentException("The ROI " + roiBounds + " is outside of the image");
+		mask = roi.getType() == Roi.RECTANGLE ? null : roi.getMask();
+	}
+	
+	/**
+	 * Rectangular ROI given as text, for example by a macro
+	 * @param text: "x,y,width,height"
+	 * @return the ROI, null if the text is empty
+	 * @throws IllegalArgumentException if the text is not 4 integers separated by commas
+	 */
+	public static Roi parseRectangle(String text) {
+		if (text == null || text.trim().equals(""))
+			return null;
+		String[] parts = text.split(",");
+		if (parts.length != 4)
+			throw new IllegalArgumentException("The ROI should be given as x,y,width,height");
+		int[] values = new int[4];
+		try {
+			for (int i = 0; i < values.length; i ++)
+				values[i] = Integer.parseInt(parts[i].trim());
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("The ROI should be given as x,y,width,height");
+		}
+		if (values[2] <= 0 || values[3] <= 0)
+			throw new IllegalArgumentException("The width and height of the ROI should be bigger than 0");
+		return new Roi(values[0], values[1], values[2], values[3]);
+	}
+	
+	/**
+	 * Bounding box of the ROI clipped to the image, which is the region tiled
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(bounds);
+	}
+	
+	/**
+	 * Position in the image of the first pixel of the region
+	 * @return origin organised as [x, y, z]
+	 */
+	public int[] getOrigin() {
+		return new int[] {bounds.x, bounds.y, 0};
+	}
+	
+	/**
+	 * Whether the valid region of a tile touches the ROI. Always true for
+	 * rectangles, as the tiles only cover the bounding box
+	 * @param tile: tile of a plan of the region
+	 * @return false if the tile can be skipped
+	 */
+	public boolean intersects(Tile tile) {
+		if (mask == null)
+			return true;
+		int[] start = tile.getValidStart();
+		int[] end = tile.getValidEnd();
+		// Region of the mask covered by the tile
+		int x0 = Math.max(start[0] + bounds.x - roiBounds.x, 0);
+		int y0 = Math.max(start[1] + bounds.y - roiBounds.y, 0);
+		int x1 = Math.min(end[0] + bounds.x - roiBounds.x, mask.getWidth());
+		int y1 = Math.min(end[1] + bounds.y - roiBounds.y, mask.getHeight());
+		for (int y = y0; y < y1; y ++) {
+			for (int x = x0; x < x1; x ++) {
+				if (mask.getPixel(x, y) != 0)
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Place the output of the region in an empty image with the size of the
+	 * whole image
+	 * @param output: 32-bit output computed for the region
+	 * @param scale: scale of the output with respect to the input, organised as [x, y, z]
+	 * @return the full size output
+	 */
+	public ImagePlus toFullSize(ImagePlus output, float[] scale) {
+		int fullWidth = (int) (width * scale[0]);
+		int fullHeight = (int) (height * scale[1]);
+		int x0 = (int) (bounds.x * scale[0]);
+		int y0 = (int) (bounds.y * scale[1]);
+		int[] dims = output.getDimensions();
+		ImagePlus full = IJ.createHyperStack(output.getTitle(), fullWidth, fullHeight, dims[2], dims[3], dims[4], 32);
+		int rowLength = Math.min(output.getWidth(), fullWidth - x0);
+		int rows = Math.min(output.getHeight(), fullHeight - y0);
+		ImageStack outputStack = output.getStack();
+		ImageStack fullStack = full.getStack();
+		for (int i = 1; i <= outputStack.getSize(); i ++) {
+			float[] src = (float[]) outputStack.getPixels(i);
+			float[] dst = (float[]) fullStack.getPixels(i);
+			for (int y = 0; y < rows; y ++)
+				System.arraycopy(src, y * output.getWidth(), dst, (y0 + y) * fullWidth + x0, rowLength);
+		}
+		full.setDisplayRange(output.getDisplayRangeMin(), output.getDisplayRangeMax());
+		return full;
+	}
+	
+	@Override
+	public String toString() {
+		return "region x=" + bounds.x + ", y=" + bounds.y + ", width=" + bounds.width + ", height=" + bounds.height
+				+ (mask == null ? "" : " (masked)");
+	}
+}
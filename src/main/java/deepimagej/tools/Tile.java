@@ -0,0 +1,213 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+
+/**
+ * Descriptor of one tile of a {@link TilePlan}. A tile does not hold any
+ * pixel, only the regions involved in processing it:
+ * <ul>
+ * <li>the source region, read from the padded input image and sent to the model,</li>
+ * <li>the valid region, part of the input image whose result is kept,</li>
+ * <li>the destination region, where the result of the valid region is written
+ * in each output image, which depends on the scale of the output.</li>
+ * </ul>
+ * All the arrays are organised as [x, y, z]. Tiles are immutable, the getters
+ * return copies.
+ */
+public final class Tile {
+	
+	private final TilePlan plan;
+	private final int index;
+	/*
+	 * Position of the tile in the grid of the plan
+	 */
+	private final int[] position;
+	/*
+	 * First pixel of the source region in the coordinates of the input
+	 * image. It is negative or beyond the image when the tile touches the border
+	 */
+	private final int[] sourceStart;
+	/*
+	 * First and last (exclusive) pixel of the valid region in the input image
+	 */
+	private final int[] validStart;
+	private final int[] validEnd;
+	/*
+	 * Pixels of the source region before the valid region
+	 */
+	private final int[] validOffset;
+	
+	Tile(TilePlan plan, int index, int[] position, int[] sourceStart, int[] validStart, int[] validEnd, int[] validOffset) {
+		this.plan = plan;
+		this.index = index;
+		this.position = position;
+		this.sourceStart = sourceStart;
+		this.validStart = validStart;
+		this.validEnd = validEnd;
+		this.validOffset = validOffset;
+	}
+	
+	/**
+	 * @return index of the tile in the plan
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return true if this is the last tile of the plan
+	 */
+	public boolean isLast() {
+		return index == plan.size() - 1;
+	}
+	
+	/**
+	 * @return position of the tile in the grid of the plan
+	 */
+	public int[] getPosition() {
+		return position.clone();
+	}
+	
+	/**
+	 * @return first pixel of the source region in the coordinates of the
+	 * 			input image, it can be outside of the image
+	 */
+	public int[] getSourceStart() {
+		return sourceStart.clone();
+	}
+	
+	/**
+	 * @return last pixel (exclusive) of the source region in the coordinates of the input image
+	 */
+	public int[] getSourceEnd() {
+		int[] size = getSourceSize();
+		for (int i = 0; i < size.length; i ++)
+			size[i] += sourceStart[i];
+		return size;
+	}
+	
+	/**
+	 * @return size of the source region, the same for every tile of the plan
+	 */
+	public int[] getSourceSize() {
+		int[] patchSize = plan.getPatchSize();
+		return new int[] {patchSize[AxisLayout.X], patchSize[AxisLayout.Y], patchSize[AxisLayout.Z]};
+	}
+	
+	/**
+	 * @return first pixel of the valid region in the input image
+	 */
+	public int[] getValidStart() {
+		return validStart.clone();
+	}
+	
+	/**
+	 * @return last pixel (exclusive) of the valid region in the input image
+	 */
+	public int[] getValidEnd() {
+		return validEnd.clone();
+	}
+	
+	/**
+	 * @return pixels of the source region before the valid region
+	 */
+	public int[] getValidOffset() {
+		return validOffset.clone();
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return size of a pixel of the input in pixels of the output
+	 */
+	public float[] getScale(int output) {
+		return plan.getScale(output);
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return first pixel of the destination region in the output image
+	 */
+	public int[] getDestinationStart(int output) {
+		float[] scale = plan.getScale(output);
+		int[] start = new int[validStart.length];
+		for (int i = 0; i < start.length; i ++)
+			start[i] = (int) (validStart[i] * scale[i]);
+		return start;
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return last pixel (exclusive) of the destination region in the output image
+	 */
+	public int[] getDestinationEnd(int output) {
+		float[] scale = plan.getScale(output);
+		int[] end = new int[validEnd.length];
+		for (int i = 0; i < end.length; i ++)
+			end[i] = (int) (validEnd[i] * scale[i]);
+		return end;
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return pixels of the tile returned by the model before the region that
+	 * 			is written in the output image
+	 */
+	public int[] getDestinationOffset(int output) {
+		float[] scale = plan.getScale(output);
+		float[] offset = plan.getOffset(output);
+		int[] destOffset = new int[validOffset.length];
+		for (int i = 0; i < destOffset.length; i ++)
+			destOffset[i] = (int) (validOffset[i] * scale[i] + Math.ceil(offset[i]));
+		return destOffset;
+	}
+	
+	@Override
+	public String toString() {
+		return "Tile " + index + " " + Arrays.toString(position) + ": valid " + Arrays.toString(validStart)
+				+ " - " + Arrays.toString(validEnd) + ", source from " + Arrays.toString(sourceStart);
+	}
+}
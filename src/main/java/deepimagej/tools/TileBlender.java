@@ -0,0 +1,240 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Stitch the tiles of an output image blending the regions where they
+ * overlap, instead of keeping only the centre of each tile. Each tile is
+ * added to the output multiplied by a window that is 1 in its valid region
+ * and decreases towards the border of the tile, and the weights are added
+ * to a weight buffer. Once all the tiles have been added, the output is
+ * divided by the weights. The tiles are not kept, so the only memory used
+ * besides the output is the weight buffer, one float per voxel along
+ * X, Y and Z. For time-lapses the frames are blended one after the other
+ * reusing the same weight buffer.
+ */
+public class TileBlender {
+	
+	/*
+	 * Keep only the valid region of each tile
+	 */
+	public static final String NONE = "none";
+	public static final String LINEAR = "linear";
+	public static final String COSINE = "cosine";
+	public static final String GAUSSIAN = "gaussian";
+	/*
+	 * Blending modes available
+	 */
+	public static final String[] MODES = {NONE, LINEAR, COSINE, GAUSSIAN};
+	/*
+	 * Standard deviations of the gaussian window in the overlap
+	 */
+	private static final double GAUSSIAN_SIGMAS = 2.5;
+	
+	private final ImagePlus image;
+	private final TilePlan plan;
+	private final int output;
+	private final String mode;
+	/*
+	 * Sum of the weights of each voxel, indexed as x + y * nx + z * nx * ny
+	 */
+	private float[] weights;
+	/*
+	 * Frame of the output the tiles are added to, starting at 0
+	 */
+	private int frame = 0;
+	
+	/**
+	 * Create the blender of an output image
+	 * @param image: 32-bit output image, it is used as the sum buffer
+	 * @param plan: plan of the tiles of the run
+	 * @param output: index of the output image in the plan
+	 * @param mode: window used in the overlap, one of {@link #MODES} other than {@link #NONE}
+	 */
+	public TileBlender(ImagePlus image, TilePlan plan, int output, String mode) {
+		this.image = image;
+		this.plan = plan;
+		this.output = output;
+		this.mode = mode;
+		weights = new float[image.getWidth() * image.getHeight() * image.getNSlices()];
+	}
+	
+	/**
+	 * Whether a blending mode blends the tiles
+	 * @param mode: one of {@link #MODES}
+	 * @return false for {@link #NONE} and unknown modes
+	 */
+	public static boolean isBlending(String mode) {
+		return mode != null && !mode.equals(NONE) && Arrays.asList(MODES).contains(mode);
+	}
+	
+	/**
+	 * Select the frame of the output the next tiles are added to. The
+	 * previous frame has to be finished with {@link #finish()} before
+	 * @param frame: frame of the output, starting at 0
+	 */
+	public void setFrame(int frame) {
+		this.frame = frame;
+	}
+	
+	public int getFrame() {
+		return frame;
+	}
+	
+	/**
+	 * Add the result of a tile to the output. The region added is the valid
+	 * region of the tile extended with the rest of the tile, except the pixels
+	 * marked as invalid by the offset of the output, and clipped to the image
+	 * @param tile: tile of the plan
+	 * @param result: output of the model for the tile
+	 */
+	public void add(Tile tile, ImagePlus result) {
+		int[] start = tile.getDestinationStart(output);
+		int[] end = tile.getDestinationEnd(output);
+		int[] tileOffset = tile.getDestinationOffset(output);
+		float[] offset = plan.getOffset(output);
+		int[] imageSize = {image.getWidth(), image.getHeight(), image.getNSlices()};
+		int[] resultSize = {result.getWidth(), result.getHeight(), result.getNSlices()};
+		// Region of the output and of the result, organised as [x, y, z]
+		int[] from = new int[3];
+		int[] length = new int[3];
+		int[] local = new int[3];
+		float[][] windows = new float[3][];
+		for (int a = 0; a < 3; a ++) {
+			int invalid = (int) Math.ceil(offset[a]);
+			int core = end[a] - start[a];
+			int before = Math.max(0, Math.min(start[a], tileOffset[a] - invalid));
+			int after = Math.max(0, Math.min(imageSize[a] - end[a], resultSize[a] - invalid - tileOffset[a] - core));
+			from[a] = start[a] - before;
+			length[a] = before + core + after;
+			local[a] = tileOffset[a] - before;
+			windows[a] = window(before, core, after);
+		}
+		int channels = Math.min(image.getNChannels(), result.getNChannels());
+		int width = imageSize[0];
+		int planeSize = imageSize[0] * imageSize[1];
+		int resultWidth = resultSize[0];
+		ImageStack imageStack = image.getStack();
+		ImageStack resultStack = result.getStack();
+		float[] sumWeights = weights;
+		// Each block writes different rows of the output. The weights are
+		// only written by the blocks of the first channel
+		ParallelLoop.forEachRows(channels * length[2], length[1], length[0], true, (plane, y0, y1) -> {
+			int c = plane % channels;
+			int z = plane / channels;
+			float[] src = (float[]) resultStack.getPixels(result.getStackIndex(c + 1, local[2] + z + 1, 1));
+			float[] dst = (float[]) imageStack.getPixels(image.getStackIndex(c + 1, from[2] + z + 1, frame + 1));
+			float wz = windows[2][z];
+			for (int y = y0; y < y1; y ++) {
+				float wy = windows[1][y] * wz;
+				int srcRow = (local[1] + y) * resultWidth + local[0];
+				int dstRow = (from[1] + y) * width + from[0];
+				int weightRow = (from[2] + z) * planeSize + dstRow;
+				for (int x = 0; x < length[0]; x ++) {
+					float w = wy * windows[0][x];
+					dst[dstRow + x] += w * src[srcRow + x];
+					if (c == 0)
+						sumWeights[weightRow + x] += w;
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Divide the current frame of the output by the weights once all its
+	 * tiles have been added. The weights are cleared for the next frame
+	 */
+	public void finish() {
+		int channels = image.getNChannels();
+		int planeSize = image.getWidth() * image.getHeight();
+		int width = image.getWidth();
+		ImageStack imageStack = image.getStack();
+		float[] sumWeights = weights;
+		ParallelLoop.forEachRows(channels * image.getNSlices(), image.getHeight(), width, true, (plane, y0, y1) -> {
+			int z = plane / channels;
+			float[] pixels = (float[]) imageStack.getPixels(image.getStackIndex(plane % channels + 1, z + 1, frame + 1));
+			for (int i = y0 * width; i < y1 * width; i ++) {
+				float w = sumWeights[z * planeSize + i];
+				if (w > 0)
+					pixels[i] /= w;
+			}
+		});
+		Arrays.fill(weights, 0);
+	}
+	
+	/*
+	 * Window along one axis: 1 in the core and decreasing in the 'before'
+	 * and 'after' pixels, never reaching 0
+	 */
+	private float[] window(int before, int core, int after) {
+		float[] window = new float[before + core + after];
+		for (int i = 0; i < window.length; i ++) {
+			if (i < before)
+				window[i] = taper(before - i, before);
+			else if (i < before + core)
+				window[i] = 1;
+			else
+				window[i] = taper(i - before - core + 1, after);
+		}
+		return window;
+	}
+	
+	/*
+	 * Weight of the pixel at distance 'd' of the core in a margin of 'm' pixels
+	 */
+	private float taper(int d, int m) {
+		double u = (double) d / (m + 1);
+		if (mode.equals(LINEAR))
+			return (float) (1 - u);
+		if (mode.equals(COSINE))
+			return (float) (0.5 * (1 + Math.cos(Math.PI * u)));
+		return (float) Math.exp(-0.5 * (GAUSSIAN_SIGMAS * u) * (GAUSSIAN_SIGMAS * u));
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.ArrayDeque;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+/**
+ * Pool of 32-bit images of a fixed tile size. The tiles extracted from the
+ * input image are written into buffers taken from the pool, and the buffers
+ * are given back once the model runner has finished with them, so a run
+ * does not allocate a new image for every tile.
+ */
+public class TileBufferPool {
+	
+	/*
+	 * Size of the buffers, organised as [x, y, c, z]
+	 */
+	private final int[] size;
+	/*
+	 * Maximum number of free buffers kept by the pool
+	 */
+	private final int maxBuffers;
+	/*
+	 * Buffers that are not being used
+	 */
+	private final ArrayDeque<ImagePlus> free = new ArrayDeque<ImagePlus>();
+	
+	/**
+	 * Create a pool of tile buffers
+	 * @param size: size of the tiles, organised as [x, y, c, z]
+	 * @param maxBuffers: maximum number of free buffers kept
+	 */
+	public TileBufferPool(int[] size, int maxBuffers) {
+		this.size = size.clone();
+		this.maxBuffers = maxBuffers;
+	}
+	
+	/**
+	 * Take a buffer from the pool, or create a new one if there is no free buffer.
+	 * The content of the buffer is undefined
+	 * @return a 32-bit image with the size of the tiles
+	 */
+	public synchronized ImagePlus acquire() {
+		ImagePlus buffer = free.poll();
+		if (buffer == null)
+			buffer = IJ.createImage("aux", "32-bit", size[0], size[1], size[2], size[3], 1);
+		return buffer;
+	}
+	
+	/**
+	 * Give a buffer back to the pool. Buffers with a different size
+	 * are ignored, as well as the ones that do not fit in the pool
+	 * @param buffer: image previously taken from the pool
+	 */
+	public synchronized void release(ImagePlus buffer) {
+		if (buffer == null || free.size() >= maxBuffers || free.contains(buffer))
+			return;
+		int[] dims = buffer.getDimensions();
+		if (dims[0] != size[0] || dims[1] != size[1] || dims[2] != size[2] || dims[3] != size[3] || dims[4] != 1)
+			return;
+		free.push(buffer);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Decide from cheap statistics of an extracted tile whether it is
+ * background, so the tile can skip the model. Background tiles are filled
+ * with the response of the model to a blank tile, which is computed only
+ * once for each background level.
+ */
+public class TileClassifier {
+	
+	/*
+	 * Every tile goes through the model
+	 */
+	public static final String NONE = "none";
+	/*
+	 * Tiles whose range (max - min) is not bigger than the threshold
+	 */
+	public static final String CONSTANT = "constant";
+	/*
+	 * Tiles whose maximum is not bigger than the threshold
+	 */
+	public static final String BELOW_THRESHOLD = "below threshold";
+	/*
+	 * Policies available to find background tiles
+	 */
+	public static final String[] MODES = {NONE, CONSTANT, BELOW_THRESHOLD};
+	
+	private final String mode;
+	private final double threshold;
+	/*
+	 * Tiles classified and tiles found to be background
+	 */
+	private int tiles = 0;
+	private int skipped = 0;
+	
+	/**
+	 * Create a classifier
+	 * @param mode: one of {@link #MODES}
+	 * @param threshold: maximum range of a constant tile, or maximum value of a
+	 * 			tile below the threshold
+	 */
+	public TileClassifier(String mode, double threshold) {
+		this.mode = Arrays.asList(MODES).contains(mode) ? mode : NONE;
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Whether a policy skips any tile
+	 * @param mode: one of {@link #MODES}
+	 * @return false for {@link #NONE} and unknown modes
+	 */
+	public static boolean isSkipping(String mode) {
+		return mode != null && !mode.equals(NONE) && Arrays.asList(MODES).contains(mode);
+	}
+	
+	/**
+	 * Statistics of all the pixels of a 32-bit tile
+	 * @param tile: tile extracted from the image
+	 * @return [min, max, mean]
+	 */
+	public static double[] getStatistics(ImagePlus tile) {
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		long n = 0;
+		ImageStack stack = tile.getStack();
+		for (int i = 1; i <= stack.getSize(); i ++) {
+			float[] pixels = (float[]) stack.getPixels(i);
+			for (float v : pixels) {
+				if (v < min)
+					min = v;
+				if (v > max)
+					max = v;
+				sum += v;
+			}
+			n += pixels.length;
+		}
+		return new double[] {min, max, n == 0 ? 0 : sum / n};
+	}
+	
+	/**
+	 * Classify a tile and count it
+	 * @param stats: statistics of the tile as returned by {@link #getStatistics(ImagePlus)}
+	 * @return true if the tile is background
+	 */
+	public synchronized boolean isBackground(double[] stats) {
+		tiles ++;
+		boolean background = false;
+		if (mode.equals(CONSTANT))
+			background = stats[1] - stats[0] <= threshold;
+		else if (mode.equals(BELOW_THRESHOLD))
+			background = stats[1] <= threshold;
+		if (background)
+			skipped ++;
+		return background;
+	}
+	
+	/**
+	 * Value of the blank tile used to compute the response of a background
+	 * tile. Tiles with close means share the same level, so a run only needs
+	 * a few calls to the model for all its background tiles
+	 * @param stats: statistics of a background tile
+	 * @return level of the background
+	 */
+	public float getBackgroundLevel(double[] stats) {
+		if (threshold <= 0)
+			return (float) stats[2];
+		return (float) (Math.round(stats[2] / threshold) * threshold);
+	}
+	
+	/**
+	 * Uncount a tile that was classified as background but went through the
+	 * model anyway
+	 */
+	public synchronized void unskip() {
+		skipped --;
+	}
+	
+	public synchronized int getTiles() {
+		return tiles;
+	}
+	
+	public synchronized int getSkipped() {
+		return skipped;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("%d of %d tiles skipped as background (%.1f%%)", skipped, tiles,
+							 tiles == 0 ? 0 : 100.0 * skipped / tiles);
+	}
+}
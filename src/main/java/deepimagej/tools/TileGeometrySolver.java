@@ -0,0 +1,210 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Choose the size of the tile along each axis so the tiling of an image
+ * computes as few voxels as possible. Every tile computes its halo again,
+ * and the last tile along an axis is shifted back into the image, so the
+ * tiling computes more voxels than the image has. The redundancy of a
+ * tiling is the ratio between both. It is the product of the redundancy
+ * along each axis:
+ * <pre>
+ * ceil(n / (p - 2 * h)) * p / n
+ * </pre>
+ * where n is the size of the image, p the size of the tile and h the halo,
+ * which is the same computation done by {@link TilePlanner}. As the axes are
+ * independent, the solver only keeps the sizes of each axis that are better
+ * than all the smaller ones, and searches the best combination of them that
+ * fits in the voxel budget. This matters for anisotropic 3D images, where
+ * using the same size and halo along X, Y and Z wastes most of the tiles.
+ * All the arrays are organised as [x, y, c, z].
+ */
+public class TileGeometrySolver {
+	
+	private static final int[] TILED_AXES = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+	
+	/**
+	 * Find the tile with the lowest redundancy
+	 * @param size: size of the image
+	 * @param minimum: minimum size of the tile
+	 * @param step: step of the tile size, 0 if the size is fixed. Axes with a
+	 * 			fixed size keep the size given in 'fixed'
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @param fixed: size of the tile along the axes that cannot change, and along C
+	 * @param maxVoxels: maximum voxels of the tile, including the channels
+	 * @return the tile, or null if no tile fits in the budget
+	 */
+	public static int[] solve(int[] size, int[] minimum, int[] step, int[] padding, int[] fixed, double maxVoxels) {
+		int[] tile = fixed.clone();
+		List<int[]> options = new ArrayList<int[]>();
+		List<Integer> axes = new ArrayList<Integer>();
+		double fixedVoxels = tile[AxisLayout.C];
+		for (int axis : TILED_AXES) {
+			if (step[axis] > 0) {
+				axes.add(axis);
+				options.add(findOptions(size[axis], minimum[axis], step[axis], padding[axis]));
+			} else {
+				fixedVoxels *= tile[axis];
+			}
+		}
+		double budget = maxVoxels / fixedVoxels;
+		if (budget < 1)
+			return null;
+		if (axes.isEmpty())
+			return tile;
+		int[] chosen = new int[axes.size()];
+		int[] best = new int[axes.size()];
+		double bestRatio = search(size, padding, axes, options, 0, budget, 1, chosen, best, Double.POSITIVE_INFINITY);
+		if (Double.isInfinite(bestRatio))
+			return null;
+		for (int i = 0; i < best.length; i ++)
+			tile[axes.get(i)] = best[i];
+		return tile;
+	}
+	
+	/**
+	 * Voxels computed by the tiling of an image per voxel of the image, along X, Y and Z
+	 * @param size: size of the image
+	 * @param tile: size of the tile
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @return the redundancy, 1 if no voxel is computed twice,
+	 * 			infinite if the tile has no valid pixel
+	 */
+	public static double getRedundancy(int[] size, int[] tile, int[] padding) {
+		double redundancy = 1;
+		for (int axis : TILED_AXES)
+			redundancy *= getRedundancy(size[axis], tile[axis], padding[axis]);
+		return redundancy;
+	}
+	
+	private static double getRedundancy(int n, int p, int h) {
+		int roi = p - 2 * h;
+		if (roi <= 0)
+			return Double.POSITIVE_INFINITY;
+		return Math.ceil((double) n / roi) * p / n;
+	}
+	
+	/*
+	 * Sizes of the tile along an axis, from the smallest to the largest,
+	 * whose redundancy is lower than the one of all the smaller sizes. The
+	 * sizes are minimum + step * k, at most 3 times the image and never
+	 * larger than the first one that covers the image in a single tile.
+	 * The minimum is always an option, even if it is larger than that
+	 */
+	private static int[] findOptions(int n, int minimum, int step, int h) {
+		List<Integer> options = new ArrayList<Integer>();
+		double best = Double.POSITIVE_INFINITY;
+		for (int p = minimum; p <= Math.max(minimum, 3 * n); p += step) {
+			double redundancy = getRedundancy(n, p, h);
+			if (redundancy < best) {
+				best = redundancy;
+				options.add(p);
+			}
+			if (p - 2 * h >= n)
+				break;
+		}
+		int[] array = new int[options.size()];
+		for (int i = 0; i < array.length; i ++)
+			array[i] = options.get(i);
+		return array;
+	}
+	
+	/*
+	 * Search the combination of sizes with the lowest redundancy. The options
+	 * of each axis are sorted by decreasing redundancy, so for the last axis
+	 * the best option is the largest one that fits in the remaining budget
+	 */
+	private static double search(int[] size, int[] padding, List<Integer> axes, List<int[]> options, int depth,
+								 double budget, double ratio, int[] chosen, int[] best, double bestRatio) {
+		int axis = axes.get(depth);
+		int[] axisOptions = options.get(depth);
+		if (depth == axes.size() - 1) {
+			int ind = lastFitting(axisOptions, budget);
+			if (ind == -1)
+				return bestRatio;
+			double total = ratio * getRedundancy(size[axis], axisOptions[ind], padding[axis]);
+			if (total < bestRatio) {
+				chosen[depth] = axisOptions[ind];
+				System.arraycopy(chosen, 0, best, 0, best.length);
+				return total;
+			}
+			return bestRatio;
+		}
+		for (int p : axisOptions) {
+			if (p > budget)
+				break;
+			double partial = ratio * getRedundancy(size[axis], p, padding[axis]);
+			// The redundancy of the other axes is at least 1
+			if (partial >= bestRatio)
+				continue;
+			chosen[depth] = p;
+			bestRatio = search(size, padding, axes, options, depth + 1, budget / p, partial, chosen, best, bestRatio);
+		}
+		return bestRatio;
+	}
+	
+	/*
+	 * Index of the largest option not bigger than the budget, -1 if there is none
+	 */
+	private static int lastFitting(int[] options, double budget) {
+		int lo = 0;
+		int hi = options.length - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (options[mid] <= budget) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+}
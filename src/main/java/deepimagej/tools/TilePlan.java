@@ -0,0 +1,252 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the tiles needed to process an image, created by
+ * {@link TilePlanner}. The plan only keeps the coordinates of each row,
+ * column and slice of the grid, so it takes O(npx + npy + npz) memory and
+ * every {@link Tile} is created on demand in constant time.
+ * The tiles are ordered with Z varying fastest, then Y, then X.
+ */
+public final class TilePlan extends AbstractList<Tile> implements RandomAccess {
+	
+	/*
+	 * Size of the input image and of the tiles, organised as [x, y, c, z]
+	 */
+	private final int[] imageSize;
+	private final int[] patchSize;
+	/*
+	 * Pixels added at each side of the image so every tile can be extracted,
+	 * [[x_before, y_before, c_before, z_before], [x_after, y_after, c_after, z_after]]
+	 */
+	private final int[][] addedPixels;
+	/*
+	 * Number of tiles along each axis, organised as [x, y, z]
+	 */
+	private final int[] grid;
+	/*
+	 * Coordinates of the tiles along each axis, indexed [axis][position in the grid]
+	 */
+	private final int[][] sourceStart;
+	private final int[][] validStart;
+	private final int[][] validEnd;
+	private final int[][] validOffset;
+	/*
+	 * Scale and offset of each output image, indexed [output][axis]. The scale
+	 * is NaN along the axes that the reference input does not have, see
+	 * withOutputPatch
+	 */
+	private final float[][] scales;
+	private final float[][] offsets;
+	
+	TilePlan(int[] imageSize, int[] patchSize, int[][] addedPixels, int[][] sourceStart, int[][] validStart,
+			 int[][] validEnd, int[][] validOffset, float[][] scales, float[][] offsets) {
+		this.imageSize = imageSize;
+		this.patchSize = patchSize;
+		this.addedPixels = addedPixels;
+		this.sourceStart = sourceStart;
+		this.validStart = validStart;
+		this.validEnd = validEnd;
+		this.validOffset = validOffset;
+		this.scales = scales;
+		this.offsets = offsets;
+		grid = new int[] {sourceStart[0].length, sourceStart[1].length, sourceStart[2].length};
+	}
+	
+	@Override
+	public Tile get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Tile " + index + " of a plan of " + size() + " tiles");
+		int[] position = {index / (grid[1] * grid[2]), (index / grid[2]) % grid[1], index % grid[2]};
+		int[] start = new int[3];
+		int[] vStart = new int[3];
+		int[] vEnd = new int[3];
+		int[] vOffset = new int[3];
+		for (int i = 0; i < position.length; i ++) {
+			start[i] = sourceStart[i][position[i]];
+			vStart[i] = validStart[i][position[i]];
+			vEnd[i] = validEnd[i][position[i]];
+			vOffset[i] = validOffset[i][position[i]];
+		}
+		return new Tile(this, index, position, start, vStart, vEnd, vOffset);
+	}
+	
+	@Override
+	public int size() {
+		return grid[0] * grid[1] * grid[2];
+	}
+	
+	/**
+	 * Tiles of the plan ordered by rows: the tiles of the first row of the grid
+	 * along Y come first, so the rows of the outputs are completed one after
+	 * the other. The tiles keep their index in the plan
+	 * @return view of the plan in row order
+	 */
+	public List<Tile> inRowOrder() {
+		return new RowOrder();
+	}
+	
+	/**
+	 * @return number of tiles along each axis, organised as [x, y, z]
+	 */
+	public int[] getGrid() {
+		return grid.clone();
+	}
+	
+	/**
+	 * @return size of the input image, organised as [x, y, c, z]
+	 */
+	public int[] getImageSize() {
+		return imageSize.clone();
+	}
+	
+	/**
+	 * @return size of the tiles sent to the model, organised as [x, y, c, z]
+	 */
+	public int[] getPatchSize() {
+		return patchSize.clone();
+	}
+	
+	/**
+	 * @return pixels added at each side of the image so every tile can be extracted,
+	 * 			in the format used by {@link PaddedImage#PaddedImage(ij.ImagePlus, int[][], String)}
+	 */
+	public int[][] getAddedPixels() {
+		return new int[][] {addedPixels[0].clone(), addedPixels[1].clone()};
+	}
+	
+	/**
+	 * @return number of output images the plan has a scale for
+	 */
+	public int getOutputCount() {
+		return scales.length;
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return size of a pixel of the input in pixels of the output, organised as [x, y, z]
+	 */
+	public float[] getScale(int output) {
+		return scales[output].clone();
+	}
+	
+	/**
+	 * Plan with the scale of the axes of an output that its reference input does
+	 * not have. Along them the output is as large as the tiles returned by the
+	 * model, see deepimagej.RunnerTf#findOutputSize, so the scale is only known
+	 * once the model has processed the first tile. The tiles of both plans have
+	 * the same index and read the same pixels of the input
+	 * @param output: index of the output image, only image outputs are counted
+	 * @param outputPatch: size of the tiles returned by the model, organised as [x, y, c, z, t]
+	 * @return the new plan, or this one if the output has no such axis
+	 */
+	public TilePlan withOutputPatch(int output, int[] outputPatch) {
+		int[] axes = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+		float[][] resolved = new float[scales.length][];
+		boolean changed = false;
+		for (int o = 0; o < scales.length; o ++)
+			resolved[o] = scales[o].clone();
+		for (int a = 0; a < axes.length; a ++) {
+			if (Float.isNaN(resolved[output][a])) {
+				resolved[output][a] = (float) outputPatch[axes[a]] / imageSize[axes[a]];
+				changed = true;
+			}
+		}
+		if (!changed)
+			return this;
+		return new TilePlan(imageSize, patchSize, addedPixels, sourceStart, validStart, validEnd,
+							validOffset, resolved, offsets);
+	}
+	
+	/**
+	 * @param output: index of the output image, only image outputs are counted
+	 * @return pixels at the border of the output tiles that are not
+	 * 			valid, organised as [x, y, z]
+	 */
+	public float[] getOffset(int output) {
+		return offsets[output].clone();
+	}
+	
+	/**
+	 * @return voxels computed by all the tiles per voxel of the image, along X, Y and Z
+	 */
+	public double getRedundancy() {
+		double computed = (double) size() * patchSize[AxisLayout.X] * patchSize[AxisLayout.Y] * patchSize[AxisLayout.Z];
+		return computed / ((double) imageSize[AxisLayout.X] * imageSize[AxisLayout.Y] * imageSize[AxisLayout.Z]);
+	}
+	
+	/*
+	 * View of the plan with Y as the slowest axis, then X and then Z
+	 */
+	private class RowOrder extends AbstractList<Tile> implements RandomAccess {
+		
+		@Override
+		public Tile get(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Tile " + index + " of a plan of " + size() + " tiles");
+			int y = index / (grid[0] * grid[2]);
+			int x = (index / grid[2]) % grid[0];
+			int z = index % grid[2];
+			return TilePlan.this.get(x * grid[1] * grid[2] + y * grid[2] + z);
+		}
+		
+		@Override
+		public int size() {
+			return TilePlan.this.size();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "TilePlan of " + grid[0] + "x" + grid[1] + "x" + grid[2] + " tiles of size "
+				+ Arrays.toString(patchSize) + " for an image of size " + Arrays.toString(imageSize);
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divide an image into the tiles processed by the model. The planner only
+ * does the arithmetic of the tiling, no pixel is read, so the plan of a
+ * large image can be created and inspected before running the model.
+ * All the arrays are organised as [x, y, c, z] unless stated otherwise.
+ */
+public class TilePlanner {
+	
+	/*
+	 * Axes along which the image is tiled, in the arrays organised as [x, y, c, z]
+	 */
+	private static final int[] TILED_AXES = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+	
+	/**
+	 * Create the plan to process an image tile by tile
+	 * @param size: size of the input image
+	 * @param patchSize: size of the tiles sent to the model
+	 * @param padding: pixels at each side of a tile that are not valid,
+	 * 			see {@link deepimagej.RunnerTf#findTotalPadding(List)}
+	 * @param allowPatching: if false, the image is processed in a single tile
+	 * @param inputs: input tensors of the model, the outputs are scaled with
+	 * 			respect to their reference image
+	 * @param outputs: output tensors of the model, only the images are planned
+	 * @return the plan
+	 * @throws IllegalArgumentException if the padding leaves no valid pixel in the tiles
+	 */
+	public static TilePlan plan(int[] size, int[] patchSize, int[] padding, boolean allowPatching,
+								List<DijTensor> inputs, List<DijTensor> outputs) {
+		int[] roi = new int[4];
+		for (int i = 0; i < roi.length; i ++)
+			roi[i] = patchSize[i] - padding[i] * 2;
+		for (int axis : TILED_AXES) {
+			if (roi[axis] <= 0)
+				throw new IllegalArgumentException("The padding of " + padding[axis] + " pixels along "
+						+ AxisLayout.AXES.charAt(axis) + " does not fit in a tile of " + patchSize[axis] + " pixels");
+		}
+		int[][] addedPixels = ArrayOperations.findAddedPixels(size, padding, roi);
+		
+		int[][] sourceStart = new int[3][];
+		int[][] validStart = new int[3][];
+		int[][] validEnd = new int[3][];
+		int[][] validOffset = new int[3][];
+		for (int a = 0; a < TILED_AXES.length; a ++) {
+			int axis = TILED_AXES[a];
+			int n = size[axis];
+			int np = allowPatching ? (int) Math.ceil((double) n / (double) roi[axis]) : 1;
+			int axisRoi = roi[axis];
+			int axisPadding = padding[axis];
+			int overlap = addedPixels[0][axis];
+			// If the roi of the patch is bigger than the actual image wanted, consider all the
+			// remaining pixels as overlap (padding)
+			if (axisRoi > n) {
+				axisRoi = n;
+				axisPadding = (patchSize[axis] - n) / 2;
+				overlap = (patchSize[axis] - n) / 2;
+			}
+			sourceStart[a] = new int[np];
+			validStart[a] = new int[np];
+			validEnd[a] = new int[np];
+			validOffset[a] = new int[np];
+			for (int i = 0; i < np; i ++) {
+				// Start of the roi in the padded image
+				int mirrorStart;
+				validStart[a][i] = axisRoi * i;
+				if (i < np - 1 || np == 1) {
+					mirrorStart = axisPadding + axisRoi * i;
+					validEnd[a][i] = axisRoi * (i + 1);
+					validOffset[a][i] = overlap;
+				} else {
+					// The last tile is moved back so it does not go further than the image
+					mirrorStart = n + axisPadding - axisRoi;
+					validEnd[a][i] = n;
+					validOffset[a][i] = overlap + axisRoi - (validEnd[a][i] - validStart[a][i]);
+				}
+				sourceStart[a][i] = mirrorStart - overlap - addedPixels[0][axis];
+			}
+		}
+		
+		List<float[]> scales = new ArrayList<float[]>();
+		List<float[]> offsets = new ArrayList<float[]>();
+		for (DijTensor out : outputs) {
+			if (!out.tensorType.contains("image"))
+				continue;
+			scales.add(findScale(size, out, inputs));
+			offsets.add(findOffset(out));
+		}
+		return new TilePlan(size.clone(), patchSize.clone(), addedPixels, sourceStart, validStart, validEnd,
+							validOffset, scales.toArray(new float[0][]), offsets.toArray(new float[0][]));
+	}
+	
+	/**
+	 * Change the size of the tiles so that the valid region of each tile starts at
+	 * the border of a chunk of the input, as long as the minimum size and the step
+	 * of the model allow it. Then the tiles read whole chunks, besides the padding,
+	 * and their valid regions in the output do not share any chunk
+	 * @param patchSize: size of the tiles sent to the model, already checked against
+	 * 			the memory and the size of the image, so the tiles never grow
+	 * @param padding: pixels at each side of a tile that are not valid
+	 * @param chunk: size of the chunks of the input
+	 * @param minSize: minimum size of the tiles
+	 * @param step: step of the size of the tiles, 0 if the size is fixed
+	 * @param size: size of the region that is tiled
+	 * @param origin: first pixel of the region in the input, organised as [x, y, z]
+	 * @return the size of the tiles, the largest aligned size that is not larger than
+	 * 			'patchSize'. The axes that cannot be aligned keep their size, as the ones
+	 * 			where the region does not start at the border of a chunk
+	 */
+	public static int[] alignToChunks(int[] patchSize, int[] padding, int[] chunk, int[] minSize, int[] step, int[] size, int[] origin) {
+		int[] aligned = patchSize.clone();
+		for (int a = 0; a < TILED_AXES.length; a ++) {
+			int axis = TILED_AXES[a];
+			int roi = patchSize[axis] - 2 * padding[axis];
+			// A single tile along the axis is already aligned
+			if (step[axis] <= 0 || chunk[axis] <= 1 || roi >= size[axis] || roi % chunk[axis] == 0)
+				continue;
+			// The valid regions start at origin + roi * n
+			if (origin[a] % chunk[axis] != 0)
+				continue;
+			for (int p = minSize[axis]; p <= patchSize[axis]; p += step[axis]) {
+				int r = p - 2 * padding[axis];
+				if (r > 0 && r % chunk[axis] == 0)
+					aligned[axis] = p;
+			}
+		}
+		return aligned;
+	}
+	
+	/*
+	 * Size of a pixel of the input image in pixels of the output, organised as
+	 * [x, y, z]. The output size is computed as in RunnerTf.findOutputSize. If
+	 * the reference input does not have the axis, the output is as large as the
+	 * tiles returned by the model, which are not known yet, so the scale is NaN
+	 * until TilePlan.withOutputPatch is called
+	 */
+	private static float[] findScale(int[] size, DijTensor out, List<DijTensor> inputs) {
+		DijTensor ref = DijTensor.retrieveByName(out.referenceImage, inputs);
+		AxisLayout outLayout = out.getLayout();
+		AxisLayout refLayout = ref == null ? null : ref.getLayout();
+		float[] scale = new float[TILED_AXES.length];
+		for (int a = 0; a < TILED_AXES.length; a ++) {
+			int axis = TILED_AXES[a];
+			int indOut = outLayout.indexOf(axis);
+			int indInp = refLayout == null ? -1 : refLayout.indexOf(axis);
+			if (indOut != -1 && indInp != -1)
+				scale[a] = out.scale[indOut];
+			else if (indOut != -1)
+				scale[a] = Float.NaN;
+			else
+				scale[a] = 1f / size[axis];
+		}
+		return scale;
+	}
+	
+	/*
+	 * Offset of the output, organised as [x, y, z]
+	 */
+	private static float[] findOffset(DijTensor out) {
+		float[] offset = new float[TILED_AXES.length];
+		if (out.offset == null)
+			return offset;
+		AxisLayout layout = out.getLayout();
+		for (int a = 0; a < TILED_AXES.length; a ++) {
+			int ind = layout.indexOf(TILED_AXES[a]);
+			if (ind != -1)
+				offset[a] = out.offset[ind];
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,401 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import deepimagej.ParametersCache;
+import ij.IJ;
+import ij.ImagePlus;
+import ij.ImageStack;
+
+/**
+ * Least recently used cache of the results of the model for the tiles of
+ * an image. A result is identified by the model, the sha256 of its weights,
+ * the shape of the tile and a hash of the pixels of the tile, so running the
+ * same model again on the same image, or on an image that shares tiles with
+ * it, only sends to the model the tiles that have changed.
+ * The cache keeps at most a given number of bytes in memory. If it has a
+ * spill folder, the results removed from memory are written there and read
+ * back the next time they are needed. The folder keeps at most
+ * {@link #SPILL_FACTOR} times the bytes allowed in memory, the least recently
+ * used files are deleted first.
+ */
+public class TileResultCache {
+	
+	/*
+	 * Extension of the files written in the spill folder
+	 */
+	private static final String SPILL_EXTENSION = ".tile";
+	private static final int PIXEL_BYTES = 4;
+	/**
+	 * Bytes of the spill folder per byte allowed in memory
+	 */
+	public static final int SPILL_FACTOR = 8;
+	/*
+	 * Cache shared by all the runs of the plugin
+	 */
+	private static TileResultCache shared;
+	
+	/*
+	 * Results in memory, ordered from the least to the most recently used
+	 */
+	private final LinkedHashMap<String, ImagePlus> results = new LinkedHashMap<String, ImagePlus>(16, 0.75f, true);
+	private long maxBytes;
+	private long bytes = 0;
+	/*
+	 * Folder where the results removed from memory are written, null to discard them
+	 */
+	private File spillDir;
+	/*
+	 * Size of the files of the spill folder, ordered from the least to the most
+	 * recently used. It is filled from the folder when the folder is set, so
+	 * the files written by previous sessions are also counted
+	 */
+	private final LinkedHashMap<String, Long> spillFiles = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long spillBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long bytesSaved = 0;
+	private long spilled = 0;
+	
+	/**
+	 * Create a cache
+	 * @param maxBytes: maximum number of bytes of the results kept in memory
+	 * @param spillDir: folder where the results removed from memory are written, null to discard them
+	 */
+	public TileResultCache(long maxBytes, File spillDir) {
+		setLimits(maxBytes, spillDir);
+	}
+	
+	/**
+	 * Cache shared by the runs, so the results of a run are found by the next
+	 * ones. The limits of the cache are updated with the ones given
+	 * @param maxBytes: maximum number of bytes of the results kept in memory
+	 * @param spillDir: folder where the results removed from memory are written, null to discard them
+	 * @return the shared cache
+	 */
+	public static synchronized TileResultCache getShared(long maxBytes, File spillDir) {
+		if (shared == null)
+			shared = new TileResultCache(maxBytes, spillDir);
+		shared.setLimits(maxBytes, spillDir);
+		return shared;
+	}
+	
+	/**
+	 * Change the memory limit and the spill folder, evicting the results that
+	 * do not fit anymore
+	 * @param maxBytes: maximum number of bytes of the results kept in memory
+	 * @param spillDir: folder where the results removed from memory are written, null to discard them
+	 */
+	public synchronized void setLimits(long maxBytes, File spillDir) {
+		this.maxBytes = maxBytes;
+		if (spillDir == null ? this.spillDir != null : !spillDir.equals(this.spillDir))
+			scanSpillDir(spillDir);
+		this.spillDir = spillDir;
+		evict();
+		pruneSpillDir();
+	}
+	
+	/**
+	 * Key of the result of a tile
+	 * @param modelName: name of the model
+	 * @param weightsSha256: sha256 of the weights of the model
+	 * @param tile: 32-bit tile sent to the model
+	 * @return the key, a sha256 in hexadecimal
+	 */
+	public static String getKey(String modelName, String weightsSha256, ImagePlus tile) {
+		return ParametersCache.sha256(modelName + "|" + weightsSha256 + "|" + Arrays.toString(tile.getDimensions())
+									  + "|" + hashPixels(tile));
+	}
+	
+	/**
+	 * Hash of the pixels of a 32-bit tile. Two independent 64-bit hashes are
+	 * computed over the bits of the floats in a single pass
+	 * @param tile: 32-bit tile
+	 * @return the hash in hexadecimal
+	 */
+	public static String hashPixels(ImagePlus tile) {
+		long h1 = 0x9E3779B97F4A7C15L;
+		long h2 = 0xC2B2AE3D27D4EB4FL;
+		ImageStack stack = tile.getStack();
+		for (int i = 1; i <= stack.getSize(); i ++) {
+			float[] pixels = (float[]) stack.getPixels(i);
+			for (float v : pixels) {
+				long bits = Float.floatToRawIntBits(v) & 0xffffffffL;
+				h1 = (h1 ^ bits) * 0x100000001B3L;
+				h2 = Long.rotateLeft(h2 + bits * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+			}
+		}
+		return Long.toHexString(h1) + Long.toHexString(h2);
+	}
+	
+	/**
+	 * Result cached for a key, looking in the spill folder if it is not in memory
+	 * @param key: key returned by {@link #getKey(String, String, ImagePlus)}
+	 * @return the result, null if it is not cached
+	 */
+	public synchronized ImagePlus get(String key) {
+		ImagePlus result = results.get(key);
+		if (result == null && spillDir != null) {
+			File file = new File(spillDir, key + SPILL_EXTENSION);
+			if (file.isFile()) {
+				try {
+					result = read(file);
+					// Used again, so it is the last file to be deleted
+					spillFiles.get(key);
+					file.setLastModified(System.currentTimeMillis());
+					add(key, result);
+				} catch (IOException e) {
+					IJ.log("Cannot read the cached tile " + file + ": " + e.getMessage());
+				}
+			}
+		}
+		if (result == null) {
+			misses ++;
+			return null;
+		}
+		hits ++;
+		bytesSaved += getBytes(result);
+		return result;
+	}
+	
+	/**
+	 * Cache a copy of the result of a tile, so the result can be closed afterwards
+	 * @param key: key returned by {@link #getKey(String, String, ImagePlus)}
+	 * @param result: 32-bit output of the model for the tile
+	 */
+	public synchronized void put(String key, ImagePlus result) {
+		if (result == null || result.getBitDepth() != 32 || getBytes(result) > maxBytes || results.containsKey(key))
+			return;
+		add(key, copy(result));
+	}
+	
+	public synchronized void clear() {
+		results.clear();
+		bytes = 0;
+	}
+	
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		bytesSaved = 0;
+		spilled = 0;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Bytes of the results that did not have to be computed again
+	 */
+	public synchronized long getBytesSaved() {
+		return bytesSaved;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "Tile cache: " + hits + " hit(s), " + misses + " miss(es), " + NumFormat.bytes(bytesSaved) + " saved, "
+				+ results.size() + " result(s) in memory (" + NumFormat.bytes(bytes) + " of " + NumFormat.bytes(maxBytes) + ")"
+				+ (spillDir == null ? "" : ", " + spilled + " spilled to " + spillDir);
+	}
+	
+	/*
+	 * Add a result to memory and evict the least recently used ones if needed
+	 */
+	private void add(String key, ImagePlus result) {
+		results.put(key, result);
+		bytes += getBytes(result);
+		evict();
+	}
+	
+	/*
+	 * Remove the least recently used results until the memory limit is
+	 * met, writing them to the spill folder if there is one
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, ImagePlus>> it = results.entrySet().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, ImagePlus> eldest = it.next();
+			if (spillDir != null) {
+				File file = new File(spillDir, eldest.getKey() + SPILL_EXTENSION);
+				try {
+					if (!file.isFile()) {
+						write(eldest.getValue(), file);
+						spillFiles.put(eldest.getKey(), file.length());
+						spillBytes += file.length();
+					}
+					spilled ++;
+				} catch (IOException e) {
+					IJ.log("Cannot spill the cached tile to " + file + ": " + e.getMessage());
+				}
+			}
+			bytes -= getBytes(eldest.getValue());
+			it.remove();
+		}
+		pruneSpillDir();
+	}
+	
+	/*
+	 * Delete the least recently used files of the spill folder until it
+	 * keeps at most SPILL_FACTOR times the bytes allowed in memory
+	 */
+	private void pruneSpillDir() {
+		Iterator<Map.Entry<String, Long>> it = spillFiles.entrySet().iterator();
+		while (spillBytes > SPILL_FACTOR * maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			File file = new File(spillDir, eldest.getKey() + SPILL_EXTENSION);
+			if (file.isFile() && !file.delete())
+				IJ.log("Cannot delete the cached tile " + file);
+			spillBytes -= eldest.getValue();
+			it.remove();
+		}
+	}
+	
+	/*
+	 * List the files of a spill folder, from the least to the most recently modified
+	 */
+	private void scanSpillDir(File dir) {
+		spillFiles.clear();
+		spillBytes = 0;
+		File[] files = dir == null ? null : dir.listFiles((d, name) -> name.endsWith(SPILL_EXTENSION));
+		if (files == null)
+			return;
+		Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+		for (File file : files) {
+			String key = file.getName().substring(0, file.getName().length() - SPILL_EXTENSION.length());
+			spillFiles.put(key, file.length());
+			spillBytes += file.length();
+		}
+	}
+	
+	/*
+	 * Copy of the pixels of a 32-bit result
+	 */
+	private static ImagePlus copy(ImagePlus image) {
+		int[] dims = image.getDimensions();
+		ImagePlus copy = IJ.createHyperStack(image.getTitle(), dims[0], dims[1], dims[2], dims[3], dims[4], 32);
+		for (int i = 1; i <= image.getStackSize(); i ++) {
+			float[] pixels = (float[]) image.getStack().getPixels(i);
+			System.arraycopy(pixels, 0, copy.getStack().getPixels(i), 0, pixels.length);
+		}
+		return copy;
+	}
+	
+	private static long getBytes(ImagePlus image) {
+		return (long) image.getWidth() * image.getHeight() * image.getStackSize() * PIXEL_BYTES;
+	}
+	
+	/*
+	 * Write a result as its dimensions followed by the pixels of every
+	 * slice, in little endian
+	 */
+	private static void write(ImagePlus image, File file) throws IOException {
+		int[] dims = image.getDimensions();
+		int planeSize = image.getWidth() * image.getHeight();
+		ByteBuffer buffer = ByteBuffer.allocate(dims.length * 4 + planeSize * PIXEL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		File tmp = new File(file.getPath() + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw"); FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+			for (int d : dims)
+				buffer.putInt(d);
+			ImageStack stack = image.getStack();
+			for (int i = 1; i <= stack.getSize(); i ++) {
+				buffer.asFloatBuffer().put((float[]) stack.getPixels(i));
+				buffer.position(buffer.position() + planeSize * PIXEL_BYTES);
+				buffer.flip();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				buffer.clear();
+			}
+		}
+		// The file only appears once it is complete
+		if (!tmp.renameTo(file)) {
+			tmp.delete();
+			throw new IOException("cannot rename " + tmp);
+		}
+	}
+	
+	private static ImagePlus read(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(5 * 4).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header);
+			int[] dims = new int[5];
+			for (int i = 0; i < dims.length; i ++)
+				dims[i] = header.getInt();
+			ImagePlus image = IJ.createHyperStack(file.getName(), dims[0], dims[1], dims[2], dims[3], dims[4], 32);
+			ByteBuffer plane = ByteBuffer.allocate(dims[0] * dims[1] * PIXEL_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			ImageStack stack = image.getStack();
+			for (int i = 1; i <= stack.getSize(); i ++) {
+				readFully(channel, plane);
+				plane.asFloatBuffer().get((float[]) stack.getPixels(i));
+				plane.clear();
+			}
+			return image;
+		}
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new IOException("unexpected end of file");
+		}
+		buffer.flip();
+	}
+}
@@ -49,7 +49,15 @@ import deepimagej.Parameters;
 public class YamlParser {
 	
 	private String rawYaml = "";
-	private String backUpRawYaml = "";
+	/*
+	 * Lines of the yaml without the empty ones, read by a cursor that
+	 * only moves forward, so each line is read once
+	 */
+	private List<String> lines;
+	/*
+	 * Index of the next line to be read
+	 */
+	private int pos;
 	private LinkedHashMap<String, Object> yaml;
 	String separator;
 	
@@ -59,7 +67,6 @@ public class YamlParser {
 	 */
 	public YamlParser(String yaml) {
 		this.rawYaml = yaml;
-		this.backUpRawYaml = yaml;
 	}
 	public static void main(String[] args) throws Exception {
 		/*
@@ -166,7 +173,6 @@ public class YamlParser {
 	 * @throws Exception 
 	 */
 	public LinkedHashMap<String, Object> parseYaml() throws Exception {
-		rawYaml = backUpRawYaml;
 		yaml = new LinkedHashMap<String, Object>();
 		// Find out if the file was written using 
 		// Windows line end (\r\n) or Linux (\n)
@@ -175,16 +181,12 @@ public class YamlParser {
 		} else {
 			separator = "\n";
 		}
-		// REmove empty lines
-		rawYaml= rawYaml.replaceAll("(?m)^[ \\t]*\\r?\\n","");
-		if (!rawYaml.endsWith(separator))
-			rawYaml += separator;
-		if (rawYaml == null || rawYaml.contentEquals(""))
-			return null;
-		while (rawYaml.indexOf(separator) != -1) {
-			String line = rawYaml.substring(0, rawYaml.indexOf(separator));
-			// Remove from the rawYaml String the part that as already been read
-			rawYaml = rawYaml.substring(rawYaml.indexOf(separator) + separator.length());
+		splitLines();
+		// Key inserted last in the yaml and text that has to be added to its value
+		String lastKey = null;
+		StringBuilder multiLine = null;
+		while (pos < lines.size()) {
+			String line = lines.get(pos ++);
 			// Ignore comments
 			if (line.trim().startsWith("#") || line.equals(""))
 				continue;
@@ -193,21 +195,31 @@ public class YamlParser {
 			// Array with key and value
 			int colonInd = indToSplitKeyValue(line);
 			if (colonInd == -1) {
-				String lastKey = (String) yaml.keySet().toArray()[yaml.size() - 1];
-				yaml.put(lastKey, yaml.get(lastKey).toString() + System.lineSeparator() + line);
+				// The line continues the value of the last key
+				if (lastKey == null)
+					throw new Exception("The yaml cannot start with a value without key: " + line);
+				if (multiLine == null)
+					multiLine = new StringBuilder(yaml.get(lastKey).toString());
+				multiLine.append(System.lineSeparator()).append(line);
 				continue;
 			}
+			if (multiLine != null) {
+				yaml.put(lastKey, multiLine.toString());
+				multiLine = null;
+			}
 			String[] lineArr = new String[] {line.substring(0, colonInd), line.substring(colonInd + 1).trim()};
 			/// Key of a field in the yaml
 			String key = lineArr[0];
 			// Value
 			String value = lineArr[1];
+			if (!yaml.containsKey(key.trim()))
+				lastKey = key.trim();
 			
 			// The values can be either Strings, Arrays or HashMaps.
 			// Find out first whether it is a String or not
 			// If the value was not a String, the same line would be empty
-			boolean sameSpaces = (getSpacesAtTheBegging(line) == getSpacesAtTheBegging(rawYaml));
-			boolean startsWithDash = rawYaml.startsWith("-");
+			boolean sameSpaces = (getSpacesAtTheBegging(line) == getSpacesAtTheBegging(nextLine()));
+			boolean startsWithDash = nextLine().startsWith("-");
 			if (value.trim().contentEquals("") && (!sameSpaces || startsWithDash)) {
 				String valueType = isValueDictionaryOrArray();
 				if (valueType.contentEquals("hashmap")) {
@@ -223,9 +235,55 @@ public class YamlParser {
 				yaml.put(key.trim(), value.trim());
 			}
 		}
+		if (multiLine != null)
+			yaml.put(lastKey, multiLine.toString());
 		return yaml;
 	}
 	
+	/*
+	 * Split the raw yaml into lines in a single pass. Lines that only
+	 * contain spaces or tabs are removed, except the last one if
+	 * the yaml does not end with a line break
+	 */
+	private void splitLines() {
+		lines = new ArrayList<String>();
+		pos = 0;
+		int start = 0;
+		while (start < rawYaml.length()) {
+			int end = rawYaml.indexOf(separator, start);
+			if (end == -1) {
+				// Last line without line break
+				lines.add(rawYaml.substring(start));
+				break;
+			}
+			if (!isBlank(rawYaml, start, end))
+				lines.add(rawYaml.substring(start, end));
+			start = end + separator.length();
+		}
+	}
+	
+	/*
+	 * Whether the text between start and end only contains spaces or tabs,
+	 * followed by a carriage return if the lines are separated by '\n'
+	 */
+	private boolean isBlank(String text, int start, int end) {
+		if (separator.equals("\n") && end > start && text.charAt(end - 1) == '\r')
+			end --;
+		for (int i = start; i < end; i ++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\t')
+				return false;
+		}
+		return true;
+	}
+	
+	/*
+	 * Line after the one being processed, empty if there are no more lines
+	 */
+	private String nextLine() {
+		return pos < lines.size() ? lines.get(pos) : "";
+	}
+	
 	/**
 	 * Create array from the yaml
 	 * @return the array of values from the yaml
@@ -235,15 +293,11 @@ public class YamlParser {
 		ArrayList<Object> arr = new ArrayList<Object>();
 		boolean sameSpaces = true;
 		int prevSpaces = -1;
-		while (rawYaml.indexOf(separator) != -1 && sameSpaces) {
-			String line = rawYaml.substring(0, rawYaml.indexOf(separator));
+		while (pos < lines.size() && sameSpaces) {
+			String line = lines.get(pos);
 			// Ignore the comments
 			if (line.trim().startsWith("#")) {
-				// Remove from the rawYaml String the part that as already been read
-				if (rawYaml.length() <= (rawYaml.indexOf(separator) + separator.length()))
-					rawYaml = "";
-				else
-					rawYaml = rawYaml.substring(rawYaml.indexOf(separator) + separator.length());
+				pos ++;
 				continue;
 			}
 			
@@ -255,11 +309,8 @@ public class YamlParser {
 			if (!sameSpaces || !line.trim().startsWith("-"))
 				break;
 			prevSpaces = nSpaces;
-			// Remove from the rawYaml String the part that as already been read
-			if (rawYaml.length() <= (rawYaml.indexOf(separator) + separator.length()))
-				rawYaml = "";
-			else
-				rawYaml = rawYaml.substring(rawYaml.indexOf(separator) + separator.length());
+			// The line has already been read
+			pos ++;
 			// Ignore the spaces in the line, and the "-" that is always at the beginning of lists
 			// Also find out how many spaces are between "-" and the beginning of the line
 			line = line.trim();
@@ -278,7 +329,7 @@ public class YamlParser {
 					LinkedHashMap<String, Object> mapVal = getMap(prevSpaces + ogLen - nLen);
 					mapVal.put(key, value);
 					arr.add(mapVal);
-				} else if(getSpacesAtTheBegging(rawYaml) == (prevSpaces + ogLen - nLen)) {
+				} else if(getSpacesAtTheBegging(nextLine()) == (prevSpaces + ogLen - nLen)) {
 					LinkedHashMap<String, Object> mapVal = getMap(prevSpaces + ogLen - nLen);
 					mapVal.put(key, null);
 					arr.add(mapVal);
@@ -314,16 +365,12 @@ public class YamlParser {
 	public LinkedHashMap<String, Object> getMap(int prevSpaces) throws Exception {
 		LinkedHashMap<String, Object> dict = new LinkedHashMap<String, Object>();
 		boolean sameSpaces = true;
-		while (rawYaml.indexOf(separator) != -1 && sameSpaces) {
-			String line = rawYaml.substring(0, rawYaml.indexOf(separator));
+		while (pos < lines.size() && sameSpaces) {
+			String line = lines.get(pos);
 			
 			// Ignore the comments
 			if (line.trim().startsWith("#")) {
-				// Remove from the rawYaml String the part that as already been read
-				if (rawYaml.length() <= (rawYaml.indexOf(separator) + separator.length()))
-					rawYaml = "";
-				else
-					rawYaml = rawYaml.substring(rawYaml.indexOf(separator) + separator.length());
+				pos ++;
 				continue;
 			}
 			
@@ -335,11 +382,8 @@ public class YamlParser {
 			if (!sameSpaces)
 				break;
 			prevSpaces = nSpaces;
-			// Remove from the rawYaml String the part that as already been read
-			if (rawYaml.length() <= (rawYaml.indexOf(separator) + separator.length()))
-				rawYaml = "";
-			else
-				rawYaml = rawYaml.substring(rawYaml.indexOf(separator) + separator.length());
+			// The line has already been read
+			pos ++;
 			// Ignore the spaces in the line
 			line = line.trim();
 			// Split the line into key and value
@@ -356,8 +400,8 @@ public class YamlParser {
 			// The values can be either Strings, Arrays or HashMaps.
 			// Find out first whether it is a String or not
 			// If the value was not a String, the same line would be empty
-			int nextSpaces = getSpacesAtTheBegging(rawYaml);
-			boolean nextStartWithDash = rawYaml.trim().startsWith("-");
+			int nextSpaces = getSpacesAtTheBegging(nextLine());
+			boolean nextStartWithDash = nextNonBlankLine().startsWith("-");
 			if (value.trim().contentEquals("") && 
 					(nextSpaces > prevSpaces || (nextSpaces == prevSpaces && nextStartWithDash))) {
 				String valueType = isValueDictionaryOrArray();
@@ -377,13 +421,28 @@ public class YamlParser {
 		return dict;
 	}
 	
+	/*
+	 * Next line with some text, trimmed. Empty if there are no more lines
+	 */
+	private String nextNonBlankLine() {
+		for (int i = pos; i < lines.size(); i ++) {
+			String line = lines.get(i).trim();
+			if (!line.equals(""))
+				return line;
+		}
+		return "";
+	}
+	
 	/**
 	 * Returns whether the value in the yaml is a hashmap or string
 	 * @return "array" if the value is an array or "hashmap" if it is a hashmap
+	 * @throws Exception if there are no more lines
 	 */
-	public String isValueDictionaryOrArray() {
+	public String isValueDictionaryOrArray() throws Exception {
 		// If the value is an array, the next line will start with "-"
-		String line = rawYaml.substring(0, rawYaml.indexOf(separator));
+		if (pos >= lines.size())
+			throw new Exception("The yaml ends before the value of the last key");
+		String line = lines.get(pos);
 		String type = "hashmap";
 		if (line.trim().startsWith("-")) {
 			type = "array";
@@ -397,13 +456,10 @@ public class YamlParser {
 	 * @return number of spaces
 	 */
 	public static int getSpacesAtTheBegging(String line) {
-		boolean keepGoing = true;
-		String spaces = "";
-		while (keepGoing) {
-			spaces += " ";
-			keepGoing = line.startsWith(spaces);
-		}
-		return (spaces.length() - 1);
+		int spaces = 0;
+		while (spaces < line.length() && line.charAt(spaces) == ' ')
+			spaces ++;
+		return spaces;
 	}
 
 	/**
@@ -434,8 +490,12 @@ public class YamlParser {
 	 * @return number of occurences
 	 */
 	public static int findOccurences(String s, String sub) {
-		String temp = s.replace(sub, "");
-		int occ = (s.length() - temp.length()) / sub.length();
+		int occ = 0;
+		int ind = s.indexOf(sub);
+		while (ind != -1) {
+			occ ++;
+			ind = s.indexOf(sub, ind + sub.length());
+		}
 		return occ;
 	}
 
@@ -168,6 +168,23 @@ public class ModelWeight
     			distinct().collect(Collectors.toList());
     }
 
+    /**
+     * Return the sha256 that identifies the weights used to run the model: the
+     * selected ones, the ones used by the BioEngine or, if none is known, all the
+     * sets of weights of the model
+     * @return the sha256 of the weights, empty if the rdf.yaml does not give any
+     */
+    public String getWeightsSha256() {
+    	if (selectedWeights != null && selectedWeights.getSha256() != null)
+    		return selectedWeights.getSha256();
+    	for (WeightFormatInterface ww : weightsDic.values()) {
+    		if (ww.getWeightsFormat().equals(bioEngineWeightsKey) && ww.getSha256() != null)
+    			return ww.getSha256();
+    	}
+    	return weightsDic.values().stream().map(i -> i.getSha256()).
+    			filter(i -> i != null).sorted().collect(Collectors.joining(","));
+    }
+
 	/**
 	 * Get the weights format selected to make inference.
 	 * For models that contain several sets of weights
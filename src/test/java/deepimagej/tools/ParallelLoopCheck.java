@@ -0,0 +1,179 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+/**
+ * Check that the parallel pixel loops give the same pixels as the serial
+ * ones. Every tile of a 2D image and of a 3D stack is extracted with
+ * {@link PaddedImage#extractPatch(Tile, TilePlan, TileBufferPool)} for each
+ * padding mode and bit depth, stitched with
+ * {@link ArrayOperations#imagePlusReconstructor(ImagePlus, ImagePlus, int, int, int, int, int, int, int, int, int)}
+ * and blended with {@link TileBlender}, first with
+ * {@link ParallelLoop#setParallelism(int)} set to 1 and then with several
+ * threads. The tiles, the stitched images and the blended images have to be
+ * identical. Exits with status 1 if any pixel differs.
+ * 
+ * Usage: ParallelLoopCheck [threads]
+ */
+public class ParallelLoopCheck {
+	
+	public static void main(String[] args) {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+		// A single plane, split in blocks of rows, and a stack split plane by plane
+		int[][] sizes = {{600, 520, 1, 1}, {260, 230, 2, 6}};
+		int[][] patches = {{256, 256, 1, 1}, {128, 128, 2, 4}};
+		int failures = 0;
+		for (int i = 0; i < sizes.length; i ++) {
+			for (int bitDepth : new int[] {8, 16, 32}) {
+				ImagePlus image = createRandomImage(sizes[i], bitDepth, 42 + i);
+				for (String padding : PaddedImage.MODES) {
+					for (String blending : TileBlender.MODES) {
+						List<float[]> serial = run(image, patches[i], padding, blending, 1);
+						List<float[]> parallel = run(image, patches[i], padding, blending, threads);
+						int differences = countDifferences(serial, parallel);
+						System.out.println(Arrays.toString(sizes[i]) + " " + bitDepth + "-bit, padding " + padding
+										+ ", blending " + blending + ": " + (differences == 0 ? "ok" : differences + " arrays differ"));
+						if (differences != 0)
+							failures ++;
+					}
+				}
+			}
+		}
+		ParallelLoop.setParallelism(Runtime.getRuntime().availableProcessors());
+		System.out.println(failures == 0 ? "Serial and parallel loops give the same pixels" : failures + " checks failed");
+		if (failures != 0)
+			System.exit(1);
+	}
+	
+	/*
+	 * Extract, stitch and blend every tile of the image with the given number
+	 * of threads. Returns the pixels of every tile followed by the pixels of
+	 * the stitched image and of the blended image
+	 */
+	private static List<float[]> run(ImagePlus image, int[] patchSize, String padding, String blending, int threads) {
+		ParallelLoop.setParallelism(threads);
+		int[] size = {image.getWidth(), image.getHeight(), image.getNChannels(), image.getNSlices()};
+		DijTensor input = new DijTensor("input");
+		input.form = "BYXZC";
+		input.tensorType = "image";
+		DijTensor output = new DijTensor("output");
+		output.form = "BYXZC";
+		output.tensorType = "image";
+		output.referenceImage = "input";
+		output.scale = new float[] {1, 1, 1, 1, 1};
+		output.offset = new float[] {0, 4, 4, 0, 0};
+		output.halo = new int[] {0, 12, 12, 0, 0};
+		int[] tilePadding = {12, 12, 0, size[3] > 1 ? 1 : 0};
+		TilePlan plan = TilePlanner.plan(size, patchSize, tilePadding, true, Arrays.asList(input), Arrays.asList(output));
+		PaddedImage padded = new PaddedImage(image, plan.getAddedPixels(), padding);
+		ImagePlus stitched = IJ.createHyperStack("stitched", size[0], size[1], size[2], size[3], 1, 32);
+		ImagePlus blended = IJ.createHyperStack("blended", size[0], size[1], size[2], size[3], 1, 32);
+		TileBlender blender = TileBlender.isBlending(blending) ? new TileBlender(blended, plan, 0, blending) : null;
+		List<float[]> pixels = new ArrayList<float[]>();
+		for (Tile tile : plan) {
+			ImagePlus patch = padded.extractPatch(tile, plan, null);
+			pixels.addAll(getPixels(patch));
+			int[] start = tile.getDestinationStart(0);
+			int[] end = tile.getDestinationEnd(0);
+			int[] leftover = tile.getDestinationOffset(0);
+			ArrayOperations.imagePlusReconstructor(stitched, patch, start[0], end[0], start[1], end[1],
+													start[2], end[2], leftover[0], leftover[1], leftover[2]);
+			if (blender != null)
+				blender.add(tile, patch);
+		}
+		if (blender != null)
+			blender.finish();
+		pixels.addAll(getPixels(stitched));
+		pixels.addAll(getPixels(blended));
+		return pixels;
+	}
+	
+	/*
+	 * Image of the given size, organised as [x, y, c, z], filled with random values
+	 */
+	private static ImagePlus createRandomImage(int[] size, int bitDepth, long seed) {
+		ImagePlus image = IJ.createHyperStack("random", size[0], size[1], size[2], size[3], 1, bitDepth);
+		Random rnd = new Random(seed);
+		for (int i = 1; i <= image.getStackSize(); i ++) {
+			Object pixels = image.getStack().getPixels(i);
+			if (pixels instanceof byte[])
+				rnd.nextBytes((byte[]) pixels);
+			else if (pixels instanceof short[])
+				for (int j = 0; j < ((short[]) pixels).length; j ++)
+					((short[]) pixels)[j] = (short) rnd.nextInt(65536);
+			else
+				for (int j = 0; j < ((float[]) pixels).length; j ++)
+					((float[]) pixels)[j] = (float) rnd.nextGaussian();
+		}
+		return image;
+	}
+	
+	private static List<float[]> getPixels(ImagePlus image) {
+		List<float[]> pixels = new ArrayList<float[]>();
+		for (int i = 1; i <= image.getStackSize(); i ++)
+			pixels.add(((float[]) image.getStack().getPixels(i)).clone());
+		return pixels;
+	}
+	
+	private static int countDifferences(List<float[]> serial, List<float[]> parallel) {
+		if (serial.size() != parallel.size())
+			return Math.abs(serial.size() - parallel.size());
+		int differences = 0;
+		for (int i = 0; i < serial.size(); i ++) {
+			if (!Arrays.equals(serial.get(i), parallel.get(i)))
+				differences ++;
+		}
+		return differences;
+	}
+}
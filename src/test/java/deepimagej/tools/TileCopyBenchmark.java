@@ -0,0 +1,153 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ij.IJ;
+import ij.ImagePlus;
+
+/**
+ * Microbenchmark of the tile extraction and stitching used by the runner.
+ * It compares the pixel by pixel copies through ImageProcessor with the
+ * row by row copies over the pixel arrays, and prints the throughput of
+ * both in MB/s.
+ * 
+ * Usage: TileCopyBenchmark [image size] [tile size] [channels] [repetitions]
+ */
+public class TileCopyBenchmark {
+	
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		int tile = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+		int channels = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		
+		ImagePlus image = IJ.createImage("bench", "32-bit", size, size, channels, 1, 1);
+		Random rnd = new Random(42);
+		for (int i = 1; i <= image.getStackSize(); i ++) {
+			float[] pixels = (float[]) image.getStack().getPixels(i);
+			for (int j = 0; j < pixels.length; j ++)
+				pixels[j] = rnd.nextFloat();
+		}
+		ImagePlus output = IJ.createImage("out", "32-bit", size, size, channels, 1, 1);
+		int[] patchSize = {tile, tile, channels, 1};
+		int nTiles = (size / tile) * (size / tile);
+		double megabytes = (double) nTiles * tile * tile * channels * 4 / (1024.0 * 1024.0);
+		
+		System.out.println("Image " + size + "x" + size + "x" + channels + ", tiles " + tile + "x" + tile
+							+ ", " + nTiles + " tiles per pass, " + String.format("%.1f", megabytes) + " MB per pass");
+		// Warm up both paths before timing them
+		runPixelwise(image, output, patchSize, 1);
+		runBulk(image, output, patchSize, 1);
+		
+		double[] pixelwise = runPixelwise(image, output, patchSize, repetitions);
+		double[] bulk = runBulk(image, output, patchSize, repetitions);
+		System.out.println(String.format("extractPatch           pixelwise %8.1f MB/s   bulk %8.1f MB/s   x%.1f",
+							megabytes / pixelwise[0], megabytes / bulk[0], pixelwise[0] / bulk[0]));
+		System.out.println(String.format("imagePlusReconstructor pixelwise %8.1f MB/s   bulk %8.1f MB/s   x%.1f",
+							megabytes / pixelwise[1], megabytes / bulk[1], pixelwise[1] / bulk[1]));
+		
+		boolean equal = true;
+		for (int i = 1; i <= image.getStackSize(); i ++)
+			equal = equal && Arrays.equals((float[]) image.getStack().getPixels(i), (float[]) output.getStack().getPixels(i));
+		System.out.println("Reconstructed image equals input: " + equal);
+	}
+	
+	/*
+	 * Extract and stitch every tile with the original per pixel methods, creating
+	 * a new image per tile. Returns the best time per pass in seconds for the
+	 * extraction and the stitching
+	 */
+	private static double[] runPixelwise(ImagePlus image, ImagePlus output, int[] patchSize, int repetitions) {
+		double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+		for (int r = 0; r < repetitions; r ++) {
+			double[] time = new double[2];
+			for (int x = 0; x + patchSize[0] <= image.getWidth(); x += patchSize[0]) {
+				for (int y = 0; y + patchSize[1] <= image.getHeight(); y += patchSize[1]) {
+					long start = System.nanoTime();
+					ImagePlus patch = IJ.createImage("aux", "32-bit", patchSize[0], patchSize[1], patchSize[2], patchSize[3], 1);
+					ArrayOperations.extractPatchPixelwise(image, patch, patchSize, x, y, 0);
+					long middle = System.nanoTime();
+					ArrayOperations.imagePlusReconstructorPixelwise(output, patch, x, y, 0,
+									patchSize[0], patchSize[1], 1, 0, 0, 0);
+					time[0] += (middle - start) * 1e-9;
+					time[1] += (System.nanoTime() - middle) * 1e-9;
+				}
+			}
+			best[0] = Math.min(best[0], time[0]);
+			best[1] = Math.min(best[1], time[1]);
+		}
+		return best;
+	}
+	
+	/*
+	 * Extract and stitch every tile with row copies and pooled tile buffers.
+	 * Returns the best time per pass in seconds for the extraction and the stitching
+	 */
+	private static double[] runBulk(ImagePlus image, ImagePlus output, int[] patchSize, int repetitions) {
+		double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+		TileBufferPool pool = new TileBufferPool(patchSize, 2);
+		for (int r = 0; r < repetitions; r ++) {
+			double[] time = new double[2];
+			for (int x = 0; x + patchSize[0] <= image.getWidth(); x += patchSize[0]) {
+				for (int y = 0; y + patchSize[1] <= image.getHeight(); y += patchSize[1]) {
+					long start = System.nanoTime();
+					ImagePlus patch = ArrayOperations.extractPatch(image, patchSize, x, y, 0, 0, 0, 0, pool);
+					long middle = System.nanoTime();
+					ArrayOperations.imagePlusReconstructor(output, patch, x, x + patchSize[0], y, y + patchSize[1],
+									0, 1, 0, 0, 0);
+					time[0] += (middle - start) * 1e-9;
+					time[1] += (System.nanoTime() - middle) * 1e-9;
+					pool.release(patch);
+				}
+			}
+			best[0] = Math.min(best[0], time[0]);
+			best[1] = Math.min(best[1], time[1]);
+		}
+		return best;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Check {@link TileGeometrySolver#solve(int[], int[], int[], int[], int[], double)}
+ * against a brute-force search over every tile size allowed by the minimum
+ * size and the step of the model. For randomized 3D geometries, the tile
+ * found by the solver has to fit in the voxel budget and have the lowest
+ * redundancy among all the tiles that fit. Ties can be solved with a
+ * different tile, so only the redundancy is compared. Exits with status 1
+ * if any geometry differs.
+ * 
+ * Usage: TileGeometrySolverCheck [geometries] [seed]
+ */
+public class TileGeometrySolverCheck {
+	
+	private static final int[] TILED_AXES = {AxisLayout.X, AxisLayout.Y, AxisLayout.Z};
+	
+	public static void main(String[] args) {
+		int geometries = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		Random rnd = new Random(args.length > 1 ? Long.parseLong(args[1]) : 42);
+		int failures = 0;
+		for (int g = 0; g < geometries; g ++) {
+			int[] size = {1 + rnd.nextInt(60), 1 + rnd.nextInt(60), 1 + rnd.nextInt(3), 1 + rnd.nextInt(30)};
+			int[] padding = new int[4];
+			int[] minimum = new int[4];
+			int[] step = new int[4];
+			int[] fixed = new int[4];
+			fixed[AxisLayout.C] = size[AxisLayout.C];
+			for (int axis : TILED_AXES) {
+				padding[axis] = rnd.nextInt(6);
+				minimum[axis] = 2 * padding[axis] + 1 + rnd.nextInt(8);
+				// Some axes have a fixed size, as the models that only accept one size
+				step[axis] = rnd.nextInt(5) == 0 ? 0 : 1 + rnd.nextInt(8);
+				fixed[axis] = minimum[axis];
+			}
+			double maxVoxels = fixed[AxisLayout.C] * Math.pow(2 + rnd.nextInt(60), 3);
+			int[] solved = TileGeometrySolver.solve(size, minimum, step, padding, fixed, maxVoxels);
+			int[] brute = bruteForce(size, minimum, step, padding, fixed, maxVoxels);
+			String error = compare(solved, brute, size, padding, maxVoxels);
+			if (error != null) {
+				failures ++;
+				System.out.println("size " + Arrays.toString(size) + ", minimum " + Arrays.toString(minimum)
+								+ ", step " + Arrays.toString(step) + ", padding " + Arrays.toString(padding)
+								+ ", voxels " + maxVoxels + ": " + error);
+			}
+		}
+		System.out.println(failures == 0 ? "The solver matches the brute-force search on " + geometries + " geometries"
+										 : failures + " of " + geometries + " geometries differ");
+		if (failures != 0)
+			System.exit(1);
+	}
+	
+	/*
+	 * Returns null if the solver found a tile as good as the brute-force search,
+	 * and a description of the difference otherwise
+	 */
+	private static String compare(int[] solved, int[] brute, int[] size, int[] padding, double maxVoxels) {
+		if (solved == null || brute == null)
+			return solved == brute ? null : "solver " + Arrays.toString(solved) + ", brute force " + Arrays.toString(brute);
+		if (getVoxels(solved) > maxVoxels)
+			return "the tile " + Arrays.toString(solved) + " does not fit in the budget";
+		double solvedRedundancy = TileGeometrySolver.getRedundancy(size, solved, padding);
+		double bruteRedundancy = TileGeometrySolver.getRedundancy(size, brute, padding);
+		if (Math.abs(solvedRedundancy - bruteRedundancy) > 1e-9 * bruteRedundancy)
+			return "solver " + Arrays.toString(solved) + " (" + solvedRedundancy + "), brute force "
+					+ Arrays.toString(brute) + " (" + bruteRedundancy + ")";
+		return null;
+	}
+	
+	/*
+	 * Try every combination of tile sizes up to 3 times the image along
+	 * each axis that has a step. Returns the one with the lowest redundancy
+	 * that fits in the budget, or null if none fits
+	 */
+	private static int[] bruteForce(int[] size, int[] minimum, int[] step, int[] padding, int[] fixed, double maxVoxels) {
+		int[] tile = fixed.clone();
+		int[] best = null;
+		double bestRedundancy = Double.POSITIVE_INFINITY;
+		int[] last = new int[4];
+		for (int axis : TILED_AXES)
+			last[axis] = step[axis] > 0 ? Math.max(minimum[axis], 3 * size[axis]) : minimum[axis];
+		for (tile[0] = minimum[0]; tile[0] <= last[0]; tile[0] += Math.max(1, step[0])) {
+			for (tile[1] = minimum[1]; tile[1] <= last[1]; tile[1] += Math.max(1, step[1])) {
+				for (tile[3] = minimum[3]; tile[3] <= last[3]; tile[3] += Math.max(1, step[3])) {
+					if (getVoxels(tile) > maxVoxels)
+						break;
+					double redundancy = TileGeometrySolver.getRedundancy(size, tile, padding);
+					if (redundancy < bestRedundancy || best == null) {
+						bestRedundancy = redundancy;
+						best = tile.clone();
+					}
+				}
+			}
+		}
+		return best;
+	}
+	
+	private static double getVoxels(int[] tile) {
+		return (double) tile[0] * tile[1] * tile[2] * tile[3];
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package deepimagej.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Check the tiles of {@link TilePlanner#plan(int[], int[], int[], boolean, java.util.List, java.util.List)}
+ * against the nested X, Y and Z loop that the runner used before the plan
+ * existed. For randomized image sizes, tile sizes, paddings, output scales
+ * and offsets, the source start, the valid region and the destination
+ * region of every tile have to be the ones computed by the loop. Exits
+ * with status 1 if any tile differs.
+ * 
+ * Usage: TilePlanCheck [geometries] [seed]
+ */
+public class TilePlanCheck {
+	
+	public static void main(String[] args) {
+		int geometries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		Random rnd = new Random(args.length > 1 ? Long.parseLong(args[1]) : 42);
+		int failures = 0;
+		for (int g = 0; g < geometries; g ++) {
+			int[] size = {1 + rnd.nextInt(300), 1 + rnd.nextInt(300), 1 + rnd.nextInt(3), rnd.nextBoolean() ? 1 : 1 + rnd.nextInt(40)};
+			int[] padding = {rnd.nextInt(24), rnd.nextInt(24), 0, size[3] == 1 ? 0 : rnd.nextInt(4)};
+			int[] patchSize = new int[4];
+			for (int axis = 0; axis < 4; axis ++)
+				patchSize[axis] = axis == 2 ? size[2] : 2 * padding[axis] + 1 + rnd.nextInt(128);
+			boolean allowPatching = rnd.nextInt(10) != 0;
+			float[] scale = {1 + rnd.nextInt(3), 1 + rnd.nextInt(3), 1 + rnd.nextInt(2)};
+			float[] offset = {rnd.nextInt(5), rnd.nextInt(5), size[3] == 1 ? 0 : rnd.nextInt(2)};
+			String error = compare(size, patchSize, padding, allowPatching, scale, offset);
+			if (error != null) {
+				failures ++;
+				System.out.println("size " + Arrays.toString(size) + ", tile " + Arrays.toString(patchSize)
+								+ ", padding " + Arrays.toString(padding) + ", scale " + Arrays.toString(scale)
+								+ ", offset " + Arrays.toString(offset) + ": " + error);
+			}
+		}
+		System.out.println(failures == 0 ? "The plan matches the loop on " + geometries + " geometries"
+										 : failures + " of " + geometries + " geometries differ");
+		if (failures != 0)
+			System.exit(1);
+	}
+	
+	/*
+	 * Compare the plan of a geometry with the loop. Returns null if every
+	 * tile is the same, and a description of the first difference otherwise
+	 */
+	private static String compare(int[] size, int[] patchSize, int[] padding, boolean allowPatching, float[] scale, float[] offset) {
+		DijTensor input = new DijTensor("input");
+		input.form = "BYXZC";
+		input.tensorType = "image";
+		DijTensor output = new DijTensor("output");
+		output.form = "BYXZC";
+		output.tensorType = "image";
+		output.referenceImage = "input";
+		output.scale = new float[] {1, scale[1], scale[0], scale[2], 1};
+		output.offset = new float[] {0, offset[1], offset[0], offset[2], 0};
+		TilePlan plan = TilePlanner.plan(size, patchSize, padding, allowPatching, Arrays.asList(input), Arrays.asList(output));
+		int[][] loop = loopTiles(size, patchSize, padding.clone(), allowPatching, scale, offset);
+		if (loop.length != plan.size())
+			return plan.size() + " tiles instead of " + loop.length;
+		for (Tile tile : plan) {
+			int[][] planned = {tile.getSourceStart(), tile.getValidStart(), tile.getValidEnd(), tile.getValidOffset(),
+							   tile.getDestinationStart(0), tile.getDestinationEnd(0), tile.getDestinationOffset(0)};
+			int[] flat = new int[21];
+			for (int i = 0; i < planned.length; i ++)
+				System.arraycopy(planned[i], 0, flat, i * 3, 3);
+			if (!Arrays.equals(flat, loop[tile.getIndex()]))
+				return tile + " is " + Arrays.toString(flat) + " instead of " + Arrays.toString(loop[tile.getIndex()]);
+		}
+		return null;
+	}
+	
+	/*
+	 * Tiles computed by the loop of the runner, in the same order as the plan.
+	 * Each tile is the source start, valid start, valid end, valid offset,
+	 * destination start, destination end and destination offset, all of them
+	 * organised as [x, y, z]
+	 */
+	private static int[][] loopTiles(int[] size, int[] patchSize, int[] padding, boolean allowPatching, float[] scale, float[] offset) {
+		int nx = size[0];
+		int ny = size[1];
+		int nz = size[3];
+		int roiX = patchSize[0] - padding[0] * 2;
+		int roiY = patchSize[1] - padding[1] * 2;
+		int roiZ = patchSize[3] - padding[3] * 2;
+		int npx = (int) Math.ceil((double) nx / (double) roiX);
+		int npy = (int) Math.ceil((double) ny / (double) roiY);
+		int npz = (int) Math.ceil((double) nz / (double) roiZ);
+		if (!allowPatching) {
+			npx = 1; npy = 1; npz = 1;
+		}
+		int[] roi = {roiX, roiY, patchSize[2], roiZ};
+		int[][] mirrorPixels = ArrayOperations.findAddedPixels(size, padding, roi);
+		int overlapX = mirrorPixels[0][0];
+		if (roiX > nx) {
+			roiX = nx;
+			padding[0] = (patchSize[0] - nx) / 2;
+			overlapX = (patchSize[0] - nx) / 2;
+		}
+		int overlapY = mirrorPixels[0][1];
+		if (roiY > ny) {
+			roiY = ny;
+			padding[1] = (patchSize[1] - ny) / 2;
+			overlapY = (patchSize[1] - ny) / 2;
+		}
+		int overlapZ = mirrorPixels[0][3];
+		if (roiZ > nz) {
+			roiZ = nz;
+			padding[3] = (patchSize[3] - nz) / 2;
+			overlapZ = (patchSize[3] - nz) / 2;
+		}
+		int[][] tiles = new int[npx * npy * npz][];
+		for (int i = 0; i < npx; i ++) {
+			for (int j = 0; j < npy; j ++) {
+				for (int z = 0; z < npz; z ++) {
+					int xMirrorStartPatch, yMirrorStartPatch, zMirrorStartPatch;
+					int xImageStartPatch, xImageEndPatch, yImageStartPatch, yImageEndPatch, zImageStartPatch, zImageEndPatch;
+					int leftoverPixelsX, leftoverPixelsY, leftoverPixelsZ;
+					if (i < npx - 1 || npx == 1) {
+						xMirrorStartPatch = padding[0] + roiX * i;
+						xImageStartPatch = roiX * i;
+						xImageEndPatch = roiX * (i + 1);
+						leftoverPixelsX = overlapX;
+					} else {
+						xMirrorStartPatch = nx + padding[0] - roiX;
+						xImageStartPatch = roiX * i;
+						xImageEndPatch = nx;
+						leftoverPixelsX = overlapX + roiX - (xImageEndPatch - xImageStartPatch);
+					}
+					if (j < npy - 1 || npy == 1) {
+						yMirrorStartPatch = padding[1] + roiY * j;
+						yImageStartPatch = roiY * j;
+						yImageEndPatch = roiY * (j + 1);
+						leftoverPixelsY = overlapY;
+					} else {
+						yMirrorStartPatch = ny + padding[1] - roiY;
+						yImageStartPatch = roiY * j;
+						yImageEndPatch = ny;
+						leftoverPixelsY = overlapY + roiY - (yImageEndPatch - yImageStartPatch);
+					}
+					if (z < npz - 1 || npz == 1) {
+						zMirrorStartPatch = padding[3] + roiZ * z;
+						zImageStartPatch = roiZ * z;
+						zImageEndPatch = roiZ * (z + 1);
+						leftoverPixelsZ = overlapZ;
+					} else {
+						zMirrorStartPatch = nz + padding[3] - roiZ;
+						zImageStartPatch = roiZ * z;
+						zImageEndPatch = nz;
+						leftoverPixelsZ = overlapZ + roiZ - (zImageEndPatch - zImageStartPatch);
+					}
+					// The tile was extracted from the padded image as in PaddedImage.extractPatch
+					int[] sourceStart = {xMirrorStartPatch - overlapX - mirrorPixels[0][0],
+										 yMirrorStartPatch - overlapY - mirrorPixels[0][1],
+										 zMirrorStartPatch - overlapZ - mirrorPixels[0][3]};
+					int[] imageStart = {xImageStartPatch, yImageStartPatch, zImageStartPatch};
+					int[] imageEnd = {xImageEndPatch, yImageEndPatch, zImageEndPatch};
+					int[] leftover = {leftoverPixelsX, leftoverPixelsY, leftoverPixelsZ};
+					int[] tile = new int[21];
+					for (int a = 0; a < 3; a ++) {
+						tile[a] = sourceStart[a];
+						tile[3 + a] = imageStart[a];
+						tile[6 + a] = imageEnd[a];
+						tile[9 + a] = leftover[a];
+						tile[12 + a] = (int) (imageStart[a] * scale[a]);
+						tile[15 + a] = (int) (imageEnd[a] * scale[a]);
+						tile[18 + a] = (int) (leftover[a] * scale[a] + Math.ceil(offset[a]));
+					}
+					tiles[i * npy * npz + j * npz + z] = tile;
+				}
+			}
+		}
+		return tiles;
+	}
+}
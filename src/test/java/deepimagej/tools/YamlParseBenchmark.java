@@ -0,0 +1,155 @@
+/*
+ * DeepImageJ
+ * 
+ * https://deepimagej.github.io/deepimagej/
+ * 
+ * Reference: DeepImageJ: A user-friendly environment to run deep learning models in ImageJ
+ * E. Gomez-de-Mariscal, C. Garcia-Lopez-de-Haro, W. Ouyang, L. Donati, M. Unser, E. Lundberg, A. Munoz-Barrutia, D. Sage. 
+ * Submitted 2021.
+ * Bioengineering and Aerospace Engineering Department, Universidad Carlos III de Madrid, Spain
+ * Biomedical Imaging Group, Ecole polytechnique federale de Lausanne (EPFL), Switzerland
+ * Science for Life Laboratory, School of Engineering Sciences in Chemistry, Biotechnology and Health, KTH - Royal Institute of Technology, Sweden
+ * 
+ * Authors: Carlos Garcia-Lopez-de-Haro and Estibaliz Gomez-de-Mariscal
+ *
+ */
+
+/*
+ * BSD 2-Clause License
+ *
+ * Copyright (c) 2019-2021, DeepImageJ
+ * All rights reserved.
+ *	
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *	  this list of conditions and the following disclaimer in the documentation
+ *	  and/or other materials provided with the distribution.
+ *	
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package deepimagej.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the {@link YamlParser}. It parses every rdf.yaml / model.yaml
+ * found in the given files or folders (searched recursively) and prints the
+ * time per file and the throughput in MB/s. Without arguments it parses
+ * synthetic rdf files of growing size, the time should grow linearly
+ * with the size.
+ * 
+ * Usage: YamlParseBenchmark [repetitions] [file or folder]...
+ */
+public class YamlParseBenchmark {
+	
+	public static void main(String[] args) throws Exception {
+		int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		List<String> names = new ArrayList<String>();
+		List<String> corpus = new ArrayList<String>();
+		for (int i = 1; i < args.length; i ++)
+			findYamls(new File(args[i]), names, corpus);
+		if (args.length < 2) {
+			for (int entries = 1000; entries <= 16000; entries *= 2) {
+				names.add("synthetic rdf with " + entries + " entries");
+				corpus.add(syntheticRdf(entries));
+			}
+		}
+		long totalBytes = 0;
+		long totalTime = 0;
+		for (int i = 0; i < corpus.size(); i ++) {
+			String raw = corpus.get(i);
+			// Warm up
+			new YamlParser(raw).parseYaml();
+			long start = System.nanoTime();
+			for (int r = 0; r < repetitions; r ++)
+				new YamlParser(raw).parseYaml();
+			long time = (System.nanoTime() - start) / repetitions;
+			totalBytes += raw.length();
+			totalTime += time;
+			System.out.println(names.get(i) + ": " + NumFormat.bytes(raw.length()) + " parsed in "
+								+ String.format("%.3f", time / 1e6) + " ms (" + String.format("%.1f", mbPerSecond(raw.length(), time)) + " MB/s)");
+		}
+		System.out.println("Total: " + corpus.size() + " files, " + NumFormat.bytes(totalBytes) + ", "
+							+ String.format("%.1f", mbPerSecond(totalBytes, totalTime)) + " MB/s");
+	}
+	
+	private static double mbPerSecond(long bytes, long nanos) {
+		return (bytes / (1024.0 * 1024.0)) / (Math.max(nanos, 1) / 1e9);
+	}
+	
+	/*
+	 * Add the yaml files in a folder or the file itself to the corpus
+	 */
+	private static void findYamls(File file, List<String> names, List<String> corpus) throws IOException {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children == null)
+				return;
+			for (File child : children)
+				findYamls(child, names, corpus);
+		} else if (file.getName().endsWith(".yaml") || file.getName().endsWith(".yml")) {
+			names.add(file.getPath());
+			corpus.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		}
+	}
+	
+	/*
+	 * rdf.yaml with a long list of attachments and a long test_information,
+	 * the parts that make real files big
+	 */
+	private static String syntheticRdf(int entries) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("format_version: 0.3.2\n");
+		sb.append("name: Synthetic model\n");
+		sb.append("description: Model used to benchmark the yaml parser\n");
+		sb.append("authors:\n");
+		sb.append("  - name: DeepImageJ\n");
+		sb.append("    affiliation: EPFL\n");
+		sb.append("attachments:\n");
+		sb.append("  files:\n");
+		for (int i = 0; i < entries; i ++)
+			sb.append("    - ./attachment_" + i + ".txt\n");
+		sb.append("inputs:\n");
+		sb.append("  - name: raw\n");
+		sb.append("    axes: byxc\n");
+		sb.append("    data_type: float32\n");
+		sb.append("    shape:\n");
+		sb.append("      min: [1, 8, 8, 1]\n");
+		sb.append("      step: [0, 8, 8, 0]\n");
+		sb.append("config:\n");
+		sb.append("  deepimagej:\n");
+		sb.append("    allow_tiling: true\n");
+		sb.append("    test_information:\n");
+		sb.append("      inputs:\n");
+		for (int i = 0; i < entries; i ++) {
+			sb.append("        - name: input_" + i + ".tiff\n");
+			sb.append("          size: 64 x 64 x 1 x 1\n");
+			sb.append("          pixel_size:\n");
+			sb.append("            x: 1 pixel\n");
+			sb.append("            y: 1 pixel\n");
+		}
+		sb.append("      memory_peak: 62.9 Mb\n");
+		sb.append("      runtime: 0.1 s\n");
+		return sb.toString();
+	}
+}